@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.data;
+
+import com.gigaspaces.document.SpaceDocument;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random reads by key against the synthetic backends without simulated latency, so the cost
+ * measured is the lookup in the mapped data set and building the document. With the default
+ * parameters the data set holds 5M accounts and 50M transactions; it is generated into the
+ * temporary directory on the first run and reused by later runs with the same parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyntheticBackendBenchmark {
+
+    @Param({"5000000"})
+    public int accounts;
+
+    @Param({"10"})
+    public int transactionsPerAccount;
+
+    private Accounts accountBackend;
+    private AccountTransactions transactionBackend;
+    private List<String> accountIds;
+    private List<String> transactionKeys;
+
+    @Setup
+    public void setUp() throws IOException {
+        long seed = SyntheticDataSet.DEFAULT_SEED;
+        SyntheticDataSet data = SyntheticDataSet.open(SyntheticDataSet.defaultFile(seed, accounts, transactionsPerAccount),
+                seed, accounts, transactionsPerAccount);
+        accountBackend = new Accounts(data);
+        accountBackend.setLatencyModel(LatencyModels.NONE);
+        transactionBackend = new AccountTransactions(data);
+        transactionBackend.setLatencyModel(LatencyModels.NONE);
+        accountIds = accountBackend.getIds();
+        transactionKeys = transactionBackend.getKeys();
+        System.out.println("synthetic data set: " + data.getRecords() + " records");
+    }
+
+    @Benchmark
+    public SpaceDocument getAccount() {
+        return accountBackend.get(accountIds.get(ThreadLocalRandom.current().nextInt(accountIds.size())));
+    }
+
+    @Benchmark
+    public Object loadTransaction() {
+        String key = transactionKeys.get(ThreadLocalRandom.current().nextInt(transactionKeys.size()));
+        return transactionBackend.loadAll(Collections.singletonList(key));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import com.gigaspaces.document.SpaceDocument;
+import com.gigaspaces.metadata.SpaceTypeDescriptor;
+import com.gigaspaces.metadata.SpaceTypeDescriptorBuilder;
+
+import org.openspaces.core.GigaSpace;
+import org.openspaces.core.GigaSpaceConfigurer;
+import org.openspaces.core.space.EmbeddedSpaceConfigurer;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Type, payloads and embedded space shared by the benchmarks. The type has a fixed property of
+ * every type {@link ControllerUtils#convertPropertyToPrimitiveType} supports plus a nested
+ * document and a nested document array.
+ */
+public class BenchmarkFixtures {
+    public static final String TYPE = "BenchmarkItem";
+    public static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+    public enum Rating {LOW, MEDIUM, HIGH}
+
+    public static SpaceTypeDescriptor getType() {
+        return new SpaceTypeDescriptorBuilder(TYPE)
+                .addFixedProperty("id", String.class)
+                .addFixedProperty("longValue", Long.class)
+                .addFixedProperty("booleanValue", Boolean.class)
+                .addFixedProperty("intValue", Integer.class)
+                .addFixedProperty("byteValue", Byte.class)
+                .addFixedProperty("shortValue", Short.class)
+                .addFixedProperty("floatValue", Float.class)
+                .addFixedProperty("doubleValue", Double.class)
+                .addFixedProperty("level", Rating.class)
+                .addFixedProperty("objectValue", Object.class)
+                .addFixedProperty("dateValue", Date.class)
+                .addFixedProperty("nested", SpaceDocument.class)
+                .addFixedProperty("nestedList", SpaceDocument[].class)
+                .supportsDynamicProperties(true)
+                .idProperty("id", false).create();
+    }
+
+    /**
+     * Sets up the shared mapper the same way the controller does.
+     */
+    public static void configureMapper() {
+        ControllerUtils.configureDateFormat(DATE_FORMAT);
+    }
+
+    public static EmbeddedSpaceConfigurer startSpace(String name) {
+        return new EmbeddedSpaceConfigurer(name);
+    }
+
+    public static GigaSpace gigaSpace(EmbeddedSpaceConfigurer spaceConfigurer) {
+        GigaSpace gigaSpace = new GigaSpaceConfigurer(spaceConfigurer).gigaSpace();
+        gigaSpace.getTypeManager().registerTypeDescriptor(getType());
+        return gigaSpace;
+    }
+
+    /**
+     * A POST body with the given number of items, each with every primitive property and, when
+     * {@code nested} is set, a nested document and a list of {@code nested} nested documents.
+     */
+    public static String payload(int items, int nested) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"id\":\"").append(i).append('"')
+                    .append(",\"longValue\":").append(1000000000000L + i)
+                    .append(",\"booleanValue\":").append(i % 2 == 0)
+                    .append(",\"intValue\":").append(i)
+                    .append(",\"byteValue\":").append(i % 100)
+                    .append(",\"shortValue\":").append(i % 1000)
+                    .append(",\"floatValue\":").append(i + 0.5f)
+                    .append(",\"doubleValue\":").append(i + 0.25d)
+                    .append(",\"level\":\"").append(Rating.values()[i % 3]).append('"')
+                    .append(",\"objectValue\":\"object ").append(i).append('"')
+                    .append(",\"dateValue\":\"2016-01-01 12:00:00\"");
+            if (nested > 0) {
+                sb.append(",\"nested\":").append(nestedDocument(i));
+                sb.append(",\"nestedList\":[");
+                for (int j = 0; j < nested; j++) {
+                    if (j > 0)
+                        sb.append(',');
+                    sb.append(nestedDocument(j));
+                }
+                sb.append(']');
+            }
+            sb.append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Property map of a single item as the json parser hands it to buildTypeBasedProperties.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> propertyMap(int nested) throws Exception {
+        HashMap<String, Object>[] maps = ControllerUtils.mapper.readValue(payload(1, nested), HashMap[].class);
+        return maps[0];
+    }
+
+    /**
+     * A document as returned by a GET, with the given number of dynamic properties on top of the
+     * fixed ones.
+     */
+    public static SpaceDocument document(int extraProperties) {
+        Map<String, Object> properties = new LinkedHashMap<String, Object>();
+        properties.put("id", "1");
+        properties.put("longValue", 1000000000000L);
+        properties.put("booleanValue", true);
+        properties.put("intValue", 1);
+        properties.put("doubleValue", 1.25d);
+        properties.put("level", Rating.MEDIUM);
+        properties.put("dateValue", new Date(1451649600000L));
+        for (int i = 0; i < extraProperties; i++) {
+            properties.put("property" + i, "value " + i);
+        }
+        return new SpaceDocument(TYPE, properties);
+    }
+
+    private static String nestedDocument(int i) {
+        return "{\"typeName\":\"Nested\",\"version\":1,\"transient\":false,\"properties\":{\"name\":\"nested "
+                + i + "\",\"value\":" + i + "}}";
+    }
+}
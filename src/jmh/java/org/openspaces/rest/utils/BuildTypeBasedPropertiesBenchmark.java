@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import com.gigaspaces.metadata.SpaceTypeDescriptor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openspaces.core.GigaSpace;
+import org.openspaces.core.space.EmbeddedSpaceConfigurer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ControllerUtils#buildTypeBasedProperties} on an already parsed item, without and with
+ * nested documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuildTypeBasedPropertiesBenchmark {
+
+    @Param({"0", "1", "10"})
+    public int nestedDocuments;
+
+    private EmbeddedSpaceConfigurer spaceConfigurer;
+    private GigaSpace gigaSpace;
+    private SpaceTypeDescriptor typeDescriptor;
+    private Map<String, Object> propertyMap;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkFixtures.configureMapper();
+        spaceConfigurer = BenchmarkFixtures.startSpace("build-type-based-properties-benchmark");
+        gigaSpace = BenchmarkFixtures.gigaSpace(spaceConfigurer);
+        typeDescriptor = gigaSpace.getTypeManager().getTypeDescriptor(BenchmarkFixtures.TYPE);
+        propertyMap = BenchmarkFixtures.propertyMap(nestedDocuments);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        spaceConfigurer.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> buildTypeBasedProperties() throws Exception {
+        return ControllerUtils.buildTypeBasedProperties(propertyMap, typeDescriptor, gigaSpace);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ControllerUtils#convertPropertyToPrimitiveType} for every supported property type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertPropertyBenchmark {
+
+    @Param({"Long", "long", "Boolean", "Integer", "Byte", "Short", "Float", "Double", "Enum", "String", "Object", "Date"})
+    public String type;
+
+    private Class propertyType;
+    private String value;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.configureMapper();
+        if ("Long".equals(type)) {
+            propertyType = Long.class;
+            value = "1000000000000";
+        } else if ("long".equals(type)) {
+            propertyType = Long.TYPE;
+            value = "1000000000000";
+        } else if ("Boolean".equals(type)) {
+            propertyType = Boolean.class;
+            value = "true";
+        } else if ("Integer".equals(type)) {
+            propertyType = Integer.class;
+            value = "123456";
+        } else if ("Byte".equals(type)) {
+            propertyType = Byte.class;
+            value = "12";
+        } else if ("Short".equals(type)) {
+            propertyType = Short.class;
+            value = "1234";
+        } else if ("Float".equals(type)) {
+            propertyType = Float.class;
+            value = "1234.5";
+        } else if ("Double".equals(type)) {
+            propertyType = Double.class;
+            value = "1234.25";
+        } else if ("Enum".equals(type)) {
+            propertyType = BenchmarkFixtures.Rating.class;
+            value = "MEDIUM";
+        } else if ("String".equals(type)) {
+            propertyType = String.class;
+            value = "some text";
+        } else if ("Object".equals(type)) {
+            propertyType = Object.class;
+            value = "some object";
+        } else {
+            propertyType = Date.class;
+            value = "2016-01-01 12:00:00";
+        }
+    }
+
+    @Benchmark
+    public Object convert() {
+        return ControllerUtils.convertPropertyToPrimitiveType(value, propertyType, "property");
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import com.gigaspaces.document.SpaceDocument;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openspaces.core.GigaSpace;
+import org.openspaces.core.space.EmbeddedSpaceConfigurer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ControllerUtils#createSpaceDocuments} on a single small item and on a large array of
+ * items with nested documents, against the type descriptor of an embedded space.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreateSpaceDocumentsBenchmark {
+
+    @Param({"small", "large"})
+    public String payload;
+
+    private EmbeddedSpaceConfigurer spaceConfigurer;
+    private GigaSpace gigaSpace;
+    private String body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkFixtures.configureMapper();
+        spaceConfigurer = BenchmarkFixtures.startSpace("create-space-documents-benchmark");
+        gigaSpace = BenchmarkFixtures.gigaSpace(spaceConfigurer);
+        body = "small".equals(payload) ? BenchmarkFixtures.payload(1, 0) : BenchmarkFixtures.payload(1000, 5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        spaceConfigurer.close();
+    }
+
+    @Benchmark
+    public SpaceDocument[] createSpaceDocuments() throws Exception {
+        return ControllerUtils.createSpaceDocuments(BenchmarkFixtures.TYPE, body, gigaSpace);
+    }
+}
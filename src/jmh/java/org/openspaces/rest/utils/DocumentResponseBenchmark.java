@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import com.gigaspaces.document.SpaceDocument;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of a GET response body: the {@link DocumentResponse} the controller returns for a
+ * document, written the way {@link DocumentResponseHttpMessageConverter} writes it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentResponseBenchmark {
+
+    @Param({"0", "50"})
+    public int extraProperties;
+
+    private SpaceDocument document;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.configureMapper();
+        document = BenchmarkFixtures.document(extraProperties);
+        out = new ByteArrayOutputStream(4096);
+    }
+
+    @Benchmark
+    public int writeDocumentResponse() throws Exception {
+        out.reset();
+        ControllerUtils.documentWriter.writeValue(out, new DocumentResponse(document));
+        return out.size();
+    }
+}
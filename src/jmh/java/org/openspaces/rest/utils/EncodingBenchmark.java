@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.utils;
+
+import com.gigaspaces.document.SpaceDocument;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openspaces.rest.data.AccountTransactions;
+import org.openspaces.rest.data.Accounts;
+import org.openspaces.rest.data.LatencyModels;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding and decoding cost of GET responses in each {@link Encoding}: a single account as
+ * returned by a read by id, and the 100 transactions of ten accounts as returned by a read by
+ * ids. The payload sizes, plain and gzip compressed, are printed when a trial starts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+
+    @Param({"json", "smile", "cbor", "msgpack"})
+    public String encoding;
+
+    @Param({"account", "transactions"})
+    public String payload;
+
+    private Encoding selected;
+    private Object response;
+    private byte[] encoded;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkFixtures.configureMapper();
+        selected = ControllerUtils.encodings.get(0);
+        for (Encoding candidate : ControllerUtils.encodings) {
+            if (candidate.getMediaType().getSubtype().endsWith(encoding))
+                selected = candidate;
+        }
+        if ("account".equals(payload)) {
+            Accounts accounts = new Accounts(1);
+            accounts.setLatencyModel(LatencyModels.NONE);
+            response = new DocumentResponse(accounts.get("0"));
+        } else {
+            AccountTransactions transactions = new AccountTransactions(10);
+            transactions.setLatencyModel(LatencyModels.NONE);
+            List<SpaceDocument> docs = transactions.getAllForAccounts(transactions.getAccountIds());
+            BatchDocumentResponse batch = new BatchDocumentResponse(docs.size());
+            for (SpaceDocument doc : docs) {
+                batch.addFound((String) doc.getProperty("id"), doc);
+            }
+            response = batch;
+        }
+        out = new ByteArrayOutputStream(16384);
+        encoded = encode().toByteArray();
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(encoded);
+        gzip.close();
+        System.out.println(selected.getMediaType() + " " + payload + ": " + encoded.length + " bytes, "
+                + compressed.size() + " bytes gzip compressed");
+    }
+
+    @Benchmark
+    public int encodeResponse() throws Exception {
+        return encode().size();
+    }
+
+    @Benchmark
+    public Map<?, ?> decodeResponse() throws Exception {
+        return selected.getMapper().readValue(encoded, Map.class);
+    }
+
+    private ByteArrayOutputStream encode() throws Exception {
+        out.reset();
+        if (response instanceof BatchDocumentResponse)
+            selected.getBatchDocumentWriter().writeValue(out, response);
+        else
+            selected.getDocumentWriter().writeValue(out, response);
+        return out;
+    }
+}
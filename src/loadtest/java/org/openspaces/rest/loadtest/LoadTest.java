@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.webapp.WebAppContext;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * End to end load test: starts the webapp in an embedded Jetty against an embedded space and a
+ * simulated backend, then drives open model load at it and reports latency percentiles of the
+ * hit and miss paths separately.
+ * <p>
+ * Requests arrive as a Poisson process of {@code loadtest.rate} per second regardless of how fast
+ * they are answered, and latency is measured from the time a request was due rather than from
+ * the time it was sent, so a stalled server shows up in the percentiles instead of slowing the
+ * load down (no coordinated omission). Keys are drawn from a Zipfian distribution. A request is
+ * counted as a miss when it was due before the first successful response for its key, i.e. its
+ * document could not have been in the space yet; evictions after that are not detected, so with
+ * short leases the hit percentiles include some reloads.
+ * <p>
+ * Everything is configured with system properties:
+ * <ul>
+ * <li>{@code loadtest.port}, default 8080</li>
+ * <li>{@code loadtest.rate}, requests per second, default 500</li>
+ * <li>{@code loadtest.durationSeconds}, default 60, of which the first {@code
+ * loadtest.warmUpSeconds} (default 0) are not reported</li>
+ * <li>{@code loadtest.keys}, number of accounts in the backend, default 10000</li>
+ * <li>{@code loadtest.zipfExponent}, default 0.99</li>
+ * <li>{@code loadtest.paths}, comma separated request paths with {@code %d} for the key, default
+ * {@code /v1/accounts/%d}</li>
+ * <li>{@code loadtest.latency} and {@code loadtest.errorRate}, the backend latency model, see
+ * {@link org.openspaces.rest.data.LatencyModels}, default {@code lognormal(median=20,sigma=0.8)}
+ * and 0</li>
+ * <li>{@code loadtest.connections}, client connections, default 256, {@code
+ * loadtest.serverThreads}, default 200, and {@code loadtest.timeoutMillis}, default 30000</li>
+ * <li>{@code loadtest.reportSeconds}, interval of the progress lines, default 5</li>
+ * <li>{@code loadtest.output}, a directory to write the HdrHistogram percentile distributions
+ * to, optional</li>
+ * </ul>
+ * Any other webapp setting, e.g. {@code -DnearCacheSize=0}, is passed as a system property too.
+ */
+public class LoadTest {
+    private static final Logger logger = Logger.getLogger(LoadTest.class.getName());
+    private static final String SPACE_NAME = "/./loadtest";
+
+    private final int port = Integer.getInteger("loadtest.port", 8080);
+    private final double rate = Double.parseDouble(System.getProperty("loadtest.rate", "500"));
+    private final long durationSeconds = Long.getLong("loadtest.durationSeconds", 60);
+    private final long warmUpSeconds = Long.getLong("loadtest.warmUpSeconds", 0);
+    private final int keys = Integer.getInteger("loadtest.keys", 10000);
+    private final double zipfExponent = Double.parseDouble(System.getProperty("loadtest.zipfExponent", "0.99"));
+    private final String[] paths = System.getProperty("loadtest.paths", "/v1/accounts/%d").split(",");
+    private final String latency = System.getProperty("loadtest.latency", "lognormal(median=20,sigma=0.8)");
+    private final String errorRate = System.getProperty("loadtest.errorRate", "0");
+    private final int connections = Integer.getInteger("loadtest.connections", 256);
+    private final int serverThreads = Integer.getInteger("loadtest.serverThreads", 200);
+    private final long timeoutMillis = Long.getLong("loadtest.timeoutMillis", 30000);
+    private final long reportSeconds = Long.getLong("loadtest.reportSeconds", 5);
+    private final String output = System.getProperty("loadtest.output");
+
+    private final Recorder hits = new Recorder(3);
+    private final Recorder misses = new Recorder(3);
+    private final Recorder failures = new Recorder(3);
+    private final Histogram totalHits = new Histogram(3);
+    private final Histogram totalMisses = new Histogram(3);
+    private final Histogram totalFailures = new Histogram(3);
+    private final AtomicIntegerArray loaded;
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final ZipfianGenerator keyGenerator;
+
+    private Server server;
+    private HttpClient client;
+    private String baseUrl;
+    private long lastCollect;
+
+    public LoadTest() {
+        loaded = new AtomicIntegerArray(paths.length * keys);
+        keyGenerator = new ZipfianGenerator(keys, zipfExponent);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+    }
+
+    public void run() throws Exception {
+        startServer();
+        try {
+            startClient();
+            awaitReady();
+            System.out.println(String.format("Driving %.0f requests/s for %ds over %d keys (zipf %.2f, top 1%% of keys get %.0f%% of requests), backend %s",
+                    rate, durationSeconds, keys, zipfExponent, keyGenerator.share(keys / 100) * 100, latency));
+            drive();
+            report();
+        } finally {
+            if (client != null)
+                client.stop();
+            server.stop();
+        }
+    }
+
+    private void startServer() throws Exception {
+        // the webapp settings fall back to system properties, warm up is off so the misses are measured
+        setDefault("backendSize", String.valueOf(keys));
+        setDefault("backendLatency", latency);
+        setDefault("backendErrorRate", errorRate);
+        setDefault("warmUp", "false");
+
+        server = new Server(new QueuedThreadPool(serverThreads));
+        ServerConnector connector = new ServerConnector(server);
+        connector.setPort(port);
+        server.addConnector(connector);
+
+        WebAppContext webapp = new WebAppContext("src/main/webapp", "/");
+        webapp.setParentLoaderPriority(true);
+        webapp.setInitParameter("spaceName", SPACE_NAME);
+        server.setHandler(webapp);
+        server.start();
+        baseUrl = "http://localhost:" + port;
+        logger.info("Started webapp on " + baseUrl + " against space " + SPACE_NAME);
+    }
+
+    private static void setDefault(String name, String value) {
+        if (System.getProperty(name) == null)
+            System.setProperty(name, value);
+    }
+
+    private void startClient() throws Exception {
+        client = new HttpClient();
+        client.setMaxConnectionsPerDestination(connections);
+        client.setMaxRequestsQueuedPerDestination(Integer.MAX_VALUE);
+        client.start();
+    }
+
+    private void awaitReady() throws Exception {
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(2);
+        while (true) {
+            try {
+                ContentResponse response = client.GET(baseUrl + "/v1/ready");
+                if (response.getStatus() == 200)
+                    return;
+            } catch (Exception e) {
+                if (System.currentTimeMillis() > deadline)
+                    throw e;
+            }
+            if (System.currentTimeMillis() > deadline)
+                throw new IllegalStateException("Webapp not ready after 2 minutes");
+            Thread.sleep(200);
+        }
+    }
+
+    /**
+     * Sends the requests at their due times from this thread and reports progress every
+     * reportSeconds.
+     */
+    private void drive() throws InterruptedException {
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long warmUpEnd = start + TimeUnit.SECONDS.toNanos(warmUpSeconds);
+        long nextReport = start + TimeUnit.SECONDS.toNanos(reportSeconds);
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long due = start;
+        lastCollect = start;
+        while (due < end) {
+            long now = System.nanoTime();
+            while (now < due) {
+                LockSupport.parkNanos(due - now);
+                now = System.nanoTime();
+            }
+            if (now >= nextReport) {
+                collect(now, start, warmUpEnd);
+                nextReport += TimeUnit.SECONDS.toNanos(reportSeconds);
+            }
+            send(due);
+            due += (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanGapNanos);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        collect(System.nanoTime(), start, warmUpEnd);
+        if (inFlight.get() > 0)
+            System.out.println(inFlight.get() + " requests still in flight at the end of the run");
+    }
+
+    private void send(final long due) {
+        final int pathIndex = paths.length == 1 ? 0 : ThreadLocalRandom.current().nextInt(paths.length);
+        final int key = keyGenerator.next();
+        final int slot = pathIndex * keys + key;
+        final boolean hit = loaded.get(slot) != 0;
+        sent.incrementAndGet();
+        inFlight.incrementAndGet();
+        client.newRequest(baseUrl + String.format(paths[pathIndex], key))
+                .timeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .send(new BufferingResponseListener() {
+                    @Override
+                    public void onComplete(Result result) {
+                        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due);
+                        int status = result.getResponse() == null ? 0 : result.getResponse().getStatus();
+                        if (!result.isFailed() && status >= 200 && status < 300) {
+                            (hit ? hits : misses).recordValue(micros);
+                            loaded.set(slot, 1);
+                        } else {
+                            failures.recordValue(micros);
+                        }
+                        inFlight.decrementAndGet();
+                    }
+                });
+    }
+
+    private void collect(long now, long start, long warmUpEnd) {
+        Histogram intervalHits = hits.getIntervalHistogram();
+        Histogram intervalMisses = misses.getIntervalHistogram();
+        Histogram intervalFailures = failures.getIntervalHistogram();
+        double seconds = (now - lastCollect) / 1e9;
+        lastCollect = now;
+        Histogram interval = new Histogram(3);
+        interval.add(intervalHits);
+        interval.add(intervalMisses);
+        interval.add(intervalFailures);
+        System.out.println(String.format("%6.1fs  sent %9d  in flight %6d  completed %8.0f/s  misses %6d  errors %6d  p99 %9.2f ms  max %9.2f ms",
+                (now - start) / 1e9, sent.get(), inFlight.get(), interval.getTotalCount() / seconds,
+                intervalMisses.getTotalCount(), intervalFailures.getTotalCount(),
+                interval.getValueAtPercentile(99) / 1000.0, interval.getMaxValue() / 1000.0));
+        if (now < warmUpEnd)
+            return;
+        totalHits.add(intervalHits);
+        totalMisses.add(intervalMisses);
+        totalFailures.add(intervalFailures);
+    }
+
+    private void report() throws Exception {
+        Histogram all = new Histogram(3);
+        all.add(totalHits);
+        all.add(totalMisses);
+        all.add(totalFailures);
+        double seconds = durationSeconds - warmUpSeconds;
+
+        System.out.println();
+        System.out.println(String.format("%-8s %10s %10s %10s %10s %10s %10s", "", "count", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        printRow("hit", totalHits, seconds);
+        printRow("miss", totalMisses, seconds);
+        printRow("error", totalFailures, seconds);
+        printRow("all", all, seconds);
+
+        if (output != null) {
+            File dir = new File(output);
+            dir.mkdirs();
+            writeDistribution(new File(dir, "hit.hgrm"), totalHits);
+            writeDistribution(new File(dir, "miss.hgrm"), totalMisses);
+            writeDistribution(new File(dir, "all.hgrm"), all);
+            System.out.println("Percentile distributions written to " + dir.getAbsolutePath());
+        }
+    }
+
+    private static void printRow(String name, Histogram histogram, double seconds) {
+        if (histogram.getTotalCount() == 0) {
+            System.out.println(String.format("%-8s %10d", name, 0));
+            return;
+        }
+        System.out.println(String.format("%-8s %10d %10.1f %10.2f %10.2f %10.2f %10.2f", name,
+                histogram.getTotalCount(), histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0));
+    }
+
+    private static void writeDistribution(File file, Histogram histogram) throws Exception {
+        PrintStream out = new PrintStream(new FileOutputStream(file), false, "UTF-8");
+        try {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.loadtest;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws keys 0..n-1 with the probability of the key of popularity rank k proportional to
+ * 1/k^exponent. The ranks are shuffled with a fixed seed so the hot keys are spread over the id
+ * range instead of being the lowest ids.
+ */
+public class ZipfianGenerator {
+    private final double[] cdf;
+    private final int[] keyOfRank;
+
+    public ZipfianGenerator(int n, double exponent) {
+        if (n <= 0)
+            throw new IllegalArgumentException("n must be positive");
+        cdf = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cdf[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++)
+            cdf[rank] /= sum;
+
+        keyOfRank = new int[n];
+        for (int i = 0; i < n; i++)
+            keyOfRank[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int key = keyOfRank[i];
+            keyOfRank[i] = keyOfRank[j];
+            keyOfRank[j] = key;
+        }
+    }
+
+    public int next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        int low = 0;
+        int high = cdf.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cdf[mid] < u)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return keyOfRank[low];
+    }
+
+    /**
+     * Share of the draws that fall on the {@code top} most popular keys.
+     */
+    public double share(int top) {
+        return top <= 0 ? 0 : cdf[Math.min(top, cdf.length) - 1];
+    }
+}
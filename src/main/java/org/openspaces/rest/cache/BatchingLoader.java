@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import com.gigaspaces.document.SpaceDocument;
+import org.HdrHistogram.Histogram;
+import org.openspaces.rest.data.BackendLoader;
+import org.openspaces.rest.exceptions.RestException;
+import org.openspaces.rest.exceptions.ServiceUnavailableException;
+import org.openspaces.rest.metrics.TypeMetrics;
+import org.openspaces.rest.utils.Deadline;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects the single key loads of a space type into micro batches: the first key opens a batch
+ * that is sent to the backend with one {@link BackendLoader#loadAll} call once the window has
+ * passed or the batch is full, whichever comes first, and every caller's future completes with
+ * the document of its key (null if the backend does not know it). Keys requested twice within a
+ * window share one future. With a window of 0 or a maximum batch size of 1 every load is sent on
+ * its own.
+ *
+ * Backend calls of the type go through a bulkhead: at most {@code maxConcurrentCalls} run at a
+ * time and calls beyond that fail right away with a {@link ServiceUnavailableException}, so a
+ * slow backend cannot tie up the threads of the other types. A call still running after the
+ * hedge percentile of the type's backend latency is hedged with a second call for the same keys
+ * if the bulkhead has room, and the first answer wins. A batch is carried out for the latest
+ * deadline of its keys; batches whose deadline passed before they were sent are failed without
+ * a backend call.
+ */
+public class BatchingLoader {
+    private static final long MIN_HEDGE_SAMPLES = 100;
+    private static final long HEDGE_DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String typeName;
+    private final BackendLoader backend;
+    private final TypeMetrics metrics;
+    private final int maxBatchSize;
+    private final long windowMicros;
+    private final ScheduledExecutorService timer;
+    private final Executor executor;
+    private final int maxConcurrentCalls;
+    private final Semaphore bulkhead;
+    private final double hedgePercentile;
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private volatile long hedgeDelayMicros = -1;
+    private volatile long hedgeDelayComputedAt = System.nanoTime() - HEDGE_DELAY_REFRESH_NANOS;
+    private final Object lock = new Object();
+    private Batch pending;
+
+    /**
+     * @param timer           closes batches when their window ends and starts hedged calls
+     * @param executor        runs the backend calls, must not be the executor of the threads
+     *                        waiting for them or a full pool of waiters would never see its batch run
+     * @param hedgePercentile latency percentile after which a call is hedged, 0 disables hedging
+     */
+    public BatchingLoader(String typeName, BackendLoader backend, TypeMetrics metrics, int maxBatchSize, long windowMicros,
+                          ScheduledExecutorService timer, Executor executor, int maxConcurrentCalls, double hedgePercentile) {
+        this.typeName = typeName;
+        this.backend = backend;
+        this.metrics = metrics;
+        this.maxBatchSize = maxBatchSize;
+        this.windowMicros = windowMicros;
+        this.timer = timer;
+        this.executor = executor;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public boolean isBatching() {
+        return maxBatchSize > 1 && windowMicros > 0;
+    }
+
+    /**
+     * Adds the key to the open batch, or sends it right away when batching is off.
+     */
+    public CompletableFuture<SpaceDocument> load(String key, Deadline deadline) {
+        if (!isBatching()) {
+            Batch single = new Batch();
+            single.add(key, deadline);
+            dispatch(single);
+            return single.futures.get(key);
+        }
+        CompletableFuture<SpaceDocument> future;
+        Batch full = null;
+        synchronized (lock) {
+            if (pending == null) {
+                final Batch batch = new Batch();
+                timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (lock) {
+                            if (pending != batch)
+                                return;
+                            pending = null;
+                        }
+                        dispatch(batch);
+                    }
+                }, windowMicros, TimeUnit.MICROSECONDS);
+                pending = batch;
+            }
+            future = pending.add(key, deadline);
+            if (pending.futures.size() >= maxBatchSize) {
+                full = pending;
+                pending = null;
+            }
+        }
+        if (full != null)
+            dispatch(full);
+        return future;
+    }
+
+    /**
+     * Blocks until the document of the key is loaded or the deadline passed, rethrowing the
+     * failure of its batch.
+     */
+    public SpaceDocument get(String key, Deadline deadline) throws Exception {
+        return await(load(key, deadline), deadline);
+    }
+
+    /**
+     * Loads the given keys with a single, possibly hedged, backend call and waits for it until
+     * the deadline passed.
+     */
+    public Map<String, SpaceDocument> loadAll(Collection<String> keys, Deadline deadline) throws Exception {
+        return await(call(keys, deadline), deadline);
+    }
+
+    /**
+     * Runs a backend call of the type other than a key lookup, e.g. a page of a listing, through
+     * the bulkhead and waits for it until the deadline passed. Like loads, the call fails right
+     * away when the bulkhead is full and is not made once the deadline passed. It is not hedged.
+     */
+    public <T> T call(final Callable<T> call, Deadline deadline) throws Exception {
+        if (deadline.isExpired())
+            throw deadline.exceeded("before loading " + typeName + " from backend");
+        if (!bulkhead.tryAcquire()) {
+            rejections.incrementAndGet();
+            throw rejected();
+        }
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        result.complete(call.call());
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                    } finally {
+                        bulkhead.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            throw e;
+        }
+        return await(result, deadline);
+    }
+
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    /**
+     * Backend calls of the type running or waiting for a thread, hedges included.
+     */
+    public int getCallsInFlight() {
+        return maxConcurrentCalls - bulkhead.availablePermits();
+    }
+
+    /**
+     * Waits until the deadline passed, which for a {@link Deadline#shared shared} deadline may
+     * move out while waiting.
+     */
+    private <T> T await(CompletableFuture<T> future, Deadline deadline) throws Exception {
+        try {
+            while (true) {
+                try {
+                    return future.get(Math.max(deadline.remainingNanos(), 0), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if (deadline.isExpired())
+                        throw deadline.exceeded("loading " + typeName + " from backend");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RestException("Interrupted while waiting for " + typeName + " load");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+                throw (Exception) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw e;
+        }
+    }
+
+    private void dispatch(final Batch batch) {
+        call(batch.futures.keySet(), batch.deadline).whenComplete(new BiConsumer<Map<String, SpaceDocument>, Throwable>() {
+            @Override
+            public void accept(Map<String, SpaceDocument> loaded, Throwable t) {
+                for (Map.Entry<String, CompletableFuture<SpaceDocument>> entry : batch.futures.entrySet()) {
+                    if (t != null)
+                        entry.getValue().completeExceptionally(t);
+                    else
+                        entry.getValue().complete(loaded.get(entry.getKey()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts a backend call for the keys and schedules its hedge.
+     */
+    private CompletableFuture<Map<String, SpaceDocument>> call(final Collection<String> keys, final Deadline deadline) {
+        final CompletableFuture<Map<String, SpaceDocument>> result = new CompletableFuture<Map<String, SpaceDocument>>();
+        if (deadline.isExpired()) {
+            result.completeExceptionally(deadline.exceeded("before loading " + typeName + " from backend"));
+            return result;
+        }
+        final AtomicInteger running = new AtomicInteger();
+        if (!attempt(keys, result, running)) {
+            rejections.incrementAndGet();
+            result.completeExceptionally(rejected());
+            return result;
+        }
+        long hedgeDelay = hedgeDelayMicros();
+        if (hedgeDelay > 0 && TimeUnit.MICROSECONDS.toNanos(hedgeDelay) < deadline.remainingNanos()) {
+            try {
+                timer.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!result.isDone() && !deadline.isExpired() && attempt(keys, result, running))
+                            hedges.incrementAndGet();
+                    }
+                }, hedgeDelay, TimeUnit.MICROSECONDS);
+            } catch (RejectedExecutionException e) {
+                //shutting down, the first call still answers
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs one backend call if the bulkhead has room. The result completes with the first
+     * answer, or with the failure of the last call still running.
+     */
+    private boolean attempt(final Collection<String> keys, final CompletableFuture<Map<String, SpaceDocument>> result,
+                            final AtomicInteger running) {
+        if (!bulkhead.tryAcquire())
+            return false;
+        running.incrementAndGet();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    try {
+                        Map<String, SpaceDocument> loaded = backend.loadAll(keys);
+                        metrics.loaded(start, keys.size(), false);
+                        result.complete(loaded);
+                    } catch (Throwable t) {
+                        metrics.loaded(start, keys.size(), true);
+                        if (running.decrementAndGet() == 0)
+                            result.completeExceptionally(t);
+                    } finally {
+                        bulkhead.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            if (running.decrementAndGet() == 0)
+                result.completeExceptionally(e);
+        }
+        return true;
+    }
+
+    private ServiceUnavailableException rejected() {
+        return new ServiceUnavailableException("Too many concurrent " + typeName + " backend calls, try again later");
+    }
+
+    /**
+     * The hedge percentile of the backend latency of the last minute, recomputed at most once a
+     * second and only when enough calls were seen in that minute to make it meaningful.
+     */
+    private long hedgeDelayMicros() {
+        if (hedgePercentile <= 0)
+            return -1;
+        long now = System.nanoTime();
+        if (now - hedgeDelayComputedAt > HEDGE_DELAY_REFRESH_NANOS) {
+            hedgeDelayComputedAt = now;
+            Histogram latency = metrics.getRecentLoadLatency().snapshot();
+            hedgeDelayMicros = latency.getTotalCount() < MIN_HEDGE_SAMPLES ? -1 : latency.getValueAtPercentile(hedgePercentile);
+        }
+        return hedgeDelayMicros;
+    }
+
+    private static class Batch {
+        private final Map<String, CompletableFuture<SpaceDocument>> futures = new LinkedHashMap<String, CompletableFuture<SpaceDocument>>();
+        private Deadline deadline;
+
+        CompletableFuture<SpaceDocument> add(String key, Deadline keyDeadline) {
+            deadline = Deadline.latest(deadline, keyDeadline);
+            CompletableFuture<SpaceDocument> future = futures.get(key);
+            if (future == null) {
+                future = new CompletableFuture<SpaceDocument>();
+                futures.put(key, future);
+            }
+            return future;
+        }
+    }
+}
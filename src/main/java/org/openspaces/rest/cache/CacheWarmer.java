@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import com.gigaspaces.client.WriteModifiers;
+import com.gigaspaces.document.SpaceDocument;
+
+import org.openspaces.core.GigaSpace;
+import org.openspaces.rest.utils.ControllerUtils;
+import org.openspaces.rest.utils.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Preloads the space from the backend before traffic arrives. Every registered source is split
+ * into chunks of keys; the chunks of all sources are loaded in parallel on a worker pool and each
+ * chunk is written to the space with a single writeMultiple.
+ *
+ * {@link #isReady()} only becomes true once every chunk was processed (or immediately when there
+ * is nothing to warm up), so it can back a readiness probe.
+ */
+public class CacheWarmer {
+    private static final Logger logger = Logger.getLogger(CacheWarmer.class.getName());
+
+    private final ControllerUtils.XapConnectionCache xapCache;
+    private final int threads;
+    private final int chunkSize;
+    private final List<Source> sources = new ArrayList<Source>();
+    private final AtomicInteger chunksTotal = new AtomicInteger();
+    private final AtomicInteger chunksDone = new AtomicInteger();
+    private final AtomicInteger chunksFailed = new AtomicInteger();
+    private final AtomicLong documentsWritten = new AtomicLong();
+    private volatile String state = "idle";
+    private volatile boolean ready;
+    private volatile long startTime;
+    private volatile long endTime;
+    private ExecutorService executor;
+
+    public CacheWarmer(ControllerUtils.XapConnectionCache xapCache, int threads, int chunkSize) {
+        this.xapCache = xapCache;
+        this.threads = Math.max(1, threads);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Registers a data set to preload.
+     *
+     * @param ttl    lease policy of the type, the documents are written with its base lease
+     * @param keys   the keys to load, split into chunks of {@code chunkSize}
+     * @param loader loads the documents of a chunk of keys from the backend in one call
+     */
+    public void addSource(TtlPolicy ttl, Collection<String> keys, Function<Collection<String>, Collection<SpaceDocument>> loader) {
+        //key lists of the synthetic backends compute their keys on access, copying them would hold them all
+        List<String> keyList = keys instanceof List && keys instanceof RandomAccess ? (List<String>) keys : new ArrayList<String>(keys);
+        sources.add(new Source(ttl, keyList, loader));
+    }
+
+    /**
+     * Starts loading all registered sources in the background and returns immediately.
+     */
+    public synchronized void start() {
+        startTime = System.currentTimeMillis();
+        List<Runnable> chunks = new ArrayList<Runnable>();
+        for (final Source source : sources) {
+            for (int from = 0; from < source.keys.size(); from += chunkSize) {
+                final List<String> chunk = source.keys.subList(from, Math.min(from + chunkSize, source.keys.size()));
+                chunks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        loadChunk(source, chunk);
+                    }
+                });
+            }
+        }
+        chunksTotal.set(chunks.size());
+        if (chunks.isEmpty()) {
+            complete();
+            return;
+        }
+        state = "running";
+        logger.info("Warm up started: " + chunks.size() + " chunks of up to " + chunkSize + " keys on " + threads + " threads");
+        executor = Executors.newFixedThreadPool(threads, new NamedThreadFactory("space-warm-up"));
+        for (Runnable chunk : chunks) {
+            executor.execute(chunk);
+        }
+        executor.shutdown();
+    }
+
+    public synchronized void close() {
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new LinkedHashMap<String, Object>();
+        progress.put("ready", ready);
+        progress.put("state", state);
+        progress.put("chunksTotal", chunksTotal.get());
+        progress.put("chunksDone", chunksDone.get());
+        progress.put("chunksFailed", chunksFailed.get());
+        progress.put("documentsWritten", documentsWritten.get());
+        Map<String, Object> perType = new LinkedHashMap<String, Object>();
+        for (Source source : sources) {
+            perType.put(source.type, source.written.get());
+        }
+        progress.put("documentsWrittenPerType", perType);
+        if (startTime > 0)
+            progress.put("durationMillis", (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime);
+        return progress;
+    }
+
+    private void loadChunk(Source source, List<String> keys) {
+        try {
+            Collection<SpaceDocument> docs = source.loader.apply(keys);
+            if (!docs.isEmpty()) {
+                long lease = source.ttl.leaseFor(null);
+                SpaceDocument[] stamped = new SpaceDocument[docs.size()];
+                int i = 0;
+                for (SpaceDocument doc : docs) {
+                    stamped[i++] = source.ttl.stamp(doc, lease);
+                }
+                GigaSpace gigaSpace = xapCache.get();
+                gigaSpace.writeMultiple(stamped, source.ttl.spaceLease(lease), WriteModifiers.UPDATE_OR_WRITE);
+                source.written.addAndGet(docs.size());
+                documentsWritten.addAndGet(docs.size());
+            }
+        } catch (RuntimeException e) {
+            chunksFailed.incrementAndGet();
+            if (logger.isLoggable(Level.WARNING))
+                logger.log(Level.WARNING, "failed to warm up a chunk of " + keys.size() + " " + source.type + " keys", e);
+        }
+        int done = chunksDone.incrementAndGet();
+        if (logger.isLoggable(Level.FINE))
+            logger.fine("Warm up progress: " + done + "/" + chunksTotal.get() + " chunks");
+        if (done == chunksTotal.get())
+            complete();
+    }
+
+    private void complete() {
+        endTime = System.currentTimeMillis();
+        state = chunksFailed.get() == 0 ? "completed" : "completed with failures";
+        ready = true;
+        logger.info("Warm up " + state + " in " + (endTime - startTime) + " ms, " + documentsWritten.get() + " documents written");
+    }
+
+    private static class Source {
+        private final TtlPolicy ttl;
+        private final String type;
+        private final List<String> keys;
+        private final Function<Collection<String>, Collection<SpaceDocument>> loader;
+        private final AtomicLong written = new AtomicLong();
+
+        Source(TtlPolicy ttl, List<String> keys, Function<Collection<String>, Collection<SpaceDocument>> loader) {
+            this.ttl = ttl;
+            this.type = ttl.getTypeName();
+            this.keys = keys;
+            this.loader = loader;
+        }
+    }
+}
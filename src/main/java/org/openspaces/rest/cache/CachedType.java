@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import com.gigaspaces.document.SpaceDocument;
+import org.openspaces.rest.metrics.TypeMetrics;
+
+/**
+ * Groups the per type caching state used by the read-through handlers: the load coalescing, the
+ * near cache, the lease policy, the negative cache, the backend loader and the metrics of a single
+ * space type.
+ */
+public class CachedType {
+    private final String typeName;
+    private final SingleFlight<SpaceDocument> flight;
+    private final NearCache nearCache;
+    private final TtlPolicy ttl;
+    private final NegativeCache negativeCache;
+    private final BatchingLoader loader;
+    private final TypeMetrics metrics;
+
+    public CachedType(String typeName, NearCache nearCache, TtlPolicy ttl, NegativeCache negativeCache,
+                      BatchingLoader loader, TypeMetrics metrics) {
+        this.typeName = typeName;
+        this.flight = new SingleFlight<SpaceDocument>(typeName);
+        this.nearCache = nearCache;
+        this.ttl = ttl;
+        this.negativeCache = negativeCache;
+        this.loader = loader;
+        this.metrics = metrics;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public SingleFlight<SpaceDocument> getFlight() {
+        return flight;
+    }
+
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+
+    public TtlPolicy getTtl() {
+        return ttl;
+    }
+
+    public NegativeCache getNegativeCache() {
+        return negativeCache;
+    }
+
+    public BatchingLoader getLoader() {
+        return loader;
+    }
+
+    public TypeMetrics getMetrics() {
+        return metrics;
+    }
+}
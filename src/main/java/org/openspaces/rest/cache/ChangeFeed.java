@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.gigaspaces.document.SpaceDocument;
+import com.gigaspaces.events.NotifyActionType;
+import com.j_spaces.core.client.EntryArrivedRemoteEvent;
+
+import org.openspaces.core.GigaSpace;
+import org.openspaces.events.SpaceDataEventListener;
+import org.openspaces.events.notify.SimpleNotifyContainerConfigurer;
+import org.openspaces.events.notify.SimpleNotifyEventListenerContainer;
+import org.openspaces.rest.utils.ControllerUtils;
+import org.openspaces.rest.utils.NamedThreadFactory;
+import org.openspaces.rest.utils.SpaceDocumentSerializer;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pushes write, update, take and lease expiration events of the cached types to Server-Sent
+ * Events subscribers.
+ *
+ * Every event gets a sequence number of this node and is kept in a bounded history, so a client
+ * reconnecting with the id of the last event it received gets what it missed replayed. A client
+ * that fell behind the history gets a {@code reset} event and has to re-read what it tracks.
+ *
+ * Each subscriber has a bounded buffer in which a newer event for a key replaces the pending one,
+ * so a slow client receives the latest state of every key rather than every intermediate update.
+ * A client with more pending keys than its buffer holds is sent an {@code overflow} event and
+ * disconnected, it resumes from the history after reconnecting. Buffers are drained by a small
+ * shared sender pool, no thread is held per subscriber.
+ */
+public class ChangeFeed {
+    private static final Logger logger = Logger.getLogger(ChangeFeed.class.getName());
+
+    private final int historySize;
+    private final int clientBufferSize;
+    private final long heartbeatMillis;
+    private final Event[] history;
+    private long sequence;
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    private final List<SimpleNotifyEventListenerContainer> containers = new ArrayList<SimpleNotifyEventListenerContainer>();
+    private final Object subscriptionLock = new Object();
+    private GigaSpace subscribedSpace;
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeats;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+
+    public ChangeFeed(int historySize, int clientBufferSize, int senderThreads, long heartbeatMillis) {
+        this.historySize = Math.max(1, historySize);
+        this.clientBufferSize = Math.max(1, clientBufferSize);
+        this.heartbeatMillis = heartbeatMillis;
+        this.history = new Event[this.historySize];
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("change-feed"));
+        this.heartbeats = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("change-feed-heartbeat"));
+    }
+
+    /**
+     * Subscribes to the changes of the given types in the space. Called again after a switch to
+     * another cluster, it moves the subscriptions to the new space and sends every subscriber a
+     * {@code reset} event, as changes made while switching are not in the history.
+     */
+    public void start(GigaSpace gigaSpace, List<CachedType> cachedTypes) {
+        synchronized (subscriptionLock) {
+            subscribe(gigaSpace, cachedTypes);
+        }
+    }
+
+    private void subscribe(GigaSpace gigaSpace, List<CachedType> cachedTypes) {
+        if (gigaSpace == subscribedSpace)
+            return;
+        boolean restart = subscribedSpace != null;
+        for (SimpleNotifyEventListenerContainer container : containers) {
+            container.destroy();
+        }
+        containers.clear();
+        subscribedSpace = gigaSpace;
+        for (CachedType cachedType : cachedTypes) {
+            final String typeName = cachedType.getTypeName();
+            final NearCache keys = cachedType.getNearCache();
+            containers.add(new SimpleNotifyContainerConfigurer(gigaSpace)
+                    .template(new SpaceDocument(typeName))
+                    .notifyWrite(true)
+                    .notifyUpdate(true)
+                    .notifyTake(true)
+                    .notifyLease(true)
+                    .eventListener(new SpaceDataEventListener<SpaceDocument>() {
+                        @Override
+                        public void onEvent(SpaceDocument data, GigaSpace gigaSpace, TransactionStatus txStatus, Object source) {
+                            if (data != null)
+                                publish(typeName, keys.keyOf(data), actionOf(source), data);
+                        }
+                    }).notifyContainer());
+        }
+        if (restart) {
+            for (Client client : clients) {
+                client.reset = true;
+                schedule(client);
+            }
+            logger.info("Change feed moved to the new space endpoint");
+            return;
+        }
+        if (heartbeatMillis > 0) {
+            heartbeats.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    for (Client client : clients) {
+                        client.heartbeatDue = true;
+                        schedule(client);
+                    }
+                }
+            }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Change feed subscribed to space notifications of " + cachedTypes.size() + " types");
+    }
+
+    public void close() {
+        synchronized (subscriptionLock) {
+            for (SimpleNotifyEventListenerContainer container : containers) {
+                container.destroy();
+            }
+            containers.clear();
+            subscribedSpace = null;
+        }
+        heartbeats.shutdownNow();
+        senders.shutdownNow();
+        for (Client client : clients) {
+            client.emitter.complete();
+        }
+        clients.clear();
+    }
+
+    /**
+     * Registers the emitter for events of the given types with a sequence number greater than
+     * {@code lastSequence}, -1 to receive new events only.
+     */
+    public void subscribe(Set<String> types, long lastSequence, SseEmitter emitter) {
+        final Client client = new Client(types, emitter);
+        Runnable remove = new Runnable() {
+            @Override
+            public void run() {
+                clients.remove(client);
+            }
+        };
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        synchronized (this) {
+            if (lastSequence >= 0) {
+                long oldest = Math.max(1, sequence - historySize + 1);
+                if (lastSequence + 1 < oldest)
+                    client.reset = true;
+                for (long seq = Math.max(lastSequence + 1, oldest); seq <= sequence; seq++) {
+                    client.offer(history[(int) (seq % historySize)], false);
+                }
+            }
+            clients.add(client);
+        }
+        schedule(client);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<String, Object>();
+        synchronized (this) {
+            stats.put("sequence", sequence);
+        }
+        stats.put("subscribers", clients.size());
+        stats.put("published", published.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("overflows", overflows.get());
+        return stats;
+    }
+
+    private void publish(String typeName, String key, String action, SpaceDocument doc) {
+        String json;
+        try {
+            json = toJson(typeName, key, action, doc);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "failed to serialize change of " + typeName + " " + key, e);
+            return;
+        }
+        synchronized (this) {
+            Event event = new Event(++sequence, typeName, key, action, json);
+            history[(int) (event.sequence % historySize)] = event;
+            published.incrementAndGet();
+            for (Client client : clients) {
+                if (client.offer(event, true))
+                    schedule(client);
+            }
+        }
+    }
+
+    private void schedule(final Client client) {
+        if (!client.scheduled.compareAndSet(false, true))
+            return;
+        try {
+            senders.execute(new Runnable() {
+                @Override
+                public void run() {
+                    drain(client);
+                }
+            });
+        } catch (RuntimeException e) {
+            client.scheduled.set(false);
+        }
+    }
+
+    private void drain(Client client) {
+        try {
+            while (true) {
+                List<Event> events = client.takeAll();
+                if (client.reset) {
+                    client.reset = false;
+                    client.emitter.send(SseEmitter.event().name("reset").data("{}"));
+                }
+                for (Event event : events) {
+                    client.emitter.send(SseEmitter.event().id(Long.toString(event.sequence)).name(event.action).data(event.json));
+                }
+                if (client.overflowed) {
+                    overflows.incrementAndGet();
+                    clients.remove(client);
+                    client.emitter.send(SseEmitter.event().name("overflow").data("{}"));
+                    client.emitter.complete();
+                    return;
+                }
+                if (client.heartbeatDue) {
+                    client.heartbeatDue = false;
+                    if (events.isEmpty())
+                        client.emitter.send(SseEmitter.event().comment("keep-alive"));
+                }
+                client.scheduled.set(false);
+                if (!client.hasPending() || !client.scheduled.compareAndSet(false, true))
+                    return;
+            }
+        } catch (IOException | IllegalStateException e) {
+            //the client went away
+            clients.remove(client);
+            client.scheduled.set(false);
+            client.emitter.completeWithError(e);
+        }
+    }
+
+    private static String actionOf(Object source) {
+        if (source instanceof EntryArrivedRemoteEvent) {
+            NotifyActionType type = ((EntryArrivedRemoteEvent) source).getNotifyActionType();
+            if (type.isWrite())
+                return "write";
+            if (type.isUpdate())
+                return "update";
+            if (type.isTake())
+                return "take";
+            if (type.isLeaseExpiration())
+                return "expire";
+        }
+        return "change";
+    }
+
+    private static String toJson(String typeName, String key, String action, SpaceDocument doc) throws IOException {
+        StringWriter out = new StringWriter();
+        JsonGenerator gen = ControllerUtils.mapper.getFactory().createGenerator(out);
+        gen.writeStartObject();
+        gen.writeStringField("type", typeName);
+        gen.writeStringField("key", key);
+        gen.writeStringField("action", action);
+        if (!"take".equals(action) && !"expire".equals(action)) {
+            gen.writeFieldName("data");
+            SpaceDocumentSerializer.writeProperties(doc, gen, ControllerUtils.mapper.getSerializerProviderInstance());
+        }
+        gen.writeEndObject();
+        gen.close();
+        return out.toString();
+    }
+
+    private static class Event {
+        private final long sequence;
+        private final String typeName;
+        private final String coalesceKey;
+        private final String action;
+        private final String json;
+
+        Event(long sequence, String typeName, String key, String action, String json) {
+            this.sequence = sequence;
+            this.typeName = typeName;
+            this.coalesceKey = typeName + "|" + key;
+            this.action = action;
+            this.json = json;
+        }
+    }
+
+    private class Client {
+        private final Set<String> types;
+        private final SseEmitter emitter;
+        private final LinkedHashMap<String, Event> pending = new LinkedHashMap<String, Event>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private int livePending;
+        private volatile boolean overflowed;
+        private volatile boolean reset;
+        private volatile boolean heartbeatDue;
+
+        Client(Set<String> types, SseEmitter emitter) {
+            this.types = types;
+            this.emitter = emitter;
+        }
+
+        /**
+         * Buffers the event, replacing a pending event of the same key. Returns false if the event
+         * is not of a subscribed type or the client already overflowed. On overflow the pending
+         * events are dropped, the client gets them from the history when it resumes. Replays of the
+         * history are not limited, they are bounded by the history size already.
+         */
+        synchronized boolean offer(Event event, boolean bounded) {
+            if (event == null || overflowed || !types.contains(event.typeName))
+                return false;
+            if (pending.remove(event.coalesceKey) != null)
+                coalesced.incrementAndGet();
+            else if (bounded)
+                livePending++;
+            pending.put(event.coalesceKey, event);
+            if (livePending > clientBufferSize) {
+                overflowed = true;
+                pending.clear();
+            }
+            return true;
+        }
+
+        synchronized List<Event> takeAll() {
+            List<Event> events = new ArrayList<Event>(pending.values());
+            pending.clear();
+            livePending = 0;
+            return events;
+        }
+
+        synchronized boolean hasPending() {
+            return !pending.isEmpty() || overflowed || reset;
+        }
+    }
+}
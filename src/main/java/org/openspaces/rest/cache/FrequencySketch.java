@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Approximate, bounded memory access counter (a count-min sketch). Counts are halved once the
+ * number of recorded accesses reaches ten times the width, so the estimate follows recent
+ * popularity rather than all time totals.
+ */
+public class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final int width;
+    private final int mask;
+    private final int sampleSize;
+    private final AtomicIntegerArray table;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    /**
+     * @param width counters per row, rounded up to a power of two of at least 16
+     */
+    public FrequencySketch(int width) {
+        int w = Math.max(16, Integer.highestOneBit(Math.max(1, width - 1) << 1));
+        this.width = w;
+        this.mask = w - 1;
+        this.sampleSize = 10 * w;
+        this.table = new AtomicIntegerArray(DEPTH * w);
+    }
+
+    public void increment(String key) {
+        int hash = spread(key.hashCode());
+        for (int i = 0; i < DEPTH; i++) {
+            table.incrementAndGet(i * width + indexOf(hash, i));
+        }
+        if (additions.incrementAndGet() >= sampleSize)
+            reset();
+    }
+
+    public int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, table.get(i * width + indexOf(hash, i)));
+        }
+        return min;
+    }
+
+    private synchronized void reset() {
+        if (additions.get() < sampleSize)
+            return;
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, table.get(i) >>> 1);
+        }
+        additions.set(sampleSize / 2);
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int h) {
+        h ^= (h >>> 17);
+        h *= 0xed5ad4bb;
+        h ^= (h >>> 11);
+        return h;
+    }
+}
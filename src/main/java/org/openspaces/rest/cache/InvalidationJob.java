@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a bulk or criteria invalidation run by {@link Invalidator}. Counters are updated
+ * while the job runs, so the job can be polled for its progress.
+ */
+public class InvalidationJob {
+    public enum State {RUNNING, COMPLETED, FAILED}
+
+    private final String id;
+    private final String typeName;
+    private final String description;
+    private final long total;
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+    private final CompletableFuture<InvalidationJob> completion = new CompletableFuture<InvalidationJob>();
+    private volatile State state = State.RUNNING;
+    private volatile String error;
+    private volatile long finishedAt;
+
+    /**
+     * @param total number of keys to invalidate, -1 when matching by criteria
+     */
+    InvalidationJob(String id, String typeName, String description, long total) {
+        this.id = id;
+        this.typeName = typeName;
+        this.description = description;
+        this.total = total;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getInvalidated() {
+        return invalidated.get();
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Completes with the job itself once it finished, or exceptionally with the failure.
+     */
+    public CompletableFuture<InvalidationJob> getCompletion() {
+        return completion;
+    }
+
+    void progress(long processedCount, long invalidatedCount) {
+        processed.addAndGet(processedCount);
+        invalidated.addAndGet(invalidatedCount);
+    }
+
+    void complete() {
+        finishedAt = System.currentTimeMillis();
+        state = State.COMPLETED;
+        completion.complete(this);
+    }
+
+    void fail(Throwable t) {
+        finishedAt = System.currentTimeMillis();
+        error = t.toString();
+        state = State.FAILED;
+        completion.completeExceptionally(t);
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("jobId", id);
+        map.put("type", typeName);
+        map.put("description", description);
+        map.put("state", state.name().toLowerCase());
+        if (total >= 0)
+            map.put("total", total);
+        map.put("processed", processed.get());
+        map.put("invalidated", invalidated.get());
+        map.put("startedAt", startedAt);
+        if (finishedAt > 0)
+            map.put("elapsedMillis", finishedAt - startedAt);
+        if (error != null)
+            map.put("error", error);
+        return map;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import com.gigaspaces.client.ClearModifiers;
+import com.gigaspaces.document.SpaceDocument;
+import com.j_spaces.core.client.SQLQuery;
+
+import org.openspaces.core.GigaSpace;
+import org.openspaces.rest.utils.ControllerUtils;
+import org.openspaces.rest.utils.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs bulk invalidations as background jobs. Lists of ids are split into chunks that are cleared
+ * concurrently with one {@code id IN (...)} clear each, criteria are taken from the space in chunks
+ * with takeMultiple. The space runs every clear and take on all partitions in parallel (or on the
+ * single partition a routing value points to). Besides the space the write behind buffer, the near
+ * cache and the negative cache of the type are invalidated as well. Types served
+ * stale-while-revalidate keep their documents in the space, they are marked stale with a change
+ * instead of being cleared or taken.
+ *
+ * Up to {@code threads} jobs run at the same time, and the chunks of all jobs share another
+ * {@code threads} threads. Finished jobs are kept for {@code jobRetentionMillis} so their result can still be polled.
+ */
+public class Invalidator {
+    private static final Logger logger = Logger.getLogger(Invalidator.class.getName());
+
+    private final ControllerUtils.XapConnectionCache xapCache;
+    private final WriteBehindBuffer writeBehind;
+    private final int chunkSize;
+    private final long jobRetentionMillis;
+    private final ExecutorService jobExecutor;
+    private final ExecutorService chunkExecutor;
+    private final ConcurrentHashMap<String, InvalidationJob> jobs = new ConcurrentHashMap<String, InvalidationJob>();
+
+    public Invalidator(ControllerUtils.XapConnectionCache xapCache, WriteBehindBuffer writeBehind, int threads,
+                       int chunkSize, long jobRetentionMillis) {
+        this.xapCache = xapCache;
+        this.writeBehind = writeBehind;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.jobRetentionMillis = jobRetentionMillis;
+        this.jobExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("invalidation-job"));
+        this.chunkExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("invalidation-chunk"));
+    }
+
+    /**
+     * Starts invalidating the given keys of the type. Keys are the space ids of the documents.
+     */
+    public InvalidationJob invalidateIds(final CachedType cachedType, final List<String> keys) {
+        final InvalidationJob job = newJob(cachedType, keys.size() + " ids", keys.size());
+        submit(job, new Runnable() {
+            @Override
+            public void run() {
+                GigaSpace gigaSpace = xapCache.get();
+                final String type = cachedType.getTypeName();
+                final String idProperty = gigaSpace.getTypeManager().getTypeDescriptor(type).getIdPropertyName();
+                List<CompletableFuture<Void>> chunks = new ArrayList<CompletableFuture<Void>>();
+                for (int from = 0; from < keys.size(); from += chunkSize) {
+                    final List<String> chunk = keys.subList(from, Math.min(keys.size(), from + chunkSize));
+                    chunks.add(CompletableFuture.runAsync(new Runnable() {
+                        @Override
+                        public void run() {
+                            invalidateChunk(job, cachedType, idProperty, chunk);
+                        }
+                    }, chunkExecutor));
+                }
+                CompletableFuture.allOf(chunks.toArray(new CompletableFuture[chunks.size()])).join();
+            }
+        });
+        return job;
+    }
+
+    /**
+     * Starts invalidating every document of the type matching the query.
+     */
+    public InvalidationJob invalidateMatching(final CachedType cachedType, final SQLQuery<SpaceDocument> query,
+                                              String description) {
+        final InvalidationJob job = newJob(cachedType, description, -1);
+        submit(job, new Runnable() {
+            @Override
+            public void run() {
+                GigaSpace gigaSpace = xapCache.get();
+                invalidateQueued(gigaSpace, cachedType.getTypeName(), query.getRouting());
+                NearCache nearCache = cachedType.getNearCache();
+                TtlPolicy ttl = cachedType.getTtl();
+                if (ttl.isServingStale()) {
+                    int changed = gigaSpace.change(query, ttl.markStale()).getNumberOfChangedEntries();
+                    nearCache.invalidateAll();
+                    job.progress(changed, changed);
+                    return;
+                }
+                while (true) {
+                    SpaceDocument[] taken = gigaSpace.takeMultiple(query, chunkSize);
+                    for (SpaceDocument doc : taken) {
+                        nearCache.invalidate(nearCache.keyOf(doc));
+                    }
+                    job.progress(taken.length, taken.length);
+                    if (taken.length == 0)
+                        break;
+                }
+            }
+        });
+        return job;
+    }
+
+    public InvalidationJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    public void close() {
+        jobExecutor.shutdownNow();
+        chunkExecutor.shutdownNow();
+    }
+
+    /**
+     * Forgets the queued documents a criteria invalidation may match so they do not land after
+     * it. Criteria cannot be matched locally, so only a routing value narrows them down to the
+     * documents routed by it; without one every queued document of the type is dropped.
+     */
+    private void invalidateQueued(GigaSpace gigaSpace, String type, final Object routing) {
+        final String routingProperty = routing == null ? null
+                : gigaSpace.getTypeManager().getTypeDescriptor(type).getRoutingPropertyName();
+        if (routingProperty == null) {
+            writeBehind.invalidateType(type);
+            return;
+        }
+        //routing values taken from paths are strings, compare them as such
+        final String routingValue = routing.toString();
+        writeBehind.invalidateType(type, new Predicate<SpaceDocument>() {
+            @Override
+            public boolean test(SpaceDocument doc) {
+                Object value = doc.getProperty(routingProperty);
+                return value != null && routingValue.equals(value.toString());
+            }
+        });
+    }
+
+    private void invalidateChunk(InvalidationJob job, CachedType cachedType, String idProperty, List<String> keys) {
+        String type = cachedType.getTypeName();
+        for (String key : keys) {
+            writeBehind.invalidate(type, key);
+        }
+        GigaSpace gigaSpace = xapCache.get();
+        SQLQuery<SpaceDocument> query = new SQLQuery<SpaceDocument>(type, idProperty + " IN (?)", keys);
+        TtlPolicy ttl = cachedType.getTtl();
+        int cleared = ttl.isServingStale()
+                ? gigaSpace.change(query, ttl.markStale()).getNumberOfChangedEntries()
+                : gigaSpace.clear(query, ClearModifiers.NONE);
+        NearCache nearCache = cachedType.getNearCache();
+        for (String key : keys) {
+            nearCache.invalidate(key);
+        }
+        cachedType.getNegativeCache().invalidateAll(gigaSpace, keys);
+        job.progress(keys.size(), cleared);
+    }
+
+    private InvalidationJob newJob(CachedType cachedType, String description, long total) {
+        expireJobs();
+        InvalidationJob job = new InvalidationJob(UUID.randomUUID().toString(), cachedType.getTypeName(), description, total);
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    private void submit(final InvalidationJob job, final Runnable work) {
+        jobExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    work.run();
+                    job.complete();
+                    if (logger.isLoggable(Level.FINE))
+                        logger.fine("invalidation job " + job.getId() + " invalidated " + job.getInvalidated() + " documents");
+                } catch (RuntimeException e) {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    logger.log(Level.WARNING, "invalidation job " + job.getId() + " failed", cause);
+                    job.fail(cause);
+                }
+            }
+        });
+    }
+
+    private void expireJobs() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<String, InvalidationJob>> it = jobs.entrySet().iterator(); it.hasNext(); ) {
+            InvalidationJob job = it.next().getValue();
+            if (job.getState() != InvalidationJob.State.RUNNING && now - job.getFinishedAt() > jobRetentionMillis)
+                it.remove();
+        }
+    }
+}
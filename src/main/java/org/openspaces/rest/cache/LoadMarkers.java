@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.cache;
+
+import com.gigaspaces.client.WriteModifiers;
+import com.gigaspaces.document.SpaceDocument;
+import com.gigaspaces.metadata.SpaceTypeDescriptor;
+import com.gigaspaces.metadata.SpaceTypeDescriptorBuilder;
+import com.gigaspaces.query.IdQuery;
+
+import org.openspaces.core.GigaSpace;
+
+import java.util.Map;
+
+/**
+ * Marks groups of documents of a type that were loaded into the space as a whole, e.g. all the
+ * transactions of an account, so a listing can tell a complete group from documents that got into
+ * the space one by one through reads by id.
+ *
+ * A marker holds the number of documents loaded. The group counts as complete while the marker
+ * lives and the space still holds at least that many documents of the group, so documents that
+ * expired or were invalidated on their own make the next listing load the group again.
+ */
+public class LoadMarkers {
+    public static final String MARKER_TYPE = "LoadMarker";
+
+    private final String typeName;
+
+    public static SpaceTypeDescriptor getType() {
+        return new SpaceTypeDescriptorBuilder(MARKER_TYPE)
+                .addFixedProperty("id", String.class)
+                .addFixedProperty("typeName", String.class)
+                .addFixedProperty("count", Integer.class)
+                .supportsDynamicProperties(false)
+                .idProperty("id", false).create();
+    }
+
+    public LoadMarkers(String typeName) {
+        this.typeName = typeName;
+    }
+
+    /**
+     * Whether the group was loaded and the space still holds all of it.
+     *
+     * @param members query of all the documents of the group, without any further filter
+     */
+    public boolean isComplete(GigaSpace gigaSpace, String group, Object members) {
+        SpaceDocument marker = gigaSpace.readById(new IdQuery<SpaceDocument>(MARKER_TYPE, markerId(group)));
+        if (marker == null)
+            return false;
+        Integer count = marker.getProperty("count");
+        return count != null && (count == 0 || gigaSpace.count(members) >= count);
+    }
+
+    /**
+     * Records that the group was loaded with the given number of documents. A marker of documents
+     * that are not written after all only costs another load, as the count check fails.
+     */
+    public void mark(GigaSpace gigaSpace, String group, int count, long lease) {
+        gigaSpace.write(marker(group, count), lease, 0, WriteModifiers.UPDATE_OR_WRITE);
+    }
+
+    /**
+     * Records several loaded groups with a single writeMultiple, by group.
+     */
+    public void markAll(GigaSpace gigaSpace, Map<String, Integer> counts, long lease) {
+        if (counts.isEmpty())
+            return;
+        SpaceDocument[] markers = new SpaceDocument[counts.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            markers[i++] = marker(entry.getKey(), entry.getValue());
+        }
+        gigaSpace.writeMultiple(markers, lease, WriteModifiers.UPDATE_OR_WRITE);
+    }
+
+    private SpaceDocument marker(String group, int count) {
+        SpaceDocument marker = new SpaceDocument(MARKER_TYPE);
+        marker.setProperty("id", markerId(group));
+        marker.setProperty("typeName", typeName);
+        marker.setProperty("count", count);
+        return marker;
+    }
+
+    private String markerId(String group) {
+        return typeName + "|" + group;
+    }
+}
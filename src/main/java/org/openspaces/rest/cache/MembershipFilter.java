@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import java.util.Collection;
+
+/**
+ * Bloom filter over the keys a backend loader can return. {@link #mightContain(String)} never
+ * answers false for a key the filter was built from, so a negative answer proves the backend does
+ * not know the key and a space miss can be answered without a backend call.
+ */
+public class MembershipFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final int keyCount;
+
+    /**
+     * Builds a filter sized for the given keys and false positive probability.
+     */
+    public MembershipFilter(Collection<String> keys, double falsePositiveRate) {
+        int n = Math.max(1, keys.size());
+        double p = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        m = Math.max(64, m);
+        this.bits = new long[(int) ((m + 63) >>> 6)];
+        this.bitCount = (long) bits.length << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.keyCount = keys.size();
+        for (String key : keys) {
+            put(key);
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            int combined = h1 + i * h2;
+            long index = (combined & 0x7fffffff) % bitCount;
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    private void put(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            int combined = h1 + i * h2;
+            long index = (combined & 0x7fffffff) % bitCount;
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a over the chars of the key followed by a murmur finalizer.
+     */
+    private static long hash64(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
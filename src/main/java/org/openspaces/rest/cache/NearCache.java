@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import com.gigaspaces.document.SpaceDocument;
+import com.gigaspaces.events.NotifyActionType;
+import com.j_spaces.core.client.EntryArrivedRemoteEvent;
+
+import org.openspaces.core.GigaSpace;
+import org.openspaces.events.SpaceDataEventListener;
+import org.openspaces.events.notify.SimpleNotifyContainerConfigurer;
+import org.openspaces.events.notify.SimpleNotifyEventListenerContainer;
+import org.openspaces.rest.utils.EntityTags;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded in-process cache of space documents of a single type, kept in front of the remote space
+ * read. Entries are evicted least recently used once the capacity is reached, and every write,
+ * update, take (including clear) or lease expiration of the type in the space evicts the local
+ * copy, so invalidations done through any web node reach all of them. A write or update carrying
+ * the generation and expiration of the cached copy is the space write of that very copy, usually
+ * by the write behind buffer of this node, and leaves it cached.
+ *
+ * The cache is split into segments, each guarded by its own lock, so concurrent hits on different
+ * keys rarely contend.
+ */
+public class NearCache {
+    private static final Logger logger = Logger.getLogger(NearCache.class.getName());
+    private static final int SEGMENTS = 16;
+
+    private final String typeName;
+    private final String[] keyProperties;
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong ownWrites = new AtomicLong();
+    private SimpleNotifyEventListenerContainer notifyContainer;
+    private GigaSpace subscribedSpace;
+
+    /**
+     * @param typeName      the space type cached by this instance
+     * @param capacity      maximum number of documents kept, 0 disables the cache
+     * @param keyProperties the properties that make up the cache key, joined with '-'
+     */
+    public NearCache(String typeName, int capacity, String... keyProperties) {
+        this.typeName = typeName;
+        this.keyProperties = keyProperties;
+        int segmentCount = capacity <= 0 ? 0 : Math.min(SEGMENTS, capacity);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0));
+        }
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public boolean isEnabled() {
+        return segments.length > 0;
+    }
+
+    /**
+     * Builds the cache key of a document from its key properties.
+     */
+    public String keyOf(SpaceDocument doc) {
+        if (keyProperties.length == 1)
+            return String.valueOf((Object) doc.getProperty(keyProperties[0]));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keyProperties.length; i++) {
+            if (i > 0)
+                sb.append('-');
+            sb.append(String.valueOf((Object) doc.getProperty(keyProperties[i])));
+        }
+        return sb.toString();
+    }
+
+    public SpaceDocument get(String key) {
+        if (!isEnabled())
+            return null;
+        SpaceDocument doc = segmentFor(key).get(key);
+        if (doc != null)
+            hits.incrementAndGet();
+        else
+            misses.incrementAndGet();
+        return doc;
+    }
+
+    /**
+     * Returns a stamp to pass to {@link #put(String, SpaceDocument, long)}. Take it before reading
+     * from the space so that a document read before an invalidation is never cached after it.
+     */
+    public long stamp(String key) {
+        if (!isEnabled())
+            return 0;
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.generation;
+        }
+    }
+
+    /**
+     * Caches the document unless an invalidation happened since the stamp was taken.
+     */
+    public void put(String key, SpaceDocument doc, long stamp) {
+        if (!isEnabled() || doc == null)
+            return;
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            if (segment.generation == stamp)
+                segment.put(key, doc);
+        }
+    }
+
+    public void invalidate(String key) {
+        if (!isEnabled())
+            return;
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.generation++;
+            if (segment.remove(key) != null)
+                invalidations.incrementAndGet();
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.generation++;
+                invalidations.addAndGet(segment.size());
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Whether the cached copy of the key is the given document as written to the space: both carry
+     * the same generation and expiration. Documents without a generation never match.
+     */
+    boolean isCached(String key, SpaceDocument doc) {
+        if (!isEnabled())
+            return false;
+        Object generation = doc.getProperty(EntityTags.GENERATION_PROPERTY);
+        if (generation == null)
+            return false;
+        Segment segment = segmentFor(key);
+        SpaceDocument cached;
+        synchronized (segment) {
+            cached = segment.get(key);
+        }
+        return cached != null
+                && generation.equals(cached.getProperty(EntityTags.GENERATION_PROPERTY))
+                && Objects.equals(doc.getProperty(TtlPolicy.EXPIRES_AT_PROPERTY), cached.getProperty(TtlPolicy.EXPIRES_AT_PROPERTY));
+    }
+
+    private static boolean isRemoval(Object source) {
+        if (!(source instanceof EntryArrivedRemoteEvent))
+            return false;
+        NotifyActionType type = ((EntryArrivedRemoteEvent) source).getNotifyActionType();
+        return type.isTake() || type.isLeaseExpiration();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Subscribes to changes of the cached type in the given space. Called again after a switch to
+     * another cluster, it moves the subscription to the new space and drops every cached document,
+     * as none of them is invalidated by the new cluster. Does nothing when the cache is disabled.
+     */
+    public synchronized void start(GigaSpace gigaSpace) {
+        if (!isEnabled() || gigaSpace == subscribedSpace)
+            return;
+        SimpleNotifyEventListenerContainer previous = notifyContainer;
+        notifyContainer = new SimpleNotifyContainerConfigurer(gigaSpace)
+                .template(new SpaceDocument(typeName))
+                .notifyWrite(true)
+                .notifyUpdate(true)
+                .notifyTake(true)
+                .notifyLease(true)
+                .eventListener(new SpaceDataEventListener<SpaceDocument>() {
+                    @Override
+                    public void onEvent(SpaceDocument data, GigaSpace gigaSpace, TransactionStatus txStatus, Object source) {
+                        if (data == null) {
+                            invalidateAll();
+                            return;
+                        }
+                        String key = keyOf(data);
+                        if (!isRemoval(source) && isCached(key, data)) {
+                            ownWrites.incrementAndGet();
+                            return;
+                        }
+                        if (logger.isLoggable(Level.FINEST))
+                            logger.finest("invalidating near cached " + typeName + " " + key);
+                        invalidate(key);
+                    }
+                }).notifyContainer();
+        subscribedSpace = gigaSpace;
+        if (previous != null) {
+            previous.destroy();
+            invalidateAll();
+        }
+        logger.info("Near cache for " + typeName + " subscribed to space notifications");
+    }
+
+    public synchronized void close() {
+        SimpleNotifyEventListenerContainer container = notifyContainer;
+        notifyContainer = null;
+        subscribedSpace = null;
+        if (container != null)
+            container.destroy();
+        invalidateAll();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<String, Object>();
+        stats.put("enabled", isEnabled());
+        stats.put("size", size());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        stats.put("ownWrites", ownWrites.get());
+        return stats;
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[(h & 0x7fffffff) % segments.length];
+    }
+
+    private class Segment extends LinkedHashMap<String, SpaceDocument> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+        private long generation;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized SpaceDocument get(Object key) {
+            return super.get(key);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SpaceDocument> eldest) {
+            if (size() > capacity) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import com.gigaspaces.client.ClearModifiers;
+import com.gigaspaces.client.ReadByIdsResult;
+import com.gigaspaces.document.SpaceDocument;
+import com.gigaspaces.metadata.SpaceTypeDescriptor;
+import com.gigaspaces.metadata.SpaceTypeDescriptorBuilder;
+import com.gigaspaces.query.IdQuery;
+import com.gigaspaces.query.IdsQuery;
+import com.j_spaces.core.client.SQLQuery;
+
+import org.openspaces.core.GigaSpace;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers keys of a type that the backend does not know. When a loader returns nothing a short
+ * lived tombstone document is written to the space, so for the tombstone lease every node answers
+ * requests for that key without calling the backend again.
+ *
+ * An optional {@link MembershipFilter} built from the key set of the backend rejects keys that
+ * cannot exist before a backend call. It is only asked after the space missed a key, since
+ * documents written to the space after the filter was built are not in it.
+ */
+public class NegativeCache {
+    public static final String TOMBSTONE_TYPE = "CacheTombstone";
+
+    private final String typeName;
+    private final long ttlMillis;
+    private final WriteBehindBuffer writeBehind;
+    private volatile MembershipFilter filter;
+    private final AtomicLong tombstoneHits = new AtomicLong();
+    private final AtomicLong tombstonesWritten = new AtomicLong();
+    private final AtomicLong filterRejections = new AtomicLong();
+
+    public static SpaceTypeDescriptor getType() {
+        return new SpaceTypeDescriptorBuilder(TOMBSTONE_TYPE)
+                .addFixedProperty("id", String.class)
+                .addFixedProperty("typeName", String.class)
+                .supportsDynamicProperties(false)
+                .idProperty("id", false).create();
+    }
+
+    /**
+     * @param ttlMillis lease of tombstones, 0 or less disables negative caching
+     */
+    public NegativeCache(String typeName, long ttlMillis, WriteBehindBuffer writeBehind) {
+        this.typeName = typeName;
+        this.ttlMillis = ttlMillis;
+        this.writeBehind = writeBehind;
+    }
+
+    public boolean isEnabled() {
+        return ttlMillis > 0;
+    }
+
+    public void setFilter(MembershipFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Whether the key may exist in the backend. Always true without a membership filter.
+     */
+    public boolean mightExist(String key) {
+        MembershipFilter current = filter;
+        if (current == null || current.mightContain(key))
+            return true;
+        filterRejections.incrementAndGet();
+        return false;
+    }
+
+    public boolean isTombstoned(GigaSpace gigaSpace, String key) {
+        if (!isEnabled())
+            return false;
+        String id = tombstoneId(key);
+        boolean tombstoned = writeBehind.get(TOMBSTONE_TYPE, id) != null
+                || gigaSpace.readById(new IdQuery<SpaceDocument>(TOMBSTONE_TYPE, id)) != null;
+        if (tombstoned)
+            tombstoneHits.incrementAndGet();
+        return tombstoned;
+    }
+
+    /**
+     * Returns the subset of the given keys that currently have a tombstone, using a single
+     * readByIds.
+     */
+    public Set<String> tombstoned(GigaSpace gigaSpace, List<String> keys) {
+        Set<String> result = new HashSet<String>();
+        if (!isEnabled() || keys.isEmpty())
+            return result;
+        Object[] ids = new Object[keys.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = tombstoneId(keys.get(i));
+        }
+        ReadByIdsResult<SpaceDocument> tombstones = gigaSpace.readByIds(new IdsQuery<SpaceDocument>(TOMBSTONE_TYPE, ids));
+        SpaceDocument[] docs = tombstones.getResultsArray();
+        for (int i = 0; i < docs.length; i++) {
+            if (docs[i] != null || writeBehind.get(TOMBSTONE_TYPE, (String) ids[i]) != null)
+                result.add(keys.get(i));
+        }
+        tombstoneHits.addAndGet(result.size());
+        return result;
+    }
+
+    public void record(String key) {
+        if (!isEnabled())
+            return;
+        String id = tombstoneId(key);
+        SpaceDocument tombstone = new SpaceDocument(TOMBSTONE_TYPE);
+        tombstone.setProperty("id", id);
+        tombstone.setProperty("typeName", typeName);
+        writeBehind.enqueue(TOMBSTONE_TYPE, id, tombstone, ttlMillis);
+        tombstonesWritten.incrementAndGet();
+    }
+
+    public void recordAll(Collection<String> keys) {
+        for (String key : keys) {
+            record(key);
+        }
+    }
+
+    /**
+     * Removes the tombstone of the key, if any, so the next read goes to the backend again.
+     */
+    public void invalidate(GigaSpace gigaSpace, String key) {
+        if (!isEnabled())
+            return;
+        String id = tombstoneId(key);
+        writeBehind.invalidate(TOMBSTONE_TYPE, id);
+        SpaceDocument template = new SpaceDocument(TOMBSTONE_TYPE);
+        template.setProperty("id", id);
+        gigaSpace.clear(template);
+    }
+
+    /**
+     * Removes the tombstones of the given keys with a single clear.
+     */
+    public void invalidateAll(GigaSpace gigaSpace, Collection<String> keys) {
+        if (!isEnabled() || keys.isEmpty())
+            return;
+        List<String> ids = new ArrayList<String>(keys.size());
+        for (String key : keys) {
+            String id = tombstoneId(key);
+            writeBehind.invalidate(TOMBSTONE_TYPE, id);
+            ids.add(id);
+        }
+        gigaSpace.clear(new SQLQuery<SpaceDocument>(TOMBSTONE_TYPE, "id IN (?)", ids), ClearModifiers.NONE);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<String, Object>();
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("tombstoneHits", tombstoneHits.get());
+        stats.put("tombstonesWritten", tombstonesWritten.get());
+        MembershipFilter current = filter;
+        stats.put("filterKeys", current == null ? 0 : current.getKeyCount());
+        stats.put("filterRejections", filterRejections.get());
+        return stats;
+    }
+
+    private String tombstoneId(String key) {
+        return typeName + "|" + key;
+    }
+}
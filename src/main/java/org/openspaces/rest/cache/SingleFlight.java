@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import org.openspaces.rest.exceptions.RestException;
+import org.openspaces.rest.utils.Deadline;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller for a key runs the loader, every
+ * caller that arrives while that load is in flight waits for and shares its result.
+ *
+ * Loads started with a deadline run until a {@link Deadline#shared shared} deadline that every
+ * caller joining the flight extends with its own, so a caller with a short deadline that started
+ * the load does not fail the callers that joined it with more time left.
+ *
+ * Callers that load several keys with one backend call take part through {@link #leadAll}: they
+ * lead the keys nobody is loading and join the flights of the others.
+ *
+ * One instance is kept per space type, so keys only need to be unique within a type.
+ */
+public class SingleFlight<V> {
+    private final String typeName;
+    private final ConcurrentHashMap<String, Flight<V>> inFlight = new ConcurrentHashMap<String, Flight<V>>();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * A load that stops waiting once the given deadline passed.
+     */
+    public interface Loader<V> {
+        V load(Deadline deadline) throws Exception;
+    }
+
+    public SingleFlight(String typeName) {
+        this.typeName = typeName;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * Runs the loader for the given key on the calling thread unless a load for it is already in
+     * flight, in which case the result of that load is returned instead.
+     */
+    public V execute(String key, Callable<V> loader) {
+        return execute(key, null, adapt(loader));
+    }
+
+    /**
+     * Same as {@link #execute(String, Callable)} for a load with a deadline: a load already in
+     * flight is extended to the given deadline.
+     */
+    public V execute(String key, Deadline deadline, Loader<V> loader) {
+        Flight<V> flight = new Flight<V>(sharedCopy(deadline));
+        Flight<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            join(existing, deadline);
+            return await(existing);
+        }
+        loads.incrementAndGet();
+        runLoad(key, flight, loader);
+        return await(flight);
+    }
+
+    /**
+     * Same as {@link #execute(String, Callable)} but never blocks: the load is handed to the given
+     * executor and callers joining an in flight load get its future without occupying a thread.
+     * If the executor rejects the load the returned future completes with the {@link
+     * RejectedExecutionException}.
+     */
+    public CompletableFuture<V> submit(String key, Callable<V> loader, Executor executor) {
+        return submit(key, null, adapt(loader), executor);
+    }
+
+    /**
+     * Same as {@link #submit(String, Callable, Executor)} for a load with a deadline: a load
+     * already in flight is extended to the given deadline.
+     */
+    public CompletableFuture<V> submit(final String key, Deadline deadline, final Loader<V> loader, Executor executor) {
+        final Flight<V> flight = new Flight<V>(sharedCopy(deadline));
+        Flight<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            join(existing, deadline);
+            return existing;
+        }
+        loads.incrementAndGet();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runLoad(key, flight, loader);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+        }
+        return flight;
+    }
+
+    /**
+     * Registers loads of the given keys that the caller carries out together and completes through
+     * the returned batch. Keys already in flight are joined instead, extending their loads to the
+     * given deadline. The keys led by the caller share one deadline, which callers joining any of
+     * them extend.
+     */
+    public Batch<V> leadAll(Collection<String> keys, Deadline deadline) {
+        Batch<V> batch = new Batch<V>(this, sharedCopy(deadline));
+        for (String key : keys) {
+            Flight<V> flight = new Flight<V>(batch.deadline);
+            Flight<V> existing = inFlight.putIfAbsent(key, flight);
+            if (existing != null) {
+                join(existing, deadline);
+                batch.joined.put(key, existing);
+            } else {
+                loads.incrementAndGet();
+                batch.led.put(key, flight);
+            }
+        }
+        return batch;
+    }
+
+    public long getLoads() {
+        return loads.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<String, Object>();
+        stats.put("loads", getLoads());
+        stats.put("coalesced", getCoalesced());
+        stats.put("inFlight", getInFlight());
+        return stats;
+    }
+
+    private void join(Flight<V> existing, Deadline deadline) {
+        coalesced.incrementAndGet();
+        if (existing.deadline != null && deadline != null)
+            existing.deadline.extend(deadline);
+    }
+
+    private void runLoad(String key, Flight<V> flight, Loader<V> loader) {
+        try {
+            flight.complete(loader.load(flight.deadline));
+        } catch (Throwable t) {
+            flight.completeExceptionally(t);
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RestException("Interrupted while waiting for " + typeName + " load");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RestException(cause.getMessage());
+        }
+    }
+
+    private static Deadline sharedCopy(Deadline deadline) {
+        return deadline == null ? null : Deadline.shared(deadline);
+    }
+
+    private static <V> Loader<V> adapt(final Callable<V> callable) {
+        return new Loader<V>() {
+            @Override
+            public V load(Deadline deadline) throws Exception {
+                return callable.call();
+            }
+        };
+    }
+
+    private static class Flight<V> extends CompletableFuture<V> {
+        private final Deadline deadline;
+
+        Flight(Deadline deadline) {
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Loads of several keys registered with {@link #leadAll}: the keys the caller loads and the
+     * flights of other callers it joined.
+     */
+    public static class Batch<V> {
+        private final SingleFlight<V> singleFlight;
+        private final Deadline deadline;
+        private final Map<String, Flight<V>> led = new LinkedHashMap<String, Flight<V>>();
+        private final Map<String, Flight<V>> joined = new LinkedHashMap<String, Flight<V>>();
+
+        private Batch(SingleFlight<V> singleFlight, Deadline deadline) {
+            this.singleFlight = singleFlight;
+            this.deadline = deadline;
+        }
+
+        /**
+         * The keys to load, in the order they were given.
+         */
+        public List<String> getLedKeys() {
+            return new ArrayList<String>(led.keySet());
+        }
+
+        /**
+         * The deadline to load the led keys until, extended by the callers that joined them.
+         */
+        public Deadline getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * Completes the led keys with their values, null for keys missing from the map.
+         */
+        public void complete(Map<String, V> values) {
+            for (Map.Entry<String, Flight<V>> entry : led.entrySet()) {
+                singleFlight.inFlight.remove(entry.getKey(), entry.getValue());
+                entry.getValue().complete(values.get(entry.getKey()));
+            }
+        }
+
+        /**
+         * Completes the led keys with the given failure.
+         */
+        public void fail(Throwable failure) {
+            for (Map.Entry<String, Flight<V>> entry : led.entrySet()) {
+                singleFlight.inFlight.remove(entry.getKey(), entry.getValue());
+                entry.getValue().completeExceptionally(failure);
+            }
+        }
+
+        /**
+         * The values of all keys, led and joined, once every load completed. Fails with the first
+         * failure of any of them.
+         */
+        public CompletableFuture<Map<String, V>> results() {
+            final Map<String, Flight<V>> all = new LinkedHashMap<String, Flight<V>>(led);
+            all.putAll(joined);
+            return CompletableFuture.allOf(all.values().toArray(new CompletableFuture<?>[all.size()]))
+                    .thenApply(new Function<Void, Map<String, V>>() {
+                        @Override
+                        public Map<String, V> apply(Void ignored) {
+                            Map<String, V> values = new HashMap<String, V>(all.size() * 2);
+                            for (Map.Entry<String, Flight<V>> entry : all.entrySet()) {
+                                values.put(entry.getKey(), entry.getValue().join());
+                            }
+                            return values;
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import com.gigaspaces.client.ChangeSet;
+import com.gigaspaces.document.SpaceDocument;
+
+import net.jini.core.lease.Lease;
+
+import org.openspaces.rest.utils.EntityTags;
+import org.openspaces.rest.utils.SpaceDocumentSerializer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lease settings of a cached type. Documents are written with a lease of {@code ttlMillis} and
+ * carry their expiration time in an internal property, so a reader can tell that a document is in
+ * the last part of its life and should be refreshed from the backend before it expires.
+ *
+ * With adaptive leases enabled the lease grows with how often the key was recently accessed on
+ * this node, up to {@code maxFactor} times the configured ttl, so cold keys leave the space early
+ * while hot keys are kept (and refreshed ahead of expiration).
+ *
+ * With a maximum staleness the type is served stale-while-revalidate: documents stay in the
+ * space for {@code maxStaleMillis} past their expiration time, and invalidations only mark them
+ * stale. Readers get a stale document right away while a single background refresh replaces it.
+ */
+public class TtlPolicy {
+    public static final String EXPIRES_AT_PROPERTY = SpaceDocumentSerializer.INTERNAL_PROPERTY_PREFIX + "expiresAt";
+
+    private final String typeName;
+    private final long ttlMillis;
+    private final long refreshWindowMillis;
+    private final boolean adaptive;
+    private final int maxFactor;
+    private final long maxStaleMillis;
+    private final FrequencySketch sketch;
+    private final AtomicLong refreshes = new AtomicLong();
+
+    /**
+     * @param ttlMillis         lease of written documents, 0 or less means forever
+     * @param refreshAheadRatio fraction of the ttl after which a read triggers a background refresh,
+     *                          1 or more disables refresh ahead
+     * @param adaptive          whether the lease grows with the access frequency of the key
+     * @param maxFactor         upper bound of the adaptive lease as a multiple of the ttl
+     * @param maxStaleMillis    how long expired or invalidated documents may still be served, 0
+     *                          disables stale-while-revalidate
+     */
+    public TtlPolicy(String typeName, long ttlMillis, double refreshAheadRatio, boolean adaptive, int maxFactor,
+                     long maxStaleMillis) {
+        this.typeName = typeName;
+        this.ttlMillis = ttlMillis;
+        this.refreshWindowMillis = ttlMillis <= 0 || refreshAheadRatio >= 1 ? 0 : (long) (ttlMillis * (1 - Math.max(0, refreshAheadRatio)));
+        this.adaptive = adaptive && ttlMillis > 0;
+        this.maxFactor = Math.max(1, maxFactor);
+        this.sketch = this.adaptive ? new FrequencySketch(1 << 16) : null;
+        this.maxStaleMillis = Math.max(0, maxStaleMillis);
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public boolean isExpiring() {
+        return ttlMillis > 0;
+    }
+
+    public boolean isServingStale() {
+        return maxStaleMillis > 0;
+    }
+
+    /**
+     * Records a read of the key, only needed for adaptive leases.
+     */
+    public void recordAccess(String key) {
+        if (adaptive)
+            sketch.increment(key);
+    }
+
+    /**
+     * The lease to write the document of the given key with.
+     */
+    public long leaseFor(String key) {
+        if (ttlMillis <= 0)
+            return Lease.FOREVER;
+        if (!adaptive || key == null)
+            return ttlMillis;
+        int frequency = sketch.frequency(key);
+        int factor = Math.min(maxFactor, 32 - Integer.numberOfLeadingZeros(frequency + 1));
+        return ttlMillis * Math.max(1, factor);
+    }
+
+    /**
+     * The space lease of a document stamped with the given lease, which keeps it around for the
+     * maximum staleness after it expired.
+     */
+    public long spaceLease(long lease) {
+        if (lease == Lease.FOREVER)
+            return lease;
+        return lease + maxStaleMillis;
+    }
+
+    /**
+     * Returns the loaded document to write with the given lease: a copy carrying a new generation
+     * and the expiration time, so documents shared with the backend or with concurrent readers are
+     * never modified.
+     */
+    public SpaceDocument stamp(SpaceDocument doc, long lease) {
+        if (doc == null)
+            return doc;
+        SpaceDocument copy = new SpaceDocument(doc.getTypeName(), doc.getProperties());
+        copy.setVersion(doc.getVersion());
+        copy.setTransient(doc.isTransient());
+        copy.setProperty(EntityTags.GENERATION_PROPERTY, EntityTags.nextGeneration());
+        if (lease != Lease.FOREVER)
+            copy.setProperty(EXPIRES_AT_PROPERTY, System.currentTimeMillis() + lease);
+        return copy;
+    }
+
+    /**
+     * Whether the document is close enough to its expiration to be refreshed in the background.
+     */
+    public boolean shouldRefresh(SpaceDocument doc) {
+        if (staleness(doc) >= 0)
+            return true;
+        if (refreshWindowMillis <= 0)
+            return false;
+        Object expiresAt = doc.getProperty(EXPIRES_AT_PROPERTY);
+        if (!(expiresAt instanceof Long))
+            return false;
+        return (Long) expiresAt - System.currentTimeMillis() < refreshWindowMillis;
+    }
+
+    /**
+     * Milliseconds since the document expired or was invalidated, -1 if it is fresh or the type is
+     * not served stale.
+     */
+    public long staleness(SpaceDocument doc) {
+        if (maxStaleMillis <= 0)
+            return -1;
+        Object expiresAt = doc.getProperty(EXPIRES_AT_PROPERTY);
+        if (!(expiresAt instanceof Long))
+            return -1;
+        long staleness = System.currentTimeMillis() - (Long) expiresAt;
+        return staleness < 0 ? -1 : staleness;
+    }
+
+    /**
+     * Whether the document is stale but still within the maximum staleness.
+     */
+    public boolean isServableStale(SpaceDocument doc) {
+        long staleness = staleness(doc);
+        return staleness >= 0 && staleness <= maxStaleMillis;
+    }
+
+    /**
+     * The change that marks documents of the type stale as of now, leaving them in the space for
+     * the maximum staleness.
+     */
+    public ChangeSet markStale() {
+        return new ChangeSet().set(EXPIRES_AT_PROPERTY, System.currentTimeMillis()).lease(maxStaleMillis);
+    }
+
+    public void refreshTriggered() {
+        refreshes.incrementAndGet();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<String, Object>();
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("refreshWindowMillis", refreshWindowMillis);
+        stats.put("adaptive", adaptive);
+        stats.put("maxStaleMillis", maxStaleMillis);
+        stats.put("refreshes", refreshes.get());
+        return stats;
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import com.gigaspaces.client.WriteModifiers;
+import com.gigaspaces.document.SpaceDocument;
+
+import org.openspaces.core.GigaSpace;
+import org.openspaces.rest.metrics.LatencyHistogram;
+import org.openspaces.rest.utils.ControllerUtils;
+import org.openspaces.rest.utils.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Buffers documents loaded from the backend and writes them to the space in the background with
+ * writeMultiple, so a miss does not pay for a space write round trip before it is answered.
+ *
+ * A batch is written once it holds {@code batchSize} documents or {@code lingerMillis} after its
+ * first document arrived. The queue is bounded: when it stays full for {@code offerTimeoutMillis}
+ * the caller writes its document itself, which slows producers down to the rate the space accepts.
+ * Documents stay visible through {@link #get(String, String)} until their write has landed.
+ */
+public class WriteBehindBuffer {
+    private static final Logger logger = Logger.getLogger(WriteBehindBuffer.class.getName());
+
+    private final ControllerUtils.XapConnectionCache xapCache;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final long offerTimeoutMillis;
+    private final BlockingQueue<Pending> queue;
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<String, Pending>();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong callerWrites = new AtomicLong();
+    private final LatencyHistogram writeLatency;
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * @param batchSize maximum documents per writeMultiple, 0 disables buffering and every document
+     *                  is written by the caller
+     * @param writeLatency records the latency of every writeMultiple
+     */
+    public WriteBehindBuffer(ControllerUtils.XapConnectionCache xapCache, int batchSize, long lingerMillis,
+                             int queueCapacity, long offerTimeoutMillis, LatencyHistogram writeLatency) {
+        this.xapCache = xapCache;
+        this.writeLatency = writeLatency;
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<Pending>(Math.max(1, queueCapacity));
+    }
+
+    public boolean isEnabled() {
+        return batchSize > 0;
+    }
+
+    public synchronized void start() {
+        if (!isEnabled() || running)
+            return;
+        running = true;
+        writer = new NamedThreadFactory("space-write-behind").newThread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        });
+        writer.start();
+    }
+
+    /**
+     * Stops the writer and writes whatever is still queued.
+     */
+    public synchronized void close() {
+        if (!running)
+            return;
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pending> rest = new ArrayList<Pending>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty())
+            write(rest);
+    }
+
+    /**
+     * Queues the document for writing with the given lease, or writes it on the calling thread if
+     * buffering is disabled or the queue stays full.
+     */
+    public void enqueue(String type, String key, SpaceDocument doc, long lease) {
+        if (doc == null)
+            return;
+        Pending entry = new Pending(type + "|" + key, doc, lease);
+        if (isEnabled() && running) {
+            pending.put(entry.key, entry);
+            try {
+                if (queue.offer(entry, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    queued.incrementAndGet();
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            callerWrites.incrementAndGet();
+        }
+        List<Pending> single = new ArrayList<Pending>(1);
+        single.add(entry);
+        write(single);
+    }
+
+    /**
+     * Returns a document of the given type and key that was queued but not written yet.
+     */
+    public SpaceDocument get(String type, String key) {
+        if (pending.isEmpty())
+            return null;
+        Pending entry = pending.get(type + "|" + key);
+        return entry == null ? null : entry.doc;
+    }
+
+    /**
+     * Forgets a queued document so that it is neither served from the buffer nor written to the
+     * space after the invalidation. A write already in progress is not recalled.
+     */
+    public void invalidate(String type, String key) {
+        Pending entry = pending.remove(type + "|" + key);
+        if (entry != null)
+            entry.cancelled = true;
+    }
+
+    /**
+     * Forgets every queued document of the given type, used before invalidations that match
+     * documents by criteria rather than by key.
+     */
+    public void invalidateType(String type) {
+        invalidateType(type, null);
+    }
+
+    /**
+     * Forgets the queued documents of the given type that the filter accepts, every queued
+     * document of the type if the filter is null.
+     */
+    public void invalidateType(String type, Predicate<SpaceDocument> filter) {
+        if (pending.isEmpty())
+            return;
+        String prefix = type + "|";
+        for (Pending entry : pending.values()) {
+            if (!entry.key.startsWith(prefix) || (filter != null && !filter.test(entry.doc)))
+                continue;
+            if (pending.remove(entry.key, entry))
+                entry.cancelled = true;
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<String, Object>();
+        stats.put("enabled", isEnabled());
+        stats.put("pending", queue.size());
+        stats.put("queued", queued.get());
+        stats.put("written", written.get());
+        stats.put("batches", batches.get());
+        stats.put("failed", failed.get());
+        stats.put("callerWrites", callerWrites.get());
+        return stats;
+    }
+
+    private void drainLoop() {
+        List<Pending> batch = new ArrayList<Pending>(batchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0)
+                        continue;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        break;
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                if (!running)
+                    queue.drainTo(batch);
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<Pending> live = new ArrayList<Pending>(batch.size());
+        for (Pending entry : batch) {
+            if (!entry.cancelled)
+                live.add(entry);
+        }
+        SpaceDocument[] docs = new SpaceDocument[live.size()];
+        long[] leases = new long[live.size()];
+        for (int i = 0; i < docs.length; i++) {
+            docs[i] = live.get(i).doc;
+            leases[i] = live.get(i).lease;
+        }
+        try {
+            if (docs.length == 0)
+                return;
+            GigaSpace gigaSpace = xapCache.get();
+            long start = System.nanoTime();
+            gigaSpace.writeMultiple(docs, leases, WriteModifiers.UPDATE_OR_WRITE);
+            writeLatency.recordSince(start);
+            written.addAndGet(docs.length);
+            batches.incrementAndGet();
+        } catch (RuntimeException e) {
+            failed.addAndGet(docs.length);
+            if (logger.isLoggable(Level.WARNING))
+                logger.log(Level.WARNING, "failed to write " + docs.length + " buffered documents to space", e);
+        } finally {
+            for (Pending entry : batch) {
+                pending.remove(entry.key, entry);
+            }
+        }
+    }
+
+    private static class Pending {
+        private final String key;
+        private final SpaceDocument doc;
+        private final long lease;
+        private volatile boolean cancelled;
+
+        Pending(String key, SpaceDocument doc, long lease) {
+            this.key = key;
+            this.doc = doc;
+            this.lease = lease;
+        }
+    }
+}
@@ -5,48 +5,142 @@ import com.gigaspaces.metadata.SpaceTypeDescriptor;
 import com.gigaspaces.metadata.SpaceTypeDescriptorBuilder;
 import com.gigaspaces.metadata.index.SpaceIndexType;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
-public class AccountTransactions {
+/**
+ * Simulated transaction backend, serving the transactions of a {@link SyntheticDataSet}.
+ */
+public class AccountTransactions implements BackendLoader {
     private static int COUNT = 10;
     private static String TYPE = "AccountTransaction";
-    private Map<String, SpaceDocument> accountTransaction;
+    private final SyntheticDataSet data;
+    private LatencyModel latency = LatencyModels.defaultModel();
 
-    private static String makeKey(String a, String b){return a + "-" + b;}
+    public static String makeKey(String a, String b){return a + "-" + b;}
 
+    /**
+     * The id is the accountId-transactionId key and the entries are routed by accountId, so
+     * lookups by id and all the transactions of an account go to a single partition. The ordered
+     * timestamp index serves time range listings.
+     */
     public static SpaceTypeDescriptor getType(){
         return new SpaceTypeDescriptorBuilder(TYPE)
+                .addFixedProperty("id", String.class)
                 .addFixedProperty("accountId", String.class)
                 .addFixedProperty("transactionId", String.class)
+                .addFixedProperty("timestamp", Date.class)
                 .supportsDynamicProperties(true)
-                .addPropertyIndex("accountID", SpaceIndexType.EQUAL)
+                .supportsOptimisticLocking(true)
                 .addPropertyIndex("transactionId", SpaceIndexType.EQUAL)
-                .idProperty("id", true).create();
+                .addPropertyIndex("timestamp", SpaceIndexType.ORDERED)
+                .idProperty("id", false)
+                .routingProperty("accountId", SpaceIndexType.EQUAL).create();
     }
 
     public AccountTransactions() {
-        accountTransaction = new HashMap<String, SpaceDocument>();
-        for (Integer i = 0; i < COUNT; i++) {
-            for (Integer j = 0; j < COUNT; j++) {
-                SpaceDocument doc = new SpaceDocument(TYPE);
-                doc.setProperty("accountId", i.toString());
-                doc.setProperty("transactionId", j.toString());
-                doc.setProperty("transactionDesc", "Description " + i.toString());
-                doc.setProperty("transactionAmount", 0 + i);
-                accountTransaction.put(makeKey(i.toString() ,j.toString()), doc);
+        this(COUNT);
+    }
+
+    /**
+     * @param accountCount number of accounts, each with {@value #COUNT} transactions
+     */
+    public AccountTransactions(int accountCount) {
+        this(SyntheticDataSet.temporary(accountCount, COUNT));
+    }
+
+    public AccountTransactions(SyntheticDataSet data) {
+        this.data = data;
+    }
+
+    public SpaceDocument get(String accountId, String transactionId) {
+        latency.await();
+
+        int account = data.accountIndex(accountId);
+        int transaction = data.transactionIndex(transactionId);
+        return account < 0 || transaction < 0 ? null : toDocument(account, transaction);
+    }
+
+    /**
+     * Loads transactions by their accountId-transactionId keys.
+     */
+    @Override
+    public Map<String, SpaceDocument> loadAll(Collection<String> keys) {
+        latency.await();
+
+        Map<String, SpaceDocument> result = new HashMap<String, SpaceDocument>();
+        for (String key : keys) {
+            int account = data.accountIndexOfKey(key);
+            int transaction = data.transactionIndexOfKey(key);
+            if (account >= 0 && transaction >= 0)
+                result.put(key, toDocument(account, transaction));
+        }
+        return result;
+    }
+
+    public void setLatencyModel(LatencyModel latency) {
+        this.latency = latency;
+    }
+
+    public List<String> getAccountIds() {
+        return data.accountIds();
+    }
+
+    /**
+     * Keys of all transactions, as accountId-transactionId.
+     */
+    public List<String> getKeys() {
+        return data.transactionKeys();
+    }
+
+    public List<SpaceDocument> getAllForAccounts(Collection<String> accountIds) {
+        latency.await();
+
+        List<SpaceDocument> result = new ArrayList<SpaceDocument>();
+        for (String accountId : new HashSet<String>(accountIds)) {
+            int account = data.accountIndex(accountId);
+            if (account < 0)
+                continue;
+            for (int transaction = 0; transaction < data.getTransactionsPerAccount(); transaction++) {
+                result.add(toDocument(account, transaction));
             }
         }
+        return result;
     }
 
-    public SpaceDocument get(String accountId, String transactionId) {
-        try {
-            Thread.sleep(500 + new Random().nextInt(500));
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+    /**
+     * Returns a page of at most {@code limit} transactions of the account, starting at {@code
+     * offset} in backend order. A page shorter than the limit is the last one.
+     */
+    public List<SpaceDocument> getPageForAccount(String accountId, int offset, int limit) {
+        latency.await();
+
+        List<SpaceDocument> result = new ArrayList<SpaceDocument>();
+        int account = data.accountIndex(accountId);
+        if (account < 0)
+            return result;
+        int end = (int) Math.min((long) offset + limit, data.getTransactionsPerAccount());
+        for (int transaction = Math.max(0, offset); transaction < end; transaction++) {
+            result.add(toDocument(account, transaction));
         }
+        return result;
+    }
 
-        return accountTransaction.get(makeKey(accountId, transactionId) );
+    private SpaceDocument toDocument(int account, int transaction) {
+        String accountId = Integer.toString(account);
+        String transactionId = Integer.toString(transaction);
+        SpaceDocument doc = new SpaceDocument(TYPE);
+        doc.setProperty("id", makeKey(accountId, transactionId));
+        doc.setProperty("accountId", accountId);
+        doc.setProperty("transactionId", transactionId);
+        doc.setProperty("timestamp", new Date(data.transactionTime(account, transaction)));
+        doc.setProperty("transactionDesc", data.transactionDescription(account, transaction));
+        doc.setProperty("transactionAmount", data.transactionAmount(account, transaction));
+        return doc;
     }
 }
@@ -5,39 +5,78 @@ import com.gigaspaces.metadata.SpaceTypeDescriptor;
 import com.gigaspaces.metadata.SpaceTypeDescriptorBuilder;
 import com.gigaspaces.metadata.index.SpaceIndexType;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
-public class Accounts {
+/**
+ * Simulated account backend, serving the accounts of a {@link SyntheticDataSet}.
+ */
+public class Accounts implements BackendLoader {
     private static int COUNT = 10;
     private static String TYPE = "Account";
-    private Map<String, SpaceDocument> accounts;
+    private final SyntheticDataSet data;
+    private LatencyModel latency = LatencyModels.defaultModel();
 
     public static SpaceTypeDescriptor getType(){
         return new SpaceTypeDescriptorBuilder(TYPE)
                 .addFixedProperty("accountId", String.class)
                 .supportsDynamicProperties(true)
+                .supportsOptimisticLocking(true)
                 .idProperty("accountId", false).create();
     }
 
     public Accounts() {
-        accounts = new HashMap<String, SpaceDocument>();
-        for (Integer i = 0; i < COUNT; i++) {
-            SpaceDocument doc = new SpaceDocument(TYPE);
-            doc.setProperty("accountId", i.toString());
-            doc.setProperty("accountName", "name" + i.toString());
-            doc.setProperty("accountBalance", 0 + i);
-            accounts.put(i.toString(), doc);
-        }
+        this(COUNT);
+    }
+
+    public Accounts(int count) {
+        this(SyntheticDataSet.temporary(count, 0));
+    }
+
+    public Accounts(SyntheticDataSet data) {
+        this.data = data;
     }
 
     public SpaceDocument get(String accountId) {
-        try {
-            Thread.sleep(500 + new Random().nextInt(500));
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        latency.await();
+        return find(accountId);
+    }
+
+    public Map<String, SpaceDocument> getAll(Collection<String> accountIds) {
+        latency.await();
+
+        Map<String, SpaceDocument> result = new HashMap<String, SpaceDocument>();
+        for (String accountId : accountIds) {
+            SpaceDocument doc = find(accountId);
+            if (doc != null)
+                result.put(accountId, doc);
         }
-        return accounts.get(accountId);
+        return result;
+    }
+
+    @Override
+    public Map<String, SpaceDocument> loadAll(Collection<String> keys) {
+        return getAll(keys);
+    }
+
+    public void setLatencyModel(LatencyModel latency) {
+        this.latency = latency;
+    }
+
+    public List<String> getIds() {
+        return data.accountIds();
+    }
+
+    private SpaceDocument find(String accountId) {
+        int account = data.accountIndex(accountId);
+        if (account < 0)
+            return null;
+        SpaceDocument doc = new SpaceDocument(TYPE);
+        doc.setProperty("accountId", accountId);
+        doc.setProperty("accountName", data.accountName(account));
+        doc.setProperty("accountBalance", data.accountBalance(account));
+        return doc;
     }
 }
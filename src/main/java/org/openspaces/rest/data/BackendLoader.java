@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.data;
+
+import com.gigaspaces.document.SpaceDocument;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Loads the documents of a space type from its system of record. Read-through misses of
+ * concurrent requests are collected into a single call, see {@link
+ * org.openspaces.rest.cache.BatchingLoader}, so implementations should answer all keys with one
+ * backend round trip.
+ */
+public interface BackendLoader {
+
+    /**
+     * Returns the documents of the given keys by key. Keys the backend does not know are left
+     * out of the result.
+     *
+     * @throws org.openspaces.rest.exceptions.BackendException if the backend call failed
+     */
+    Map<String, SpaceDocument> loadAll(Collection<String> keys);
+}
@@ -4,40 +4,79 @@ import com.gigaspaces.document.SpaceDocument;
 import com.gigaspaces.metadata.SpaceTypeDescriptor;
 import com.gigaspaces.metadata.SpaceTypeDescriptorBuilder;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
-public class CardAccounts {
+/**
+ * Simulated card account backend, serving the card accounts of a {@link SyntheticDataSet}.
+ */
+public class CardAccounts implements BackendLoader {
     private static int COUNT = 10;
     private static String TYPE = "CardAccount";
-    private Map<String, SpaceDocument> cardAccounts;
+    private final SyntheticDataSet data;
+    private LatencyModel latency = LatencyModels.defaultModel();
 
 
     public static SpaceTypeDescriptor getType(){
         return new SpaceTypeDescriptorBuilder(TYPE)
                 .addFixedProperty("accountId", String.class)
                 .supportsDynamicProperties(true)
+                .supportsOptimisticLocking(true)
                 .idProperty("accountId", false).create();
     }
     public CardAccounts() {
-        cardAccounts = new HashMap<String, SpaceDocument>();
-        for (Integer i = 0; i < COUNT; i++) {
-            SpaceDocument doc = new SpaceDocument(TYPE);
-            doc.setProperty("accountId", i.toString());
-            doc.setProperty("cardName", "name" + i.toString());
-            doc.setProperty("cardBalance", 0 + i);
-            cardAccounts.put(i.toString(), doc);
-        }
+        this(COUNT);
+    }
+
+    public CardAccounts(int count) {
+        this(SyntheticDataSet.temporary(count, 0));
+    }
+
+    public CardAccounts(SyntheticDataSet data) {
+        this.data = data;
     }
 
     public SpaceDocument get(String accountId) {
-        try {
-            Thread.sleep(500 + new Random().nextInt(500));
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        latency.await();
+
+        return find(accountId);
+    }
+
+    public Map<String, SpaceDocument> getAll(Collection<String> accountIds) {
+        latency.await();
+
+        Map<String, SpaceDocument> result = new HashMap<String, SpaceDocument>();
+        for (String accountId : accountIds) {
+            SpaceDocument doc = find(accountId);
+            if (doc != null)
+                result.put(accountId, doc);
         }
+        return result;
+    }
+
+    @Override
+    public Map<String, SpaceDocument> loadAll(Collection<String> keys) {
+        return getAll(keys);
+    }
+
+    public void setLatencyModel(LatencyModel latency) {
+        this.latency = latency;
+    }
+
+    public List<String> getIds() {
+        return data.accountIds();
+    }
 
-        return cardAccounts.get(accountId);
+    private SpaceDocument find(String accountId) {
+        int account = data.accountIndex(accountId);
+        if (account < 0)
+            return null;
+        SpaceDocument doc = new SpaceDocument(TYPE);
+        doc.setProperty("accountId", accountId);
+        doc.setProperty("cardName", data.cardName(account));
+        doc.setProperty("cardBalance", data.cardBalance(account));
+        return doc;
     }
 }
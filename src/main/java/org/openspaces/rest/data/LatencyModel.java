@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.data;
+
+/**
+ * Simulated cost of a backend call. The backends call {@link #await()} once per call, before
+ * answering it.
+ *
+ * @see LatencyModels
+ */
+public interface LatencyModel {
+
+    /**
+     * Blocks the calling thread for the latency of one call.
+     *
+     * @throws org.openspaces.rest.exceptions.BackendException to simulate a failed call
+     */
+    void await();
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.data;
+
+import org.openspaces.rest.exceptions.BackendException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The built in {@link LatencyModel}s and the parser of their specs. A spec is the model name with
+ * its parameters in milliseconds:
+ * <ul>
+ * <li>{@code none}</li>
+ * <li>{@code constant(millis=5)}</li>
+ * <li>{@code uniform(min=500,max=1000)}, the default</li>
+ * <li>{@code lognormal(median=20,sigma=0.8)}</li>
+ * <li>{@code bursty(median=5,sigma=0.5,burstMedian=500,every=10000,length=1000)}, lognormal with
+ * a slower lognormal for {@code length} out of every {@code every} milliseconds</li>
+ * <li>{@code class(name=com.example.MyModel)}, any LatencyModel with a public no argument
+ * constructor</li>
+ * </ul>
+ */
+public final class LatencyModels {
+    public static final String DEFAULT_SPEC = "uniform(min=500,max=1000)";
+    public static final LatencyModel NONE = new LatencyModel() {
+        @Override
+        public void await() {
+        }
+    };
+
+    private LatencyModels() {
+    }
+
+    public static LatencyModel defaultModel() {
+        return new Uniform(500, 1000);
+    }
+
+    /**
+     * Parses a spec and wraps the model so that {@code errorRate} of the calls fail with a {@link
+     * BackendException} after their latency.
+     */
+    public static LatencyModel parse(String spec, double errorRate) {
+        LatencyModel model = parse(spec);
+        return errorRate > 0 ? new Failing(model, errorRate) : model;
+    }
+
+    public static LatencyModel parse(String spec) {
+        String trimmed = spec.trim();
+        int open = trimmed.indexOf('(');
+        String name = (open < 0 ? trimmed : trimmed.substring(0, open)).trim().toLowerCase();
+        Map<String, String> params = new HashMap<String, String>();
+        if (open >= 0) {
+            if (!trimmed.endsWith(")"))
+                throw new IllegalArgumentException("Invalid latency model: " + spec);
+            for (String param : trimmed.substring(open + 1, trimmed.length() - 1).split(",")) {
+                if (param.trim().isEmpty())
+                    continue;
+                int eq = param.indexOf('=');
+                if (eq < 0)
+                    throw new IllegalArgumentException("Invalid latency model parameter [" + param + "] in " + spec);
+                params.put(param.substring(0, eq).trim(), param.substring(eq + 1).trim());
+            }
+        }
+        if ("none".equals(name))
+            return NONE;
+        if ("constant".equals(name))
+            return new Constant(number(params, "millis", 0));
+        if ("uniform".equals(name))
+            return new Uniform(number(params, "min", 500), number(params, "max", 1000));
+        if ("lognormal".equals(name))
+            return new LogNormal(number(params, "median", 20), number(params, "sigma", 0.8));
+        if ("bursty".equals(name))
+            return new Bursty(new LogNormal(number(params, "median", 5), number(params, "sigma", 0.5)),
+                    new LogNormal(number(params, "burstMedian", 500), number(params, "sigma", 0.5)),
+                    (long) number(params, "every", 10000), (long) number(params, "length", 1000));
+        if ("class".equals(name)) {
+            try {
+                return (LatencyModel) Class.forName(params.get("name")).newInstance();
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Cannot create latency model " + params.get("name"), e);
+            }
+        }
+        throw new IllegalArgumentException("Unknown latency model: " + spec);
+    }
+
+    private static double number(Map<String, String> params, String name, double defaultValue) {
+        String value = params.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    static void sleep(double millis) {
+        if (millis <= 0)
+            return;
+        try {
+            TimeUnit.MICROSECONDS.sleep((long) (millis * 1000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class Constant implements LatencyModel {
+        private final double millis;
+
+        public Constant(double millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public void await() {
+            sleep(millis);
+        }
+    }
+
+    public static class Uniform implements LatencyModel {
+        private final double min;
+        private final double max;
+
+        public Uniform(double min, double max) {
+            this.min = min;
+            this.max = Math.max(min, max);
+        }
+
+        @Override
+        public void await() {
+            sleep(min + ThreadLocalRandom.current().nextDouble() * (max - min));
+        }
+    }
+
+    /**
+     * Latency whose logarithm is normally distributed, the usual shape of service latencies: most
+     * calls close to the median and a long tail controlled by sigma.
+     */
+    public static class LogNormal implements LatencyModel {
+        private final double mu;
+        private final double sigma;
+
+        public LogNormal(double median, double sigma) {
+            this.mu = Math.log(Math.max(median, 0.001));
+            this.sigma = sigma;
+        }
+
+        @Override
+        public void await() {
+            sleep(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+        }
+    }
+
+    /**
+     * Switches to the burst model for {@code lengthMillis} at the start of every {@code
+     * everyMillis} window, e.g. a backend pausing for garbage collection.
+     */
+    public static class Bursty implements LatencyModel {
+        private final LatencyModel normal;
+        private final LatencyModel burst;
+        private final long everyMillis;
+        private final long lengthMillis;
+
+        public Bursty(LatencyModel normal, LatencyModel burst, long everyMillis, long lengthMillis) {
+            this.normal = normal;
+            this.burst = burst;
+            this.everyMillis = Math.max(1, everyMillis);
+            this.lengthMillis = lengthMillis;
+        }
+
+        @Override
+        public void await() {
+            if (System.currentTimeMillis() % everyMillis < lengthMillis)
+                burst.await();
+            else
+                normal.await();
+        }
+    }
+
+    public static class Failing implements LatencyModel {
+        private final LatencyModel model;
+        private final double errorRate;
+
+        public Failing(LatencyModel model, double errorRate) {
+            this.model = model;
+            this.errorRate = errorRate;
+        }
+
+        @Override
+        public void await() {
+            model.await();
+            if (ThreadLocalRandom.current().nextDouble() < errorRate)
+                throw new BackendException("Simulated backend failure");
+        }
+    }
+}
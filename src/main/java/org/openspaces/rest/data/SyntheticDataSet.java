@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Backend data set of accounts, card accounts and transactions, generated deterministically from a
+ * seed into a file and read through memory mapping. Records take no heap and the operating system
+ * pages them in as they are read, so the simulated backends can hold tens of millions of records.
+ *
+ * Account ids are the decimal numbers {@code 0 .. accounts - 1} and every account has
+ * {@code transactionsPerAccount} transactions numbered from 0, so a record is found from its id by
+ * position: a fixed size record per account holds the account and its card account, and the
+ * record of transaction {@code t} of account {@code a} is at {@code a * transactionsPerAccount + t}.
+ * Transaction times grow with the transaction id.
+ *
+ * The file is generated once and reused as long as its header matches the seed and sizes.
+ */
+public class SyntheticDataSet {
+    private static final Logger logger = Logger.getLogger(SyntheticDataSet.class.getName());
+
+    public static final long DEFAULT_SEED = 42;
+    public static final long FIRST_TRANSACTION_TIME = 1451606400000L;
+
+    private static final long MAGIC = 0x5841505245535444L;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int NAME_LENGTH = 12;
+    //account name, account balance, card name, card balance
+    private static final int ACCOUNT_RECORD_SIZE = 32;
+    //time, amount, description
+    private static final int TRANSACTION_RECORD_SIZE = 16;
+    //a multiple of both record sizes, so no record spans two mappings
+    private static final long REGION_SIZE = 1L << 30;
+    private static final String[] DESCRIPTIONS = {"Card payment", "Transfer", "ATM withdrawal", "Salary",
+            "Direct debit", "Refund", "Interest", "Fee"};
+
+    private final long seed;
+    private final int accounts;
+    private final int transactionsPerAccount;
+    private final long transactionsOffset;
+    private final MappedByteBuffer[] regions;
+
+    private SyntheticDataSet(long seed, int accounts, int transactionsPerAccount, MappedByteBuffer[] regions) {
+        this.seed = seed;
+        this.accounts = accounts;
+        this.transactionsPerAccount = transactionsPerAccount;
+        this.transactionsOffset = HEADER_SIZE + (long) accounts * ACCOUNT_RECORD_SIZE;
+        this.regions = regions;
+    }
+
+    /**
+     * Maps the data set in the given file, generating the file first when it does not exist or was
+     * generated with another seed or size.
+     */
+    public static SyntheticDataSet open(File file, long seed, int accounts, int transactionsPerAccount) throws IOException {
+        if (accounts < 0 || transactionsPerAccount < 0 || (long) accounts * transactionsPerAccount > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Unsupported data set size: " + accounts + " accounts with "
+                    + transactionsPerAccount + " transactions each");
+        if (!matches(file, seed, accounts, transactionsPerAccount))
+            generate(file, seed, accounts, transactionsPerAccount);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((size + REGION_SIZE - 1) / REGION_SIZE)];
+            for (int i = 0; i < regions.length; i++) {
+                long offset = i * REGION_SIZE;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(REGION_SIZE, size - offset));
+            }
+            return new SyntheticDataSet(seed, accounts, transactionsPerAccount, regions);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * A data set in a temporary file that is deleted when the JVM exits.
+     */
+    public static SyntheticDataSet temporary(int accounts, int transactionsPerAccount) {
+        try {
+            File file = File.createTempFile("xap-rest-backend-", ".dat");
+            file.deleteOnExit();
+            return open(file, DEFAULT_SEED, accounts, transactionsPerAccount);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The file a data set of the given seed and sizes is kept in when no file is configured, in the
+     * temporary directory so it is reused across restarts.
+     */
+    public static File defaultFile(long seed, int accounts, int transactionsPerAccount) {
+        return new File(System.getProperty("java.io.tmpdir"),
+                "xap-rest-backend-" + seed + "-" + accounts + "x" + transactionsPerAccount + ".dat");
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getAccounts() {
+        return accounts;
+    }
+
+    public int getTransactionsPerAccount() {
+        return transactionsPerAccount;
+    }
+
+    public long getRecords() {
+        return (long) accounts * (2 + transactionsPerAccount);
+    }
+
+    /**
+     * Position of the account with the given id, -1 if there is none.
+     */
+    public int accountIndex(String accountId) {
+        return parseIndex(accountId, 0, accountId == null ? 0 : accountId.length(), accounts);
+    }
+
+    /**
+     * Position of the transaction with the given id within its account, -1 if there is none.
+     */
+    public int transactionIndex(String transactionId) {
+        return parseIndex(transactionId, 0, transactionId == null ? 0 : transactionId.length(), transactionsPerAccount);
+    }
+
+    /**
+     * Position of the account of an accountId-transactionId key, -1 if there is none.
+     */
+    public int accountIndexOfKey(String key) {
+        int separator = key == null ? -1 : key.indexOf('-');
+        return separator < 0 ? -1 : parseIndex(key, 0, separator, accounts);
+    }
+
+    /**
+     * Position of the transaction of an accountId-transactionId key within its account, -1 if there
+     * is none.
+     */
+    public int transactionIndexOfKey(String key) {
+        int separator = key == null ? -1 : key.indexOf('-');
+        return separator < 0 ? -1 : parseIndex(key, separator + 1, key.length(), transactionsPerAccount);
+    }
+
+    public String accountName(int account) {
+        return readName(accountOffset(account));
+    }
+
+    public int accountBalance(int account) {
+        return readInt(accountOffset(account) + NAME_LENGTH);
+    }
+
+    public String cardName(int account) {
+        return readName(accountOffset(account) + 16);
+    }
+
+    public int cardBalance(int account) {
+        return readInt(accountOffset(account) + 16 + NAME_LENGTH);
+    }
+
+    public long transactionTime(int account, int transaction) {
+        return readLong(transactionOffset(account, transaction));
+    }
+
+    public int transactionAmount(int account, int transaction) {
+        return readInt(transactionOffset(account, transaction) + 8);
+    }
+
+    public String transactionDescription(int account, int transaction) {
+        int code = readInt(transactionOffset(account, transaction) + 12);
+        return DESCRIPTIONS[code & 7] + " #" + (code >>> 3);
+    }
+
+    /**
+     * All account ids, computed on access instead of being held in memory.
+     */
+    public List<String> accountIds() {
+        return new IdList(accounts) {
+            @Override
+            public String get(int index) {
+                checkIndex(index);
+                return Integer.toString(index);
+            }
+        };
+    }
+
+    /**
+     * All transaction keys as accountId-transactionId, computed on access instead of being held in
+     * memory.
+     */
+    public List<String> transactionKeys() {
+        return new IdList(accounts * transactionsPerAccount) {
+            @Override
+            public String get(int index) {
+                checkIndex(index);
+                return Integer.toString(index / transactionsPerAccount) + '-' + Integer.toString(index % transactionsPerAccount);
+            }
+        };
+    }
+
+    private long accountOffset(int account) {
+        return HEADER_SIZE + (long) account * ACCOUNT_RECORD_SIZE;
+    }
+
+    private long transactionOffset(int account, int transaction) {
+        return transactionsOffset + ((long) account * transactionsPerAccount + transaction) * TRANSACTION_RECORD_SIZE;
+    }
+
+    private int readInt(long offset) {
+        return regions[(int) (offset / REGION_SIZE)].getInt((int) (offset % REGION_SIZE));
+    }
+
+    private long readLong(long offset) {
+        return regions[(int) (offset / REGION_SIZE)].getLong((int) (offset % REGION_SIZE));
+    }
+
+    private String readName(long offset) {
+        MappedByteBuffer region = regions[(int) (offset / REGION_SIZE)];
+        int position = (int) (offset % REGION_SIZE);
+        byte[] name = new byte[NAME_LENGTH];
+        for (int i = 0; i < NAME_LENGTH; i++) {
+            name[i] = region.get(position + i);
+        }
+        return new String(name, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Parses a decimal id without sign or leading zeros, so every record has exactly one id.
+     */
+    private static int parseIndex(String s, int from, int to, int limit) {
+        if (to <= from || to - from > 10 || (to - from > 1 && s.charAt(from) == '0'))
+            return -1;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value < limit ? (int) value : -1;
+    }
+
+    private static boolean matches(File file, long seed, int accounts, int transactionsPerAccount) throws IOException {
+        if (!file.isFile() || file.length() != HEADER_SIZE + (long) accounts * ACCOUNT_RECORD_SIZE
+                + (long) accounts * transactionsPerAccount * TRANSACTION_RECORD_SIZE)
+            return false;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return raf.readLong() == MAGIC && raf.readInt() == VERSION && raf.readLong() == seed
+                    && raf.readInt() == accounts && raf.readInt() == transactionsPerAccount;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes the data set to a temporary file next to the target and moves it in place, so an
+     * interrupted generation never leaves a file that looks complete.
+     */
+    private static void generate(File file, long seed, int accounts, int transactionsPerAccount) throws IOException {
+        long start = System.nanoTime();
+        File absolute = file.getAbsoluteFile();
+        File tmp = File.createTempFile(absolute.getName(), ".tmp", absolute.getParentFile());
+        try {
+            RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+            try {
+                FileChannel channel = raf.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+                buffer.putLong(MAGIC).putInt(VERSION).putLong(seed).putInt(accounts).putInt(transactionsPerAccount);
+                buffer.position(HEADER_SIZE);
+                for (int account = 0; account < accounts; account++) {
+                    if (buffer.remaining() < ACCOUNT_RECORD_SIZE)
+                        drain(buffer, channel);
+                    putName(buffer, mix(seed, account, 1));
+                    buffer.putInt((int) (unsigned(mix(seed, account, 2)) % 1000000));
+                    putName(buffer, mix(seed, account, 3));
+                    buffer.putInt((int) (unsigned(mix(seed, account, 4)) % 1000000));
+                }
+                long hour = TimeUnit.HOURS.toMillis(1);
+                for (int account = 0; account < accounts; account++) {
+                    for (int transaction = 0; transaction < transactionsPerAccount; transaction++) {
+                        if (buffer.remaining() < TRANSACTION_RECORD_SIZE)
+                            drain(buffer, channel);
+                        long record = (long) account * transactionsPerAccount + transaction;
+                        buffer.putLong(FIRST_TRANSACTION_TIME + transaction * hour + unsigned(mix(seed, record, 5)) % hour);
+                        buffer.putInt(1 + (int) (unsigned(mix(seed, record, 6)) % 100000));
+                        buffer.putInt((int) (unsigned(mix(seed, record, 7)) % (1 << 20)));
+                    }
+                }
+                drain(buffer, channel);
+                channel.force(false);
+            } finally {
+                raf.close();
+            }
+            Files.move(tmp.toPath(), absolute.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            if (tmp.exists() && !tmp.delete())
+                logger.warning("Could not delete " + tmp);
+        }
+        logger.info("Generated backend data set " + absolute + " of " + accounts + " accounts with " + transactionsPerAccount
+                + " transactions each in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * A capitalized name of {@link #NAME_LENGTH} letters, five bits of the hash per letter.
+     */
+    private static void putName(ByteBuffer buffer, long hash) {
+        for (int i = 0; i < NAME_LENGTH; i++) {
+            int letter = (int) ((hash >>> (5 * i)) & 31) % 26;
+            buffer.put((byte) ((i == 0 ? 'A' : 'a') + letter));
+        }
+    }
+
+    private static long unsigned(long hash) {
+        return hash >>> 1;
+    }
+
+    /**
+     * SplitMix64 finalizer of the seed, the record and the field, so every value can be derived on
+     * its own and the same seed always gives the same data set.
+     */
+    private static long mix(long seed, long record, int field) {
+        long z = seed + record * 0x9E3779B97F4A7C15L + field * 0xD1B54A32D192ED03L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private abstract static class IdList extends AbstractList<String> implements RandomAccess {
+        private final int size;
+
+        IdList(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        void checkIndex(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+}
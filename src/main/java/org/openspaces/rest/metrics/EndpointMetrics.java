@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Requests, responses by status class, in-flight requests and latency of one handler method.
+ */
+public class EndpointMetrics {
+    private final String method;
+    private final String path;
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLongArray responses = new AtomicLongArray(6);
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public EndpointMetrics(String method, String path) {
+        this.method = method;
+        this.path = path;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void started() {
+        inFlight.incrementAndGet();
+    }
+
+    public void completed(int status, long startNanos) {
+        latency.recordSince(startNanos);
+        responses.incrementAndGet(Math.min(Math.max(status / 100, 0), 5));
+        inFlight.decrementAndGet();
+    }
+
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Responses of the given status class, 1 to 5.
+     */
+    public long getResponses(int statusClass) {
+        return responses.get(statusClass);
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
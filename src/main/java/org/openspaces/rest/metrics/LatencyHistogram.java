@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency distribution in microseconds, from 1 microsecond to an hour with two significant
+ * digits. Recording is wait free and does not allocate; the recorded values are folded into the
+ * running totals when the histogram is read.
+ */
+public class LatencyHistogram {
+    static final long HIGHEST_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final Recorder recorder = new Recorder(1, HIGHEST_MICROS, 2);
+    private final Histogram total = new Histogram(1, HIGHEST_MICROS, 2);
+    private final AtomicLong sumMicros = new AtomicLong();
+    private Histogram interval;
+
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public void recordNanos(long nanos) {
+        long micros = Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 1), HIGHEST_MICROS);
+        recorder.recordValue(micros);
+        sumMicros.addAndGet(micros);
+    }
+
+    public long getSumMicros() {
+        return sumMicros.get();
+    }
+
+    /**
+     * Returns a copy of everything recorded so far.
+     */
+    public synchronized Histogram snapshot() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return total.copy();
+    }
+}
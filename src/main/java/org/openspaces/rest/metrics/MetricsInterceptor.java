@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.metrics;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records the latency, status and in-flight count of every handler invocation.
+ *
+ * Asynchronous requests (DeferredResult, streamed bodies) pass through the interceptor twice:
+ * once on the container thread that starts them and once on the dispatch that completes them.
+ * The endpoint and start time are kept as a request attribute, so the latency covers both and
+ * the request is counted once.
+ *
+ * The attribute is a timing taken from a preallocated pool and returned when the request
+ * completes, so recording does not allocate; only more concurrent requests than the pool holds
+ * allocate timings of their own.
+ */
+public class MetricsInterceptor extends HandlerInterceptorAdapter {
+    private static final String TIMING = MetricsInterceptor.class.getName() + ".timing";
+    private static final int POOL_SIZE = 1024;
+    private static final int POOL_PROBES = 8;
+
+    private final MetricsRegistry registry;
+    private final AtomicReferenceArray<Timing> pool = new AtomicReferenceArray<Timing>(POOL_SIZE);
+
+    public MetricsInterceptor(MetricsRegistry registry) {
+        this.registry = registry;
+        for (int i = 0; i < POOL_SIZE; i++) {
+            pool.set(i, new Timing());
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod) || request.getAttribute(TIMING) != null)
+            return true;
+        EndpointMetrics endpoint = registry.endpoint((HandlerMethod) handler, request);
+        endpoint.started();
+        Timing timing = take();
+        timing.endpoint = endpoint;
+        timing.startNanos = System.nanoTime();
+        request.setAttribute(TIMING, timing);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Timing timing = (Timing) request.getAttribute(TIMING);
+        if (timing == null)
+            return;
+        request.removeAttribute(TIMING);
+        int status = ex != null && response.getStatus() < 400 ? 500 : response.getStatus();
+        timing.endpoint.completed(status, timing.startNanos);
+        timing.endpoint = null;
+        release(timing);
+    }
+
+    /**
+     * Takes a timing from the pool, probing a few slots from one picked by the calling thread.
+     */
+    private Timing take() {
+        int start = slot();
+        for (int i = 0; i < POOL_PROBES; i++) {
+            Timing timing = pool.getAndSet((start + i) & (POOL_SIZE - 1), null);
+            if (timing != null)
+                return timing;
+        }
+        return new Timing();
+    }
+
+    /**
+     * Returns a timing to a free slot of the pool, or leaves it to the garbage collector when the
+     * probed slots are taken.
+     */
+    private void release(Timing timing) {
+        int start = slot();
+        for (int i = 0; i < POOL_PROBES; i++) {
+            if (pool.compareAndSet((start + i) & (POOL_SIZE - 1), null, timing))
+                return;
+        }
+    }
+
+    private static int slot() {
+        long id = Thread.currentThread().getId();
+        return (int) (id * 0x9E3779B9L >>> 16);
+    }
+
+    private static final class Timing {
+        private EndpointMetrics endpoint;
+        private long startNanos;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.metrics;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the request metrics recorded by {@link MetricsInterceptor} and the space write latency,
+ * and writes them in the Prometheus format. The metrics of the cached types are owned by the
+ * types themselves, see {@link TypeMetrics}.
+ */
+public class MetricsRegistry {
+    private final ConcurrentHashMap<Method, EndpointMetrics> endpoints = new ConcurrentHashMap<Method, EndpointMetrics>();
+    private final LatencyHistogram spaceWriteLatency = new LatencyHistogram();
+
+    /**
+     * Returns the metrics of the handler method serving the request. The handler method is the
+     * key, so after the first request of an endpoint the lookup does not allocate.
+     */
+    public EndpointMetrics endpoint(HandlerMethod handler, HttpServletRequest request) {
+        EndpointMetrics endpoint = endpoints.get(handler.getMethod());
+        if (endpoint != null)
+            return endpoint;
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        endpoint = new EndpointMetrics(request.getMethod(), pattern == null ? request.getRequestURI() : pattern.toString());
+        EndpointMetrics existing = endpoints.putIfAbsent(handler.getMethod(), endpoint);
+        return existing == null ? endpoint : existing;
+    }
+
+    public LatencyHistogram getSpaceWriteLatency() {
+        return spaceWriteLatency;
+    }
+
+    public void writeTo(PrometheusWriter writer) {
+        List<EndpointMetrics> sorted = new ArrayList<EndpointMetrics>(endpoints.values());
+        Collections.sort(sorted, new Comparator<EndpointMetrics>() {
+            @Override
+            public int compare(EndpointMetrics a, EndpointMetrics b) {
+                int byPath = a.getPath().compareTo(b.getPath());
+                return byPath != 0 ? byPath : a.getMethod().compareTo(b.getMethod());
+            }
+        });
+
+        //per endpoint only, so sum(rest_requests_in_flight) is the total
+        writer.family("rest_requests_in_flight", "gauge", "Requests being handled");
+        for (EndpointMetrics endpoint : sorted)
+            writer.sample("rest_requests_in_flight", labels(endpoint), endpoint.getInFlight());
+
+        writer.family("rest_responses_total", "counter", "Responses by endpoint and status class");
+        for (EndpointMetrics endpoint : sorted) {
+            for (int statusClass = 1; statusClass <= 5; statusClass++) {
+                long count = endpoint.getResponses(statusClass);
+                if (count > 0)
+                    writer.sample("rest_responses_total", PrometheusWriter.labels("method", endpoint.getMethod(),
+                            "path", endpoint.getPath(), "status", statusClass + "xx"), count);
+            }
+        }
+
+        writer.family("rest_request_duration_seconds", "histogram", "Time from the start of a request until its response completed");
+        for (EndpointMetrics endpoint : sorted)
+            writer.histogram("rest_request_duration_seconds", labels(endpoint), endpoint.getLatency());
+
+        writer.family("rest_space_write_duration_seconds", "histogram", "Latency of the writes of loaded documents to the space");
+        writer.histogram("rest_space_write_duration_seconds", "", spaceWriteLatency);
+    }
+
+    private static String labels(EndpointMetrics endpoint) {
+        return PrometheusWriter.labels("method", endpoint.getMethod(), "path", endpoint.getPath());
+    }
+}
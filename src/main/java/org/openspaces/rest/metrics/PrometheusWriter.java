@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.metrics;
+
+import org.HdrHistogram.Histogram;
+
+import java.math.BigDecimal;
+
+/**
+ * Writes metrics in the Prometheus text exposition format. Each metric family is started with
+ * {@link #family} and followed by all of its samples.
+ */
+public class PrometheusWriter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * Upper bounds in seconds of the latency histogram buckets.
+     */
+    private static final double[] BUCKETS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+    private final StringBuilder out = new StringBuilder(8192);
+
+    public PrometheusWriter family(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, String labels, double value) {
+        out.append(name).append(labels).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value))
+            out.append((long) value);
+        else
+            out.append(value);
+        out.append('\n');
+        return this;
+    }
+
+    /**
+     * Writes the buckets, sum and count of a histogram family member.
+     */
+    public PrometheusWriter histogram(String name, String labels, LatencyHistogram latency) {
+        Histogram histogram = latency.snapshot();
+        String prefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ",";
+        for (double bucket : BUCKETS) {
+            long micros = (long) (bucket * 1000000);
+            String le = BigDecimal.valueOf(bucket).toPlainString();
+            sample(name + "_bucket", prefix + "le=\"" + le + "\"}", histogram.getCountBetweenValues(0, micros));
+        }
+        sample(name + "_bucket", prefix + "le=\"+Inf\"}", histogram.getTotalCount());
+        sample(name + "_sum", labels, latency.getSumMicros() / 1000000.0);
+        sample(name + "_count", labels, histogram.getTotalCount());
+        return this;
+    }
+
+    /**
+     * Formats label names and values, e.g. labels("type", "Account") gives {type="Account"}.
+     */
+    public static String labels(String... namesAndValues) {
+        if (namesAndValues.length == 0)
+            return "";
+        StringBuilder labels = new StringBuilder("{");
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0)
+                labels.append(',');
+            labels.append(namesAndValues[i]).append("=\"");
+            String value = namesAndValues[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"')
+                    labels.append('\\').append(c);
+                else if (c == '\n')
+                    labels.append("\\n");
+                else
+                    labels.append(c);
+            }
+            labels.append('"');
+        }
+        return labels.append('}').toString();
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
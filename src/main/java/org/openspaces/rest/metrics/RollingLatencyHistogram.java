@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution in microseconds of the recent past only, for decisions that have to follow
+ * the current latency rather than the whole history. The window is split into slots; reads fold
+ * the recorded values into the current slot and drop the slots that fell out of the window, so
+ * a change of latency shows in full after one window. Recording is wait free and does not
+ * allocate, like in {@link LatencyHistogram}.
+ */
+public class RollingLatencyHistogram {
+    private final Recorder recorder = new Recorder(1, LatencyHistogram.HIGHEST_MICROS, 2);
+    private final Histogram[] slots;
+    private final long slotNanos;
+    private int current;
+    private long slotStartNanos = System.nanoTime();
+    private Histogram interval;
+
+    /**
+     * @param windowMillis how far back values are kept
+     * @param slotCount    number of slots the window is dropped in
+     */
+    public RollingLatencyHistogram(long windowMillis, int slotCount) {
+        this.slots = new Histogram[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Histogram(1, LatencyHistogram.HIGHEST_MICROS, 2);
+        }
+        this.slotNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis) / slotCount;
+    }
+
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public void recordNanos(long nanos) {
+        recorder.recordValue(Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 1), LatencyHistogram.HIGHEST_MICROS));
+    }
+
+    /**
+     * Returns the values recorded within about the last window.
+     */
+    public synchronized Histogram snapshot() {
+        interval = recorder.getIntervalHistogram(interval);
+        slots[current].add(interval);
+        long now = System.nanoTime();
+        for (int i = 0; i < slots.length && now - slotStartNanos >= slotNanos; i++) {
+            current = (current + 1) % slots.length;
+            slots[current].reset();
+            slotStartNanos += slotNanos;
+        }
+        if (now - slotStartNanos >= slotNanos)
+            slotStartNanos = now;
+        Histogram window = new Histogram(1, LatencyHistogram.HIGHEST_MICROS, 2);
+        for (Histogram slot : slots) {
+            window.add(slot);
+        }
+        return window;
+    }
+}
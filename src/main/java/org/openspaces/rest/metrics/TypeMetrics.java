@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through counters and latencies of a single space type: reads answered from the near cache
+ * or the space (hits), the responses among them that carried stale documents, reads that needed
+ * the backend (misses), backend calls, the keys they loaded and their failures.
+ */
+public class TypeMetrics {
+    /**
+     * How far back {@link #getRecentLoadLatency} goes.
+     */
+    public static final long RECENT_LOAD_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong staleReads = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadedKeys = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final LatencyHistogram loadLatency = new LatencyHistogram();
+    private final RollingLatencyHistogram recentLoadLatency = new RollingLatencyHistogram(RECENT_LOAD_WINDOW_MILLIS, 6);
+    private final LatencyHistogram spaceReadLatency = new LatencyHistogram();
+
+    public void hit() {
+        hits.incrementAndGet();
+    }
+
+    public void hits(int count) {
+        hits.addAndGet(count);
+    }
+
+    public void stale() {
+        staleReads.incrementAndGet();
+    }
+
+    public void miss() {
+        misses.incrementAndGet();
+    }
+
+    public void misses(int count) {
+        misses.addAndGet(count);
+    }
+
+    /**
+     * Counts a backend call that started at {@code startNanos} and ended now.
+     */
+    public void loaded(long startNanos, boolean failed) {
+        loaded(startNanos, 1, failed);
+    }
+
+    /**
+     * Counts a backend call for {@code keys} keys that started at {@code startNanos} and ended now.
+     */
+    public void loaded(long startNanos, int keys, boolean failed) {
+        long nanos = System.nanoTime() - startNanos;
+        loadLatency.recordNanos(nanos);
+        recentLoadLatency.recordNanos(nanos);
+        loads.incrementAndGet();
+        loadedKeys.addAndGet(keys);
+        if (failed)
+            loadFailures.incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getStaleReads() {
+        return staleReads.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getLoads() {
+        return loads.get();
+    }
+
+    public long getLoadedKeys() {
+        return loadedKeys.get();
+    }
+
+    public long getLoadFailures() {
+        return loadFailures.get();
+    }
+
+    public LatencyHistogram getLoadLatency() {
+        return loadLatency;
+    }
+
+    /**
+     * Backend call latency of the last {@link #RECENT_LOAD_WINDOW_MILLIS}.
+     */
+    public RollingLatencyHistogram getRecentLoadLatency() {
+        return recentLoadLatency;
+    }
+
+    public LatencyHistogram getSpaceReadLatency() {
+        return spaceReadLatency;
+    }
+}
@@ -17,49 +17,124 @@
 package org.openspaces.rest.space;
 
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.gigaspaces.client.WriteModifiers;
+import com.gigaspaces.client.ReadByIdsResult;
 import com.gigaspaces.document.SpaceDocument;
+import com.gigaspaces.metadata.SpaceTypeDescriptor;
+import com.gigaspaces.query.IdQuery;
+import com.gigaspaces.query.IdsQuery;
+import com.j_spaces.core.client.SQLQuery;
 
-import net.jini.core.lease.Lease;
 
 import org.jsondoc.core.annotation.Api;
 import org.jsondoc.core.annotation.ApiMethod;
 import org.jsondoc.core.annotation.ApiPathParam;
+import org.jsondoc.core.annotation.ApiQueryParam;
 import org.jsondoc.core.pojo.ApiVerb;
 import org.openspaces.core.GigaSpace;
 import org.openspaces.core.space.CannotFindSpaceException;
+import org.openspaces.rest.cache.BatchingLoader;
+import org.openspaces.rest.cache.CacheWarmer;
+import org.openspaces.rest.cache.CachedType;
+import org.openspaces.rest.cache.ChangeFeed;
+import org.openspaces.rest.cache.InvalidationJob;
+import org.openspaces.rest.cache.Invalidator;
+import org.openspaces.rest.cache.LoadMarkers;
+import org.openspaces.rest.cache.MembershipFilter;
+import org.openspaces.rest.cache.NearCache;
+import org.openspaces.rest.cache.NegativeCache;
+import org.openspaces.rest.cache.SingleFlight;
+import org.openspaces.rest.cache.TtlPolicy;
+import org.openspaces.rest.cache.WriteBehindBuffer;
 import org.openspaces.rest.data.AccountTransactions;
 import org.openspaces.rest.data.Accounts;
+import org.openspaces.rest.data.BackendLoader;
 import org.openspaces.rest.data.CardAccounts;
+import org.openspaces.rest.data.LatencyModel;
+import org.openspaces.rest.data.LatencyModels;
+import org.openspaces.rest.data.SyntheticDataSet;
+import org.openspaces.rest.exceptions.BackendException;
+import org.openspaces.rest.exceptions.DeadlineExceededException;
+import org.openspaces.rest.exceptions.InvalidRequestException;
 import org.openspaces.rest.exceptions.ObjectNotFoundException;
 import org.openspaces.rest.exceptions.RestException;
+import org.openspaces.rest.exceptions.ServiceUnavailableException;
 import org.openspaces.rest.exceptions.TypeAlreadyRegisteredException;
 import org.openspaces.rest.exceptions.TypeNotFoundException;
 import org.openspaces.rest.exceptions.UnsupportedTypeException;
+import org.openspaces.rest.metrics.MetricsRegistry;
+import org.openspaces.rest.metrics.PrometheusWriter;
+import org.openspaces.rest.metrics.TypeMetrics;
+import org.openspaces.rest.utils.BatchDocumentResponse;
+import org.openspaces.rest.utils.BulkIngest;
 import org.openspaces.rest.utils.ControllerUtils;
+import org.openspaces.rest.utils.Deadline;
+import org.openspaces.rest.utils.ConversionPlan;
+import org.openspaces.rest.utils.DocumentResponse;
+import org.openspaces.rest.utils.DocumentStreamReader;
+import org.openspaces.rest.utils.DocumentStreamWriter;
+import org.openspaces.rest.utils.Encoding;
+import org.openspaces.rest.utils.EntityTags;
 import org.openspaces.rest.utils.ErrorMessage;
 import org.openspaces.rest.utils.ErrorResponse;
 import org.openspaces.rest.utils.ExceptionMessage;
+import org.openspaces.rest.utils.InvalidationRequest;
+import org.openspaces.rest.utils.KeysetCursor;
+import org.openspaces.rest.utils.NamedThreadFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.File;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletResponse;
 
 /**
  * Spring MVC controller for the RESTful Space API <p/> usage examples: GET:
@@ -102,172 +177,865 @@ public class SpaceAPIController {
         ControllerUtils.lookupLocators = lookupLocators;
     }
 
+    @Value("${failoverSpaceUrls:}")
+    public void setFailoverSpaceUrls(String failoverSpaceUrls) {
+        ControllerUtils.xapCache.setFailoverUrls(failoverSpaceUrls);
+    }
+
+    @Value("${spaceProbeIntervalMillis:5000}")
+    public void setSpaceProbeIntervalMillis(long spaceProbeIntervalMillis) {
+        ControllerUtils.xapCache.setProbeIntervalMillis(spaceProbeIntervalMillis);
+    }
+
+    @Value("${spaceProbeFailureThreshold:3}")
+    public void setSpaceProbeFailureThreshold(int spaceProbeFailureThreshold) {
+        ControllerUtils.xapCache.setFailureThreshold(spaceProbeFailureThreshold);
+    }
+
+    @Value("${spaceLookupTimeoutMillis:0}")
+    public void setSpaceLookupTimeoutMillis(int spaceLookupTimeoutMillis) {
+        ControllerUtils.xapCache.setLookupTimeoutMillis(spaceLookupTimeoutMillis);
+    }
+
     @Value("${datetime_format}")
     public void setDatetimeFormat(String datetimeFormat) {
         logger.info("Using [" + datetimeFormat + "] as datetime format");
-        ControllerUtils.date_format = datetimeFormat;
-        ControllerUtils.simpleDateFormat = new SimpleDateFormat(datetimeFormat);
-        ControllerUtils.mapper = new ObjectMapper();
-        ControllerUtils.mapper.setDateFormat(ControllerUtils.simpleDateFormat);
-        ControllerUtils.mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        ControllerUtils.configureDateFormat(datetimeFormat);
+    }
+
+    @Value("${asyncMisses:true}")
+    public void setAsyncMisses(boolean asyncMisses) {
+        this.asyncMisses = asyncMisses;
+    }
+
+    @Value("${loaderThreads:64}")
+    public void setLoaderThreads(int loaderThreads) {
+        this.loaderThreads = loaderThreads;
+    }
+
+    @Value("${loaderQueueCapacity:1024}")
+    public void setLoaderQueueCapacity(int loaderQueueCapacity) {
+        this.loaderQueueCapacity = loaderQueueCapacity;
+    }
+
+    @Value("${loadBatchWindowMicros:2000}")
+    public void setLoadBatchWindowMicros(long loadBatchWindowMicros) {
+        this.loadBatchWindowMicros = loadBatchWindowMicros;
+    }
+
+    @Value("${loadBatchMaxSize:100}")
+    public void setLoadBatchMaxSize(int loadBatchMaxSize) {
+        this.loadBatchMaxSize = loadBatchMaxSize;
+    }
+
+    @Value("${loadBatchThreads:64}")
+    public void setLoadBatchThreads(int loadBatchThreads) {
+        this.loadBatchThreads = loadBatchThreads;
+    }
+
+    @Value("${backendMaxConcurrentCalls:32}")
+    public void setBackendMaxConcurrentCalls(int backendMaxConcurrentCalls) {
+        this.backendMaxConcurrentCalls = backendMaxConcurrentCalls;
+    }
+
+    @Value("${hedgePercentile:95}")
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    @Value("${nearCacheSize:10000}")
+    public void setNearCacheSize(int nearCacheSize) {
+        this.nearCacheSize = nearCacheSize;
+    }
+
+    @Value("${maxBatchIds:500}")
+    public void setMaxBatchIds(int maxBatchIds) {
+        this.maxBatchIds = maxBatchIds;
+    }
+
+    @Value("${writeBehindBatchSize:256}")
+    public void setWriteBehindBatchSize(int writeBehindBatchSize) {
+        this.writeBehindBatchSize = writeBehindBatchSize;
+    }
+
+    @Value("${writeBehindLingerMillis:5}")
+    public void setWriteBehindLingerMillis(long writeBehindLingerMillis) {
+        this.writeBehindLingerMillis = writeBehindLingerMillis;
+    }
+
+    @Value("${writeBehindQueueCapacity:10000}")
+    public void setWriteBehindQueueCapacity(int writeBehindQueueCapacity) {
+        this.writeBehindQueueCapacity = writeBehindQueueCapacity;
+    }
+
+    @Value("${writeBehindOfferTimeoutMillis:100}")
+    public void setWriteBehindOfferTimeoutMillis(long writeBehindOfferTimeoutMillis) {
+        this.writeBehindOfferTimeoutMillis = writeBehindOfferTimeoutMillis;
+    }
+
+    @Value("${warmUp:true}")
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    @Value("${warmUpThreads:8}")
+    public void setWarmUpThreads(int warmUpThreads) {
+        this.warmUpThreads = warmUpThreads;
+    }
+
+    @Value("${warmUpChunkSize:1000}")
+    public void setWarmUpChunkSize(int warmUpChunkSize) {
+        this.warmUpChunkSize = warmUpChunkSize;
+    }
+
+    @Value("${warmUpAccountIds:}")
+    public void setWarmUpAccountIds(String warmUpAccountIds) {
+        this.warmUpAccountIds = new ArrayList<String>();
+        for (String accountId : warmUpAccountIds.split(",")) {
+            if (accountId.trim().length() > 0)
+                this.warmUpAccountIds.add(accountId.trim());
+        }
+    }
+
+    @Value("${accountTtlSeconds:3600}")
+    public void setAccountTtlSeconds(long accountTtlSeconds) {
+        this.accountTtlSeconds = accountTtlSeconds;
+    }
+
+    @Value("${cardAccountTtlSeconds:3600}")
+    public void setCardAccountTtlSeconds(long cardAccountTtlSeconds) {
+        this.cardAccountTtlSeconds = cardAccountTtlSeconds;
+    }
+
+    @Value("${accountTransactionTtlSeconds:3600}")
+    public void setAccountTransactionTtlSeconds(long accountTransactionTtlSeconds) {
+        this.accountTransactionTtlSeconds = accountTransactionTtlSeconds;
+    }
+
+    @Value("${accountMaxStaleSeconds:0}")
+    public void setAccountMaxStaleSeconds(long accountMaxStaleSeconds) {
+        this.accountMaxStaleSeconds = accountMaxStaleSeconds;
+    }
+
+    @Value("${cardAccountMaxStaleSeconds:0}")
+    public void setCardAccountMaxStaleSeconds(long cardAccountMaxStaleSeconds) {
+        this.cardAccountMaxStaleSeconds = cardAccountMaxStaleSeconds;
+    }
+
+    @Value("${accountTransactionMaxStaleSeconds:0}")
+    public void setAccountTransactionMaxStaleSeconds(long accountTransactionMaxStaleSeconds) {
+        this.accountTransactionMaxStaleSeconds = accountTransactionMaxStaleSeconds;
+    }
+
+    @Value("${refreshAheadRatio:0.8}")
+    public void setRefreshAheadRatio(double refreshAheadRatio) {
+        this.refreshAheadRatio = refreshAheadRatio;
+    }
+
+    @Value("${adaptiveTtl:false}")
+    public void setAdaptiveTtl(boolean adaptiveTtl) {
+        this.adaptiveTtl = adaptiveTtl;
+    }
+
+    @Value("${adaptiveTtlMaxFactor:8}")
+    public void setAdaptiveTtlMaxFactor(int adaptiveTtlMaxFactor) {
+        this.adaptiveTtlMaxFactor = adaptiveTtlMaxFactor;
+    }
+
+    @Value("${negativeCacheTtlSeconds:30}")
+    public void setNegativeCacheTtlSeconds(long negativeCacheTtlSeconds) {
+        this.negativeCacheTtlSeconds = negativeCacheTtlSeconds;
+    }
+
+    @Value("${membershipFilter:false}")
+    public void setMembershipFilter(boolean membershipFilter) {
+        this.membershipFilter = membershipFilter;
+    }
+
+    @Value("${membershipFilterFalsePositiveRate:0.01}")
+    public void setMembershipFilterFalsePositiveRate(double membershipFilterFalsePositiveRate) {
+        this.membershipFilterFalsePositiveRate = membershipFilterFalsePositiveRate;
+    }
+
+    @Value("${membershipFilterRebuildSeconds:300}")
+    public void setMembershipFilterRebuildSeconds(long membershipFilterRebuildSeconds) {
+        this.membershipFilterRebuildSeconds = membershipFilterRebuildSeconds;
+    }
+
+    @Value("${transactionPageSize:100}")
+    public void setTransactionPageSize(int transactionPageSize) {
+        this.transactionPageSize = transactionPageSize;
+    }
+
+    @Value("${maxTransactionPageSize:1000}")
+    public void setMaxTransactionPageSize(int maxTransactionPageSize) {
+        this.maxTransactionPageSize = maxTransactionPageSize;
+    }
+
+    @Value("${transactionFetchSize:100}")
+    public void setTransactionFetchSize(int transactionFetchSize) {
+        this.transactionFetchSize = transactionFetchSize;
+    }
+
+    @Value("${transactionLoadChunkSize:1000}")
+    public void setTransactionLoadChunkSize(int transactionLoadChunkSize) {
+        this.transactionLoadChunkSize = transactionLoadChunkSize;
+    }
+
+    @Value("${invalidationThreads:4}")
+    public void setInvalidationThreads(int invalidationThreads) {
+        this.invalidationThreads = invalidationThreads;
+    }
+
+    @Value("${invalidationChunkSize:1000}")
+    public void setInvalidationChunkSize(int invalidationChunkSize) {
+        this.invalidationChunkSize = invalidationChunkSize;
+    }
+
+    @Value("${invalidationSyncLimit:1000}")
+    public void setInvalidationSyncLimit(int invalidationSyncLimit) {
+        this.invalidationSyncLimit = invalidationSyncLimit;
+    }
+
+    @Value("${invalidationJobRetentionSeconds:3600}")
+    public void setInvalidationJobRetentionSeconds(long invalidationJobRetentionSeconds) {
+        this.invalidationJobRetentionSeconds = invalidationJobRetentionSeconds;
+    }
+
+    @Value("${changeFeed:true}")
+    public void setChangeFeed(boolean changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    @Value("${changeFeedHistorySize:10000}")
+    public void setChangeFeedHistorySize(int changeFeedHistorySize) {
+        this.changeFeedHistorySize = changeFeedHistorySize;
+    }
+
+    @Value("${changeFeedClientBufferSize:1000}")
+    public void setChangeFeedClientBufferSize(int changeFeedClientBufferSize) {
+        this.changeFeedClientBufferSize = changeFeedClientBufferSize;
+    }
+
+    @Value("${changeFeedSenderThreads:4}")
+    public void setChangeFeedSenderThreads(int changeFeedSenderThreads) {
+        this.changeFeedSenderThreads = changeFeedSenderThreads;
+    }
+
+    @Value("${changeFeedHeartbeatSeconds:15}")
+    public void setChangeFeedHeartbeatSeconds(long changeFeedHeartbeatSeconds) {
+        this.changeFeedHeartbeatSeconds = changeFeedHeartbeatSeconds;
+    }
+
+    @Value("${changeFeedTimeoutMinutes:30}")
+    public void setChangeFeedTimeoutMinutes(long changeFeedTimeoutMinutes) {
+        this.changeFeedTimeoutMinutes = changeFeedTimeoutMinutes;
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @Value("${bulkChunkSize:1000}")
+    public void setBulkChunkSize(int bulkChunkSize) {
+        this.bulkChunkSize = bulkChunkSize;
+    }
+
+    @Value("${bulkWriterThreads:8}")
+    public void setBulkWriterThreads(int bulkWriterThreads) {
+        this.bulkWriterThreads = bulkWriterThreads;
+    }
+
+    @Value("${bulkMaxPendingChunks:16}")
+    public void setBulkMaxPendingChunks(int bulkMaxPendingChunks) {
+        this.bulkMaxPendingChunks = bulkMaxPendingChunks;
+    }
+
+    @Value("${backendLatency:" + LatencyModels.DEFAULT_SPEC + "}")
+    public void setBackendLatency(String backendLatency) {
+        this.backendLatency = backendLatency;
+    }
+
+    @Value("${backendErrorRate:0}")
+    public void setBackendErrorRate(double backendErrorRate) {
+        this.backendErrorRate = backendErrorRate;
+    }
+
+    @Value("${backendSize:10}")
+    public void setBackendSize(int backendSize) {
+        this.backendSize = backendSize;
+    }
+
+    @Value("${backendTransactionsPerAccount:10}")
+    public void setBackendTransactionsPerAccount(int backendTransactionsPerAccount) {
+        this.backendTransactionsPerAccount = backendTransactionsPerAccount;
+    }
+
+    @Value("${backendSeed:" + SyntheticDataSet.DEFAULT_SEED + "}")
+    public void setBackendSeed(long backendSeed) {
+        this.backendSeed = backendSeed;
+    }
+
+    @Value("${backendDataFile:}")
+    public void setBackendDataFile(String backendDataFile) {
+        this.backendDataFile = backendDataFile.trim();
+    }
+
+    @Value("${asyncTimeoutMillis:30000}")
+    public void setAsyncTimeoutMillis(long asyncTimeoutMillis) {
+        this.asyncTimeoutMillis = asyncTimeoutMillis;
     }
 
     private static final String QUERY_PARAM = "query";
     private static final String MAX_PARAM = "max";
     private static final String URL_PREFIX = "/v1";
     private static final String SPACEID_PARAM = "spaceid";
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final String STALENESS_HEADER = "X-Staleness-Millis";
+    private static final String FRESH_DESCRIPTION = "Reject stale documents and wait for the backend instead";
 
     private static int maxReturnValues = Integer.MAX_VALUE;
     private static final Logger logger = Logger.getLogger(SpaceAPIController.class.getName());
 
     private static Object emptyObject = new Object();
 
-    private static Accounts accounts = new Accounts();
-    private static AccountTransactions accountTransactions = new AccountTransactions();
-    private static CardAccounts cardAccounts = new CardAccounts();
+    private Accounts accounts;
+    private AccountTransactions accountTransactions;
+    private CardAccounts cardAccounts;
+
+    private boolean asyncMisses = true;
+    private int loaderThreads = 64;
+    private int loaderQueueCapacity = 1024;
+    private long asyncTimeoutMillis = 30000;
+    private ThreadPoolExecutor loaderExecutor;
+    private long loadBatchWindowMicros = 2000;
+    private int loadBatchMaxSize = 100;
+    private int loadBatchThreads = 64;
+    private int backendMaxConcurrentCalls = 32;
+    private double hedgePercentile = 95;
+    private ScheduledExecutorService loadBatchTimer;
+    private ThreadPoolExecutor loadBatchExecutor;
+    private int nearCacheSize = 10000;
+    private int maxBatchIds = 500;
+    private int writeBehindBatchSize = 256;
+    private long writeBehindLingerMillis = 5;
+    private int writeBehindQueueCapacity = 10000;
+    private long writeBehindOfferTimeoutMillis = 100;
+    private WriteBehindBuffer writeBehind;
+    private boolean warmUp = true;
+    private int warmUpThreads = 8;
+    private int warmUpChunkSize = 1000;
+    private List<String> warmUpAccountIds = new ArrayList<String>();
+    private CacheWarmer cacheWarmer;
+    private long accountTtlSeconds = 3600;
+    private long cardAccountTtlSeconds = 3600;
+    private long accountTransactionTtlSeconds = 3600;
+    private long accountMaxStaleSeconds = 0;
+    private long cardAccountMaxStaleSeconds = 0;
+    private long accountTransactionMaxStaleSeconds = 0;
+    private double refreshAheadRatio = 0.8;
+    private boolean adaptiveTtl = false;
+    private int adaptiveTtlMaxFactor = 8;
+    private long negativeCacheTtlSeconds = 30;
+    private boolean membershipFilter = false;
+    private double membershipFilterFalsePositiveRate = 0.01;
+    private long membershipFilterRebuildSeconds = 300;
+    private ScheduledExecutorService membershipFilterExecutor;
+    private int transactionPageSize = 100;
+    private int maxTransactionPageSize = 1000;
+    private int transactionFetchSize = 100;
+    private int transactionLoadChunkSize = 1000;
+    private final LoadMarkers transactionLoads = new LoadMarkers("AccountTransaction");
+    private int invalidationThreads = 4;
+    private int invalidationChunkSize = 1000;
+    private int invalidationSyncLimit = 1000;
+    private long invalidationJobRetentionSeconds = 3600;
+    private Invalidator invalidator;
+    private boolean changeFeed = true;
+    private int changeFeedHistorySize = 10000;
+    private int changeFeedClientBufferSize = 1000;
+    private int changeFeedSenderThreads = 4;
+    private long changeFeedHeartbeatSeconds = 15;
+    private long changeFeedTimeoutMinutes = 30;
+    private ChangeFeed changes;
+    private MetricsRegistry metrics = new MetricsRegistry();
+    private int bulkChunkSize = 1000;
+    private int bulkWriterThreads = 8;
+    private int bulkMaxPendingChunks = 16;
+    private ThreadPoolExecutor bulkWriterExecutor;
+    private Semaphore bulkChunkPermits;
+    private String backendLatency = LatencyModels.DEFAULT_SPEC;
+    private double backendErrorRate = 0;
+    private int backendSize = 10;
+    private int backendTransactionsPerAccount = 10;
+    private long backendSeed = SyntheticDataSet.DEFAULT_SEED;
+    private String backendDataFile = "";
+    private CachedType accountsType;
+    private CachedType accountTransactionsType;
+    private CachedType cardAccountsType;
+    private List<CachedType> cachedTypes;
 
     @PostConstruct
     public void init() {
         logger.info("Init started");
-        GigaSpace gigaSpace = ControllerUtils.xapCache.get();
-        gigaSpace.getTypeManager().registerTypeDescriptor(accounts.getType());
-        gigaSpace.getTypeManager().registerTypeDescriptor(accountTransactions.getType());
-        gigaSpace.getTypeManager().registerTypeDescriptor(cardAccounts.getType());
+        loaderExecutor = new ThreadPoolExecutor(loaderThreads, loaderThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(loaderQueueCapacity), new NamedThreadFactory("space-loader"));
+        loaderExecutor.allowCoreThreadTimeOut(true);
+        LatencyModel latency = LatencyModels.parse(backendLatency, backendErrorRate);
+        File dataFile = backendDataFile.isEmpty()
+                ? SyntheticDataSet.defaultFile(backendSeed, backendSize, backendTransactionsPerAccount) : new File(backendDataFile);
+        SyntheticDataSet data;
+        try {
+            data = SyntheticDataSet.open(dataFile, backendSeed, backendSize, backendTransactionsPerAccount);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open backend data set " + dataFile, e);
+        }
+        logger.info("Using backend of " + backendSize + " accounts with " + backendTransactionsPerAccount
+                + " transactions each from " + dataFile + ", latency " + backendLatency + " and error rate " + backendErrorRate);
+        accounts = new Accounts(data);
+        accounts.setLatencyModel(latency);
+        accountTransactions = new AccountTransactions(data);
+        accountTransactions.setLatencyModel(latency);
+        cardAccounts = new CardAccounts(data);
+        cardAccounts.setLatencyModel(latency);
+        loadBatchTimer = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("load-batch-timer"));
+        loadBatchExecutor = new ThreadPoolExecutor(loadBatchThreads, loadBatchThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("load-batch"));
+        loadBatchExecutor.allowCoreThreadTimeOut(true);
+        //every endpoint gets the types before it can serve requests, a DR cluster may not know them
+        ControllerUtils.xapCache.addListener(new ControllerUtils.EndpointListener() {
+            @Override
+            public void connected(GigaSpace gigaSpace) {
+                for (SpaceTypeDescriptor type : new SpaceTypeDescriptor[]{Accounts.getType(), AccountTransactions.getType(),
+                        CardAccounts.getType(), NegativeCache.getType(), LoadMarkers.getType()}) {
+                    gigaSpace.getTypeManager().registerTypeDescriptor(type);
+                    //documents are converted by the new descriptor right away, not once the cached plan is checked again
+                    ConversionPlan.invalidate(type.getTypeName());
+                }
+            }
+
+            @Override
+            public void activated(GigaSpace gigaSpace) {
+            }
+        });
+        ControllerUtils.xapCache.get();
+        writeBehind = new WriteBehindBuffer(ControllerUtils.xapCache, writeBehindBatchSize, writeBehindLingerMillis,
+                writeBehindQueueCapacity, writeBehindOfferTimeoutMillis, metrics.getSpaceWriteLatency());
+        writeBehind.start();
+        accountsType = createCachedType("Account", accountTtlSeconds, accountMaxStaleSeconds, accounts, "accountId");
+        cardAccountsType = createCachedType("CardAccount", cardAccountTtlSeconds, cardAccountMaxStaleSeconds, cardAccounts, "accountId");
+        accountTransactionsType = createCachedType("AccountTransaction", accountTransactionTtlSeconds, accountTransactionMaxStaleSeconds, accountTransactions, "accountId", "transactionId");
+        cachedTypes = new ArrayList<CachedType>();
+        cachedTypes.add(accountsType);
+        cachedTypes.add(cardAccountsType);
+        cachedTypes.add(accountTransactionsType);
+        if (changeFeed) {
+            changes = new ChangeFeed(changeFeedHistorySize, changeFeedClientBufferSize, changeFeedSenderThreads,
+                    TimeUnit.SECONDS.toMillis(changeFeedHeartbeatSeconds));
+        }
+        //the notifications follow the active endpoint, starting with the current one
+        ControllerUtils.xapCache.addListener(new ControllerUtils.EndpointListener() {
+            @Override
+            public void connected(GigaSpace gigaSpace) {
+            }
+
+            @Override
+            public void activated(GigaSpace gigaSpace) {
+                for (CachedType cachedType : cachedTypes) {
+                    cachedType.getNearCache().start(gigaSpace);
+                }
+                if (changes != null)
+                    changes.start(gigaSpace, cachedTypes);
+            }
+        });
+        invalidator = new Invalidator(ControllerUtils.xapCache, writeBehind, invalidationThreads, invalidationChunkSize,
+                TimeUnit.SECONDS.toMillis(invalidationJobRetentionSeconds));
+        bulkWriterExecutor = new ThreadPoolExecutor(bulkWriterThreads, bulkWriterThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("space-bulk-writer"));
+        bulkWriterExecutor.allowCoreThreadTimeOut(true);
+        bulkChunkPermits = new Semaphore(bulkMaxPendingChunks);
+        startMembershipFilters();
+        startWarmUp();
         logger.info("Init completed");
     }
 
+    private CachedType createCachedType(String typeName, long ttlSeconds, long maxStaleSeconds, BackendLoader backend, String... keyProperties) {
+        TypeMetrics typeMetrics = new TypeMetrics();
+        return new CachedType(typeName,
+                new NearCache(typeName, nearCacheSize, keyProperties),
+                new TtlPolicy(typeName, TimeUnit.SECONDS.toMillis(ttlSeconds), refreshAheadRatio, adaptiveTtl, adaptiveTtlMaxFactor,
+                        TimeUnit.SECONDS.toMillis(maxStaleSeconds)),
+                new NegativeCache(typeName, TimeUnit.SECONDS.toMillis(negativeCacheTtlSeconds), writeBehind),
+                new BatchingLoader(typeName, backend, typeMetrics, loadBatchMaxSize, loadBatchWindowMicros, loadBatchTimer, loadBatchExecutor,
+                        backendMaxConcurrentCalls, hedgePercentile),
+                typeMetrics);
+    }
+
+    /**
+     * Builds the membership filters of the cached types from the key sets of the backends and
+     * rebuilds them periodically, so keys added to a backend are accepted again after at most
+     * membershipFilterRebuildSeconds.
+     */
+    private void startMembershipFilters() {
+        if (!membershipFilter)
+            return;
+        final Map<CachedType, Supplier<Collection<String>>> keySources = new LinkedHashMap<CachedType, Supplier<Collection<String>>>();
+        keySources.put(accountsType, new Supplier<Collection<String>>() {
+            @Override
+            public Collection<String> get() {
+                return accounts.getIds();
+            }
+        });
+        keySources.put(cardAccountsType, new Supplier<Collection<String>>() {
+            @Override
+            public Collection<String> get() {
+                return cardAccounts.getIds();
+            }
+        });
+        keySources.put(accountTransactionsType, new Supplier<Collection<String>>() {
+            @Override
+            public Collection<String> get() {
+                return accountTransactions.getKeys();
+            }
+        });
+        Runnable rebuild = new Runnable() {
+            @Override
+            public void run() {
+                for (Map.Entry<CachedType, Supplier<Collection<String>>> entry : keySources.entrySet()) {
+                    try {
+                        Collection<String> keys = entry.getValue().get();
+                        entry.getKey().getNegativeCache().setFilter(new MembershipFilter(keys, membershipFilterFalsePositiveRate));
+                        if (logger.isLoggable(Level.FINE))
+                            logger.fine("built membership filter of " + entry.getKey().getTypeName() + " with " + keys.size() + " keys");
+                    } catch (RuntimeException e) {
+                        logger.log(Level.WARNING, "failed to build membership filter of " + entry.getKey().getTypeName(), e);
+                    }
+                }
+            }
+        };
+        rebuild.run();
+        if (membershipFilterRebuildSeconds > 0) {
+            membershipFilterExecutor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("membership-filter"));
+            membershipFilterExecutor.scheduleWithFixedDelay(rebuild, membershipFilterRebuildSeconds,
+                    membershipFilterRebuildSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Preloads the space in the background, either with the full backend data sets or, when
+     * warmUpAccountIds is configured, with the accounts, card accounts and transactions of those
+     * accounts only.
+     */
+    private void startWarmUp() {
+        cacheWarmer = new CacheWarmer(ControllerUtils.xapCache, warmUpThreads, warmUpChunkSize);
+        if (warmUp) {
+            boolean hotKeys = !warmUpAccountIds.isEmpty();
+            cacheWarmer.addSource(accountsType.getTtl(), hotKeys ? warmUpAccountIds : accounts.getIds(),
+                    new Function<Collection<String>, Collection<SpaceDocument>>() {
+                        @Override
+                        public Collection<SpaceDocument> apply(Collection<String> accountIds) {
+                            return accounts.getAll(accountIds).values();
+                        }
+                    });
+            cacheWarmer.addSource(cardAccountsType.getTtl(), hotKeys ? warmUpAccountIds : cardAccounts.getIds(),
+                    new Function<Collection<String>, Collection<SpaceDocument>>() {
+                        @Override
+                        public Collection<SpaceDocument> apply(Collection<String> accountIds) {
+                            return cardAccounts.getAll(accountIds).values();
+                        }
+                    });
+            cacheWarmer.addSource(accountTransactionsType.getTtl(), hotKeys ? warmUpAccountIds : accountTransactions.getAccountIds(),
+                    new Function<Collection<String>, Collection<SpaceDocument>>() {
+                        @Override
+                        public Collection<SpaceDocument> apply(Collection<String> accountIds) {
+                            List<SpaceDocument> docs = accountTransactions.getAllForAccounts(accountIds);
+                            //the listings of warmed up accounts are complete, a chunk failing to write only costs a reload
+                            Map<String, Integer> counts = new HashMap<String, Integer>();
+                            for (String accountId : accountIds) {
+                                counts.put(accountId, 0);
+                            }
+                            for (SpaceDocument doc : docs) {
+                                String accountId = doc.getProperty("accountId");
+                                counts.put(accountId, counts.get(accountId) + 1);
+                            }
+                            transactionLoads.markAll(ControllerUtils.xapCache.get(), counts,
+                                    accountTransactionsType.getTtl().leaseFor(null));
+                            return docs;
+                        }
+                    });
+        }
+        cacheWarmer.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (cacheWarmer != null)
+            cacheWarmer.close();
+        if (cachedTypes != null) {
+            for (CachedType cachedType : cachedTypes) {
+                cachedType.getNearCache().close();
+            }
+        }
+        if (changes != null)
+            changes.close();
+        if (invalidator != null)
+            invalidator.close();
+        if (membershipFilterExecutor != null)
+            membershipFilterExecutor.shutdownNow();
+        if (loaderExecutor != null)
+            loaderExecutor.shutdownNow();
+        if (loadBatchTimer != null)
+            loadBatchTimer.shutdownNow();
+        if (loadBatchExecutor != null)
+            loadBatchExecutor.shutdownNow();
+        if (bulkWriterExecutor != null)
+            bulkWriterExecutor.shutdown();
+        if (writeBehind != null)
+            writeBehind.close();
+        ControllerUtils.xapCache.close();
+    }
+
     @ApiMethod(
             path = URL_PREFIX + "/accounts/{accountId}",
             verb = ApiVerb.GET,
             description = "Reads account details from a given account addressed by \"account-id\""
-            , produces = {MediaType.APPLICATION_JSON_VALUE}
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
     )
-    @RequestMapping(value = URL_PREFIX + "/accounts/{accountId}", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE})
+    @RequestMapping(value = URL_PREFIX + "/accounts/{accountId}", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
     public
     @ResponseBody
-    Map<String, Object> getAccounts(
-            @PathVariable() @ApiPathParam(name = "accountId", description = "Account ID") String accountId) throws ObjectNotFoundException {
+    DeferredResult<ResponseEntity<DocumentResponse>> getAccounts(
+            @PathVariable() @ApiPathParam(name = "accountId", description = "Account ID") final String accountId,
+            @RequestParam(value = "fresh", required = false, defaultValue = "false") @ApiQueryParam(name = "fresh", required = false,
+                    description = FRESH_DESCRIPTION) boolean fresh,
+            @RequestHeader(value = Deadline.HEADER, required = false) Long deadlineMillis) throws ObjectNotFoundException {
         if (logger.isLoggable(Level.FINE))
             logger.fine("getting account for account id=" + accountId);
         logger.info("getting account for account id=" + accountId);
 
-        GigaSpace gigaSpace = ControllerUtils.xapCache.get();
-        SpaceDocument doc;
-        try {
-            SpaceDocument query = new SpaceDocument("Account");
-            query.setProperty("accountId", accountId);
-            doc = gigaSpace.read(query);
-            if(null == doc){
-                doc = accounts.get(accountId);
-                gigaSpace.write(doc);
-            }
-        } catch (DataAccessException e) {
-            throw translateDataAccessException(gigaSpace, e, "Account");
-        }
+        IdQuery<SpaceDocument> query = new IdQuery<SpaceDocument>("Account", accountId);
+        return readThrough(accountsType, query, accountId, Deadline.fromHeader(deadlineMillis, asyncTimeoutMillis), fresh);
+    }
 
-        try {
-            Map<String, Object> result = new HashMap<String, Object>();
-            result.put("status", "success");
-            result.put("data", ControllerUtils.mapper.readValue(ControllerUtils.mapper.writeValueAsString(doc.getProperties()), Map.class));
-            return result;
-        } catch (IOException e) {
-            throw new RestException(e.getMessage());
-        }
+    @ApiMethod(
+            path = URL_PREFIX + "/accounts",
+            verb = ApiVerb.GET,
+            description = "Reads the details of several accounts addressed by a comma separated list of \"ids\". " +
+                    "Ids that do not exist are reported per id in the same response"
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
+    )
+    @RequestMapping(value = URL_PREFIX + "/accounts", params = "ids", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
+    public
+    @ResponseBody
+    DeferredResult<ResponseEntity<BatchDocumentResponse>> getAccountsByIds(
+            @RequestParam("ids") @ApiQueryParam(name = "ids", description = "Comma separated account ids") List<String> ids,
+            @RequestParam(value = "fresh", required = false, defaultValue = "false") @ApiQueryParam(name = "fresh", required = false,
+                    description = FRESH_DESCRIPTION) boolean fresh,
+            @RequestHeader(value = Deadline.HEADER, required = false) Long deadlineMillis) {
+        return readThroughBatch(accountsType, ids, Deadline.fromHeader(deadlineMillis, asyncTimeoutMillis), fresh);
     }
 
     /**
      * REST GET by ID request handler
      *
-     * @return Map<String, Object>
+     * @return DocumentResponse
      */
     @ApiMethod(
-            path = URL_PREFIX + "accounts/{accountId}/transactions/{transactionId}",
+            path = URL_PREFIX + "/accounts/{accountId}/transactions/{transactionId}",
             verb = ApiVerb.GET,
             description = "Reads transaction details from a given transaction addressed by \"transactionId\" on" +
                             "a given account addressed by \"account-id\""
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
+    )
+    @RequestMapping(value = URL_PREFIX + "/accounts/{accountId}/transactions/{transactionId}", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
+    public
+    @ResponseBody
+    DeferredResult<ResponseEntity<DocumentResponse>> getAccountTransaction(
+            @PathVariable @ApiPathParam(name = "accountId", description = TYPE_DESCRIPTION) final String accountId,
+            @PathVariable @ApiPathParam(name = "transactionId") final String transactionId,
+            @RequestParam(value = "fresh", required = false, defaultValue = "false") @ApiQueryParam(name = "fresh", required = false,
+                    description = FRESH_DESCRIPTION) boolean fresh,
+            @RequestHeader(value = Deadline.HEADER, required = false) Long deadlineMillis) throws ObjectNotFoundException {
+        //read by id request, routed to the partition of the account
+        String key = AccountTransactions.makeKey(accountId, transactionId);
+        IdQuery<SpaceDocument> query = new IdQuery<SpaceDocument>("AccountTransaction", key, accountId);
+        return readThrough(accountTransactionsType, query, key, Deadline.fromHeader(deadlineMillis, asyncTimeoutMillis), fresh);
+    }
+
+    @ApiMethod(
+            path = URL_PREFIX + "/accounts/{accountId}/transactions",
+            verb = ApiVerb.GET,
+            description = "Lists the transactions of an account addressed by \"account-id\", newest first. When more " +
+                    "transactions follow the response carries a \"cursor\", pass it back to read the next page"
             , produces = {MediaType.APPLICATION_JSON_VALUE}
     )
-    @RequestMapping(value = URL_PREFIX + "/accounts/{accountId}/transactions/{transactionId}", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE})
+    @RequestMapping(value = URL_PREFIX + "/accounts/{accountId}/transactions", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE})
     public
     @ResponseBody
-    Map<String, Object> getAccountTransaction(
-            @PathVariable @ApiPathParam(name = "accountId", description = TYPE_DESCRIPTION) String accountId,
-            @PathVariable @ApiPathParam(name = "transactionId") String transactionId) throws ObjectNotFoundException {
-        GigaSpace gigaSpace = ControllerUtils.xapCache.get();
-        //read by id request
-        SpaceDocument doc;
+    DeferredResult<ResponseEntity<StreamingResponseBody>> listAccountTransactions(
+            @PathVariable @ApiPathParam(name = "accountId", description = "Account ID") final String accountId,
+            @RequestParam(value = "cursor", required = false) @ApiQueryParam(name = "cursor", required = false,
+                    description = "Cursor returned by the previous page") String cursor,
+            @RequestParam(value = "from", required = false) @ApiQueryParam(name = "from", required = false,
+                    description = "Oldest transaction time to list, inclusive, in epoch milliseconds") Long from,
+            @RequestParam(value = "to", required = false) @ApiQueryParam(name = "to", required = false,
+                    description = "Newest transaction time to list, exclusive, in epoch milliseconds") Long to,
+            @RequestParam(value = "limit", required = false) @ApiQueryParam(name = "limit", required = false,
+                    description = "Maximum number of transactions in the page") Integer limit,
+            @RequestHeader(value = Deadline.HEADER, required = false) Long deadlineMillis) {
+        final int pageSize = limit == null ? transactionPageSize : limit;
+        if (pageSize <= 0 || pageSize > maxTransactionPageSize)
+            throw new InvalidRequestException("limit must be between 1 and " + maxTransactionPageSize);
+        if (from != null && to != null && from >= to)
+            throw new InvalidRequestException("from must be before to");
+        final Date fromDate = from == null ? null : new Date(from);
+        final Date toDate = to == null ? null : new Date(to);
+        final KeysetCursor after = cursor == null ? null : KeysetCursor.decode(cursor);
+        final GigaSpace gigaSpace = ControllerUtils.xapCache.get();
+        final Deadline deadline = Deadline.fromHeader(deadlineMillis, asyncTimeoutMillis);
+        final DeferredResult<ResponseEntity<StreamingResponseBody>> result =
+                new DeferredResult<ResponseEntity<StreamingResponseBody>>(Math.max(deadline.remainingMillis(), 1));
+
+        TypeMetrics typeMetrics = accountTransactionsType.getMetrics();
         try {
-            SpaceDocument query = new SpaceDocument("AccountTransaction");
-            query.setProperty("accountId", accountId);
-            query.setProperty("transactionId", transactionId);
-            doc = gigaSpace.read(query);
-            if(null == doc){
-                doc = accountTransactions.get(accountId, transactionId);
-                gigaSpace.write(doc);
+            //complete means all transactions of the account, whatever the range, so empty ranges are not loads
+            long start = System.nanoTime();
+            boolean complete = transactionLoads.isComplete(gigaSpace, accountId, accountTransactionsQuery(accountId));
+            typeMetrics.getSpaceReadLatency().recordSince(start);
+            if (complete) {
+                typeMetrics.hit();
+                result.setResult(transactionListing(gigaSpace, accountId, fromDate, toDate, after, pageSize));
+                return result;
+            }
+            typeMetrics.miss();
+            if (!asyncMisses) {
+                accountTransactionsType.getFlight().execute("account:" + accountId, deadline, accountTransactionsLoad(accountId));
+                result.setResult(transactionListing(gigaSpace, accountId, fromDate, toDate, after, pageSize));
+                return result;
             }
         } catch (DataAccessException e) {
             throw translateDataAccessException(gigaSpace, e, "AccountTransaction");
         }
 
-        try {
-            Map<String, Object> result = new HashMap<String, Object>();
-            result.put("status", "success");
-            result.put("data", ControllerUtils.mapper.readValue(ControllerUtils.mapper.writeValueAsString(doc.getProperties()), Map.class));
-            return result;
-        } catch (IOException e) {
-            throw new RestException(e.getMessage());
-        }
+        result.onTimeout(new Runnable() {
+            @Override
+            public void run() {
+                result.setErrorResult(deadline.exceeded("loading AccountTransaction from backend"));
+            }
+        });
+        accountTransactionsType.getFlight().submit("account:" + accountId, deadline, accountTransactionsLoad(accountId), loaderExecutor)
+                .whenComplete(new BiConsumer<SpaceDocument, Throwable>() {
+                    @Override
+                    public void accept(SpaceDocument ignored, Throwable t) {
+                        if (t != null) {
+                            result.setErrorResult(translateLoadFailure(gigaSpace, t, "AccountTransaction"));
+                            return;
+                        }
+                        try {
+                            result.setResult(transactionListing(gigaSpace, accountId, fromDate, toDate, after, pageSize));
+                        } catch (DataAccessException e) {
+                            result.setErrorResult(translateDataAccessException(gigaSpace, e, "AccountTransaction"));
+                        }
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * helper method that reads the first chunk of a transaction listing from space and returns the
+     * response that streams it and the chunks after it. The first chunk is read before the
+     * response starts, so failures still get an error status.
+     */
+    private ResponseEntity<StreamingResponseBody> transactionListing(final GigaSpace gigaSpace, final String accountId,
+                                                                     final Date fromDate, final Date toDate,
+                                                                     final KeysetCursor after, final int pageSize) {
+        final int firstFetch = Math.min(transactionFetchSize, pageSize + 1);
+        long start = System.nanoTime();
+        final SpaceDocument[] firstChunk = gigaSpace.readMultiple(transactionsQuery(accountId, fromDate, toDate, after), firstFetch);
+        accountTransactionsType.getMetrics().getSpaceReadLatency().recordSince(start);
+
+        StreamingResponseBody body = new StreamingResponseBody() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                DocumentStreamWriter writer = new DocumentStreamWriter(out);
+                KeysetCursor position = after;
+                SpaceDocument[] chunk = firstChunk;
+                int fetched = firstFetch;
+                boolean more = false;
+                while (true) {
+                    for (SpaceDocument doc : chunk) {
+                        if (writer.getCount() == pageSize) {
+                            more = true;
+                            break;
+                        }
+                        writer.write(doc);
+                        Date timestamp = (Date) doc.getProperty("timestamp");
+                        position = new KeysetCursor(timestamp == null ? Long.MIN_VALUE : timestamp.getTime(), (String) doc.getProperty("id"));
+                    }
+                    if (more || chunk.length < fetched)
+                        break;
+                    writer.flush();
+                    //one more than the page still needs, to tell whether another page follows
+                    fetched = Math.min(transactionFetchSize, pageSize - writer.getCount() + 1);
+                    chunk = gigaSpace.readMultiple(transactionsQuery(accountId, fromDate, toDate, position), fetched);
+                }
+                writer.finish(more ? position.encode() : null);
+            }
+        };
+        return new ResponseEntity<StreamingResponseBody>(body, HttpStatus.OK);
     }
 
 
     /**
      * REST GET by ID request handler
      *
-     * @return Map<String, Object>
+     * @return DocumentResponse
      */
     @ApiMethod(
             path = URL_PREFIX + "/card-accounts/{accountId}",
             verb = ApiVerb.GET,
             description = "Reads details about a card account"
-            , produces = {MediaType.APPLICATION_JSON_VALUE}
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
     )
-    @RequestMapping(value = URL_PREFIX + "/card-accounts/{accountId}", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE})
+    @RequestMapping(value = URL_PREFIX + "/card-accounts/{accountId}", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
     public
     @ResponseBody
-    Map<String, Object> getCardAccount(
-            @PathVariable @ApiPathParam(name = "accountId", description = TYPE_DESCRIPTION) String accountId) throws ObjectNotFoundException {
-        GigaSpace gigaSpace = ControllerUtils.xapCache.get();
+    DeferredResult<ResponseEntity<DocumentResponse>> getCardAccount(
+            @PathVariable @ApiPathParam(name = "accountId", description = TYPE_DESCRIPTION) final String accountId,
+            @RequestParam(value = "fresh", required = false, defaultValue = "false") @ApiQueryParam(name = "fresh", required = false,
+                    description = FRESH_DESCRIPTION) boolean fresh,
+            @RequestHeader(value = Deadline.HEADER, required = false) Long deadlineMillis) throws ObjectNotFoundException {
         //read by id request
-        SpaceDocument doc;
-        try {
-            SpaceDocument query = new SpaceDocument("CardAccount");
-            query.setProperty("accountId", accountId);
-            doc = gigaSpace.read(query);
-            if(null == doc){
-                doc = cardAccounts.get(accountId);
-                gigaSpace.write(doc);
-            }
-        } catch (DataAccessException e) {
-            throw translateDataAccessException(gigaSpace, e, "CardAccount");
-        }
+        IdQuery<SpaceDocument> query = new IdQuery<SpaceDocument>("CardAccount", accountId);
+        return readThrough(cardAccountsType, query, accountId, Deadline.fromHeader(deadlineMillis, asyncTimeoutMillis), fresh);
+    }
 
-        try {
-            Map<String, Object> result = new HashMap<String, Object>();
-            result.put("status", "success");
-            result.put("data", ControllerUtils.mapper.readValue(ControllerUtils.mapper.writeValueAsString(doc.getProperties()), Map.class));
-            return result;
-        } catch (IOException e) {
-            throw new RestException(e.getMessage());
-        }
+    @ApiMethod(
+            path = URL_PREFIX + "/card-accounts",
+            verb = ApiVerb.GET,
+            description = "Reads details about several card accounts addressed by a comma separated list of \"ids\". " +
+                    "Ids that do not exist are reported per id in the same response"
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
+    )
+    @RequestMapping(value = URL_PREFIX + "/card-accounts", params = "ids", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
+    public
+    @ResponseBody
+    DeferredResult<ResponseEntity<BatchDocumentResponse>> getCardAccountsByIds(
+            @RequestParam("ids") @ApiQueryParam(name = "ids", description = "Comma separated account ids") List<String> ids,
+            @RequestParam(value = "fresh", required = false, defaultValue = "false") @ApiQueryParam(name = "fresh", required = false,
+                    description = FRESH_DESCRIPTION) boolean fresh,
+            @RequestHeader(value = Deadline.HEADER, required = false) Long deadlineMillis) {
+        return readThroughBatch(cardAccountsType, ids, Deadline.fromHeader(deadlineMillis, asyncTimeoutMillis), fresh);
     }
 
     @ApiMethod(
             path = URL_PREFIX + "/card-accounts/{accountId}",
             verb = ApiVerb.DELETE,
             description = "Invalidate Cache account details for a given account addressed by \"account-id\""
-            , produces = {MediaType.APPLICATION_JSON_VALUE}
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
     )
-    @RequestMapping(value = URL_PREFIX + "/card-accounts/{accountId}", method = RequestMethod.DELETE, produces = {MediaType.APPLICATION_JSON_VALUE})
+    @RequestMapping(value = URL_PREFIX + "/card-accounts/{accountId}", method = RequestMethod.DELETE, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
     public
     @ResponseBody
     Map<String, Object> invalidateCardAccout(@PathVariable @ApiPathParam(name = "accountId", description = TYPE_DESCRIPTION) String accountId) throws ObjectNotFoundException {
@@ -276,7 +1044,10 @@ public class SpaceAPIController {
         try {
             SpaceDocument query = new SpaceDocument("CardAccount");
             query.setProperty("accountId", accountId);
-            gigaSpace.clear(query);
+            writeBehind.invalidate("CardAccount", accountId);
+            invalidate(gigaSpace, cardAccountsType, query);
+            cardAccountsType.getNearCache().invalidate(accountId);
+            cardAccountsType.getNegativeCache().invalidate(gigaSpace, accountId);
         } catch (DataAccessException e) {
             throw translateDataAccessException(gigaSpace, e, "CardAccount");
         }
@@ -287,12 +1058,12 @@ public class SpaceAPIController {
     }
 
     @ApiMethod(
-            path = URL_PREFIX + "accounts/{accountId}/transactions/{transactionId}",
+            path = URL_PREFIX + "/accounts/{accountId}/transactions/{transactionId}",
             verb = ApiVerb.DELETE,
             description = "Invalidate Cache account transaction details for a given account transaction addressed by \"account-id\" and \"transaction-id\""
-            , produces = {MediaType.APPLICATION_JSON_VALUE}
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
     )
-    @RequestMapping(value = URL_PREFIX + "accounts/{accountId}/transactions/{transactionId}", method = RequestMethod.DELETE, produces = {MediaType.APPLICATION_JSON_VALUE})
+    @RequestMapping(value = URL_PREFIX + "/accounts/{accountId}/transactions/{transactionId}", method = RequestMethod.DELETE, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
     public
     @ResponseBody
     Map<String, Object> invalidateAccoutTransaction(@PathVariable @ApiPathParam(name = "accountId", description = TYPE_DESCRIPTION) String accountId,
@@ -300,10 +1071,15 @@ public class SpaceAPIController {
         GigaSpace gigaSpace = ControllerUtils.xapCache.get();
         SpaceDocument doc;
         try {
+            //id and routing value set, so the clear goes to the partition of the account only
+            String key = AccountTransactions.makeKey(accountId, transactionId);
             SpaceDocument query = new SpaceDocument("AccountTransaction");
+            query.setProperty("id", key);
             query.setProperty("accountId", accountId);
-            query.setProperty("transactionId", transactionId);
-            gigaSpace.clear(query);
+            writeBehind.invalidate("AccountTransaction", key);
+            invalidate(gigaSpace, accountTransactionsType, query);
+            accountTransactionsType.getNearCache().invalidate(key);
+            accountTransactionsType.getNegativeCache().invalidate(gigaSpace, key);
         } catch (DataAccessException e) {
             throw translateDataAccessException(gigaSpace, e, "AccountTransaction");
         }
@@ -316,9 +1092,9 @@ public class SpaceAPIController {
             path = URL_PREFIX + "/accounts/{accountId}",
             verb = ApiVerb.DELETE,
             description = "Invalidate Cache account details for a given account addressed by \"account-id\""
-            , produces = {MediaType.APPLICATION_JSON_VALUE}
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
     )
-    @RequestMapping(value = URL_PREFIX + "/accounts/{accountId}", method = RequestMethod.DELETE, produces = {MediaType.APPLICATION_JSON_VALUE})
+    @RequestMapping(value = URL_PREFIX + "/accounts/{accountId}", method = RequestMethod.DELETE, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
     public
     @ResponseBody
     Map<String, Object> invalidateAccout(@PathVariable @ApiPathParam(name = "accountId", description = TYPE_DESCRIPTION) String accountId) throws ObjectNotFoundException {
@@ -327,7 +1103,10 @@ public class SpaceAPIController {
         try {
             SpaceDocument query = new SpaceDocument("Account");
             query.setProperty("accountId", accountId);
-            gigaSpace.clear(query);
+            writeBehind.invalidate("Account", accountId);
+            invalidate(gigaSpace, accountsType, query);
+            accountsType.getNearCache().invalidate(accountId);
+            accountsType.getNegativeCache().invalidate(gigaSpace, accountId);
         } catch (DataAccessException e) {
             throw translateDataAccessException(gigaSpace, e, "Account");
         }
@@ -337,6 +1116,876 @@ public class SpaceAPIController {
         return result;
     }
 
+    @ApiMethod(
+            path = URL_PREFIX + "/accounts/{accountId}/transactions",
+            verb = ApiVerb.DELETE,
+            description = "Invalidate Cache all transactions of a given account addressed by \"account-id\", " +
+                    "answers with the number of invalidated transactions"
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
+    )
+    @RequestMapping(value = URL_PREFIX + "/accounts/{accountId}/transactions", method = RequestMethod.DELETE, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
+    public
+    @ResponseBody
+    DeferredResult<ResponseEntity<Map<String, Object>>> invalidateAccountTransactions(
+            @PathVariable @ApiPathParam(name = "accountId", description = "Account ID") String accountId,
+            @RequestParam(value = "async", required = false, defaultValue = "false") @ApiQueryParam(name = "async", required = false,
+                    description = "Answer right away with a job id instead of waiting for the invalidation") boolean async) {
+        //routed to the partition of the account only
+        SQLQuery<SpaceDocument> query = new SQLQuery<SpaceDocument>("AccountTransaction", "accountId = ?", accountId);
+        query.setRouting(accountId);
+        InvalidationJob job = invalidator.invalidateMatching(accountTransactionsType, query, "transactions of account " + accountId);
+        return respondWhenDone(job, async);
+    }
+
+    @ApiMethod(
+            path = URL_PREFIX + "/invalidations",
+            verb = ApiVerb.POST,
+            description = "Invalidate Cache in bulk, either a list of \"ids\" of a \"type\" or all documents of the type matching " +
+                    "an SQL \"criteria\" with optional \"params\". Answers with the number of invalidated documents, or with " +
+                    "a job id to poll when async is set, the list is longer than the sync limit or the job takes too long"
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
+    )
+    @RequestMapping(value = URL_PREFIX + "/invalidations", method = RequestMethod.POST, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
+    public
+    @ResponseBody
+    DeferredResult<ResponseEntity<Map<String, Object>>> invalidate(
+            @RequestBody InvalidationRequest request,
+            @RequestParam(value = "async", required = false, defaultValue = "false") @ApiQueryParam(name = "async", required = false,
+                    description = "Answer right away with a job id instead of waiting for the invalidation") boolean async) {
+        CachedType cachedType = cachedTypeByName(request.getType());
+        boolean hasIds = request.getIds() != null && !request.getIds().isEmpty();
+        boolean hasCriteria = request.getCriteria() != null && request.getCriteria().trim().length() > 0;
+        if (hasIds == hasCriteria)
+            throw new InvalidRequestException("Either ids or criteria must be given");
+
+        InvalidationJob job;
+        if (hasIds) {
+            List<String> ids = new ArrayList<String>(new LinkedHashSet<String>(request.getIds()));
+            job = invalidator.invalidateIds(cachedType, ids);
+            async = async || ids.size() > invalidationSyncLimit;
+        } else {
+            Object[] params = request.getParams() == null ? new Object[0] : request.getParams().toArray();
+            SQLQuery<SpaceDocument> query = new SQLQuery<SpaceDocument>(cachedType.getTypeName(), request.getCriteria(), params);
+            job = invalidator.invalidateMatching(cachedType, query, request.getCriteria());
+        }
+        return respondWhenDone(job, async);
+    }
+
+    @ApiMethod(
+            path = URL_PREFIX + "/invalidations/{jobId}",
+            verb = ApiVerb.GET,
+            description = "Returns the progress of a bulk invalidation job"
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
+    )
+    @RequestMapping(value = URL_PREFIX + "/invalidations/{jobId}", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
+    public
+    @ResponseBody
+    Map<String, Object> getInvalidation(@PathVariable @ApiPathParam(name = "jobId", description = "Invalidation job id") String jobId)
+            throws ObjectNotFoundException {
+        InvalidationJob job = invalidator.getJob(jobId);
+        if (job == null)
+            throw new ObjectNotFoundException("Invalidation job " + jobId + " not found");
+
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("status", "success");
+        result.put("data", job.toMap());
+        return result;
+    }
+
+    @ApiMethod(
+            path = URL_PREFIX + "/bulk/{type}",
+            verb = ApiVerb.POST,
+            description = "Writes the documents of a type from a JSON array or newline delimited JSON objects, or the same " +
+                    "in Smile, CBOR or MessagePack. The payload is parsed as it arrives and written in chunks per partition; " +
+                    "the response reports every chunk, the documents that could not be converted and where a malformed " +
+                    "payload stopped the ingest"
+            , consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
+    )
+    @RequestMapping(value = URL_PREFIX + "/bulk/{type}", method = RequestMethod.POST,
+            consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
+    public
+    @ResponseBody
+    Map<String, Object> bulkWrite(
+            @PathVariable @ApiPathParam(name = "type", description = "Space type name") String type,
+            @RequestParam(value = "overwrite", required = false, defaultValue = "true") @ApiQueryParam(name = "overwrite", required = false,
+                    description = "Update existing documents, when false a chunk holding an existing id fails") boolean overwrite,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            InputStream body) throws IOException, InterruptedException {
+        GigaSpace gigaSpace = ControllerUtils.xapCache.get();
+        ConversionPlan plan = ConversionPlan.forType(gigaSpace, type);
+        CachedType cachedType = findCachedType(type);
+
+        BulkIngest ingest = new BulkIngest(gigaSpace, plan.getDescriptor(), partitionCount(gigaSpace), bulkChunkSize, bulkWriterExecutor,
+                bulkChunkPermits, overwrite ? WriteModifiers.UPDATE_OR_WRITE : WriteModifiers.WRITE_ONLY, metrics.getSpaceWriteLatency());
+        Encoding encoding = ControllerUtils.encodingFor(contentType == null ? null : MediaType.parseMediaType(contentType));
+        DocumentStreamReader reader = new DocumentStreamReader(encoding.getMapper().getFactory().createParser(body), plan);
+        Map<String, Object> parseError = null;
+        try {
+            Map<String, Object> properties;
+            while ((properties = reader.nextProperties()) != null) {
+                SpaceDocument doc;
+                try {
+                    doc = reader.toDocument(properties);
+                } catch (RuntimeException e) {
+                    ingest.reject(reader.getCount() - 1, e.getMessage());
+                    continue;
+                }
+                //a backend copy still queued for the space would overwrite the written document
+                if (cachedType != null)
+                    writeBehind.invalidate(type, cachedType.getNearCache().keyOf(doc));
+                ingest.add(doc);
+            }
+        } catch (JsonProcessingException e) {
+            if (reader.getCount() == 0)
+                throw new InvalidRequestException("Malformed payload: " + e.getOriginalMessage());
+            parseError = new LinkedHashMap<String, Object>();
+            parseError.put("error", e.getOriginalMessage());
+            parseError.put("line", e.getLocation() == null ? null : e.getLocation().getLineNr());
+            parseError.put("column", e.getLocation() == null ? null : e.getLocation().getColumnNr());
+            parseError.put("documentsRead", reader.getCount());
+        } catch (IOException e) {
+            //the chunks already handed to the writers are still written
+            ingest.finish();
+            throw e;
+        } finally {
+            reader.close();
+        }
+        List<Map<String, Object>> chunks = ingest.finish();
+
+        boolean failed = parseError != null || ingest.getRejected() > 0;
+        long written = 0;
+        for (Map<String, Object> chunk : chunks) {
+            if ("success".equals(chunk.get("status")))
+                written += (Integer) chunk.get("documents");
+            else
+                failed = true;
+        }
+        Map<String, Object> data = new LinkedHashMap<String, Object>();
+        data.put("type", type);
+        data.put("documents", ingest.getAccepted() + ingest.getRejected());
+        data.put("written", written);
+        data.put("rejected", ingest.getRejected());
+        data.put("chunks", chunks);
+        if (!ingest.getRejections().isEmpty())
+            data.put("rejections", ingest.getRejections());
+        if (parseError != null)
+            data.put("parseError", parseError);
+
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("status", failed ? "partial" : "success");
+        result.put("data", data);
+        return result;
+    }
+
+    @ApiMethod(
+            path = URL_PREFIX + "/changes",
+            verb = ApiVerb.GET,
+            description = "Server-Sent Events stream of write, update, take and expire events of the given \"types\" " +
+                    "(all cached types by default). Repeated changes of a key not yet delivered are coalesced into the latest. " +
+                    "Reconnecting with Last-Event-ID, or \"since\", replays the events missed in between"
+            , produces = {MediaType.TEXT_EVENT_STREAM_VALUE}
+    )
+    @RequestMapping(value = URL_PREFIX + "/changes", method = RequestMethod.GET, produces = {MediaType.TEXT_EVENT_STREAM_VALUE})
+    public
+    @ResponseBody
+    SseEmitter getChanges(
+            @RequestParam(value = "types", required = false) @ApiQueryParam(name = "types", required = false,
+                    description = "Comma separated type names") List<String> types,
+            @RequestParam(value = "since", required = false) @ApiQueryParam(name = "since", required = false,
+                    description = "Sequence number of the last event received") Long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        if (changes == null)
+            throw new ServiceUnavailableException("The change feed is disabled");
+        Set<String> typeNames = new LinkedHashSet<String>();
+        if (types == null || types.isEmpty()) {
+            for (CachedType cachedType : cachedTypes) {
+                typeNames.add(cachedType.getTypeName());
+            }
+        } else {
+            for (String type : types) {
+                typeNames.add(cachedTypeByName(type.trim()).getTypeName());
+            }
+        }
+        long lastSequence = since == null ? -1 : since;
+        if (lastEventId != null) {
+            try {
+                lastSequence = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                throw new InvalidRequestException("Invalid Last-Event-ID: " + lastEventId);
+            }
+        }
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(changeFeedTimeoutMinutes));
+        changes.subscribe(typeNames, lastSequence, emitter);
+        return emitter;
+    }
+
+    @ApiMethod(
+            path = URL_PREFIX + "/stats/loads",
+            verb = ApiVerb.GET,
+            description = "Returns per type backend load counters, including how many loads were saved by coalescing concurrent misses " +
+                    "how many refreshes ahead of expiration were triggered and how many requests for unknown ids were answered " +
+                    "from tombstones or the membership filter, and the write behind buffer counters"
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
+    )
+    @RequestMapping(value = URL_PREFIX + "/stats/loads", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
+    public
+    @ResponseBody
+    Map<String, Object> getLoadStats() {
+        Map<String, Object> data = new LinkedHashMap<String, Object>();
+        for (CachedType cachedType : cachedTypes) {
+            Map<String, Object> stats = new LinkedHashMap<String, Object>(cachedType.getFlight().getStats());
+            stats.put("ttl", cachedType.getTtl().getStats());
+            stats.put("negative", cachedType.getNegativeCache().getStats());
+            data.put(cachedType.getTypeName(), stats);
+        }
+        data.put("writeBehind", writeBehind.getStats());
+        if (changes != null)
+            data.put("changeFeed", changes.getStats());
+
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("status", "success");
+        result.put("data", data);
+        return result;
+    }
+
+    @ApiMethod(
+            path = URL_PREFIX + "/stats/near-cache",
+            verb = ApiVerb.GET,
+            description = "Returns per type near cache hit, miss, eviction and invalidation counters of this web node"
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
+    )
+    @RequestMapping(value = URL_PREFIX + "/stats/near-cache", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
+    public
+    @ResponseBody
+    Map<String, Object> getNearCacheStats() {
+        Map<String, Object> data = new LinkedHashMap<String, Object>();
+        for (CachedType cachedType : cachedTypes) {
+            data.put(cachedType.getTypeName(), cachedType.getNearCache().getStats());
+        }
+
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("status", "success");
+        result.put("data", data);
+        return result;
+    }
+
+    @ApiMethod(
+            path = URL_PREFIX + "/metrics",
+            verb = ApiVerb.GET,
+            description = "Returns request, cache, backend and space metrics of this web node in the Prometheus text format"
+            , produces = {MediaType.TEXT_PLAIN_VALUE}
+    )
+    @RequestMapping(value = URL_PREFIX + "/metrics", method = RequestMethod.GET, produces = {MediaType.TEXT_PLAIN_VALUE})
+    public void getMetrics(HttpServletResponse response) throws IOException {
+        PrometheusWriter writer = new PrometheusWriter();
+        metrics.writeTo(writer);
+        ControllerUtils.xapCache.writeTo(writer);
+
+        writer.family("rest_cache_reads_total", "counter", "Reads of cached types answered without (hit) or with (miss) a backend load");
+        for (CachedType cachedType : cachedTypes) {
+            writer.sample("rest_cache_reads_total", PrometheusWriter.labels("type", cachedType.getTypeName(), "result", "hit"), cachedType.getMetrics().getHits());
+            writer.sample("rest_cache_reads_total", PrometheusWriter.labels("type", cachedType.getTypeName(), "result", "miss"), cachedType.getMetrics().getMisses());
+        }
+        writer.family("rest_cache_stale_reads_total", "counter", "Responses of cached types that carried a stale document");
+        for (CachedType cachedType : cachedTypes)
+            writer.sample("rest_cache_stale_reads_total", PrometheusWriter.labels("type", cachedType.getTypeName()), cachedType.getMetrics().getStaleReads());
+        writer.family("rest_near_cache_reads_total", "counter", "Near cache lookups");
+        for (CachedType cachedType : cachedTypes) {
+            Map<String, Object> stats = cachedType.getNearCache().getStats();
+            writer.sample("rest_near_cache_reads_total", PrometheusWriter.labels("type", cachedType.getTypeName(), "result", "hit"), ((Number) stats.get("hits")).doubleValue());
+            writer.sample("rest_near_cache_reads_total", PrometheusWriter.labels("type", cachedType.getTypeName(), "result", "miss"), ((Number) stats.get("misses")).doubleValue());
+        }
+        writer.family("rest_near_cache_size", "gauge", "Documents held in the near cache");
+        for (CachedType cachedType : cachedTypes)
+            writer.sample("rest_near_cache_size", PrometheusWriter.labels("type", cachedType.getTypeName()), cachedType.getNearCache().size());
+        writer.family("rest_backend_loads_total", "counter", "Backend calls");
+        for (CachedType cachedType : cachedTypes)
+            writer.sample("rest_backend_loads_total", PrometheusWriter.labels("type", cachedType.getTypeName()), cachedType.getMetrics().getLoads());
+        writer.family("rest_backend_loaded_keys_total", "counter", "Keys requested by the backend calls, concurrent misses are batched into one call");
+        for (CachedType cachedType : cachedTypes)
+            writer.sample("rest_backend_loaded_keys_total", PrometheusWriter.labels("type", cachedType.getTypeName()), cachedType.getMetrics().getLoadedKeys());
+        writer.family("rest_backend_load_failures_total", "counter", "Backend calls that failed");
+        for (CachedType cachedType : cachedTypes)
+            writer.sample("rest_backend_load_failures_total", PrometheusWriter.labels("type", cachedType.getTypeName()), cachedType.getMetrics().getLoadFailures());
+        writer.family("rest_backend_hedged_calls_total", "counter", "Second backend calls started for calls slower than the hedge percentile");
+        for (CachedType cachedType : cachedTypes)
+            writer.sample("rest_backend_hedged_calls_total", PrometheusWriter.labels("type", cachedType.getTypeName()), cachedType.getLoader().getHedges());
+        writer.family("rest_backend_bulkhead_rejections_total", "counter", "Backend calls refused because the bulkhead of the type was full");
+        for (CachedType cachedType : cachedTypes)
+            writer.sample("rest_backend_bulkhead_rejections_total", PrometheusWriter.labels("type", cachedType.getTypeName()), cachedType.getLoader().getRejections());
+        writer.family("rest_backend_calls_in_flight", "gauge", "Backend calls holding a bulkhead permit");
+        for (CachedType cachedType : cachedTypes)
+            writer.sample("rest_backend_calls_in_flight", PrometheusWriter.labels("type", cachedType.getTypeName()), cachedType.getLoader().getCallsInFlight());
+        writer.family("rest_backend_loads_in_flight", "gauge", "Distinct keys being loaded from the backend");
+        for (CachedType cachedType : cachedTypes)
+            writer.sample("rest_backend_loads_in_flight", PrometheusWriter.labels("type", cachedType.getTypeName()), cachedType.getFlight().getInFlight());
+        writer.family("rest_backend_load_duration_seconds", "histogram", "Latency of the backend calls");
+        for (CachedType cachedType : cachedTypes)
+            writer.histogram("rest_backend_load_duration_seconds", PrometheusWriter.labels("type", cachedType.getTypeName()), cachedType.getMetrics().getLoadLatency());
+        writer.family("rest_space_read_duration_seconds", "histogram", "Latency of the space reads of the read-through paths");
+        for (CachedType cachedType : cachedTypes)
+            writer.histogram("rest_space_read_duration_seconds", PrometheusWriter.labels("type", cachedType.getTypeName()), cachedType.getMetrics().getSpaceReadLatency());
+
+        writer.family("rest_loader_active_threads", "gauge", "Loader threads running a backend load");
+        writer.sample("rest_loader_active_threads", "", loaderExecutor.getActiveCount());
+        writer.family("rest_loader_queue_size", "gauge", "Loads waiting for a loader thread");
+        writer.sample("rest_loader_queue_size", "", loaderExecutor.getQueue().size());
+        writer.family("rest_write_behind_pending", "gauge", "Loaded documents waiting to be written to the space");
+        writer.sample("rest_write_behind_pending", "", ((Number) writeBehind.getStats().get("pending")).doubleValue());
+
+        response.setContentType(PrometheusWriter.CONTENT_TYPE);
+        response.getWriter().write(writer.toString());
+    }
+
+    @ApiMethod(
+            path = URL_PREFIX + "/ready",
+            verb = ApiVerb.GET,
+            description = "Readiness probe, answers 200 once the startup warm up completed and 503 with its progress before that"
+            , produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE}
+    )
+    @RequestMapping(value = URL_PREFIX + "/ready", method = RequestMethod.GET, produces = {MediaType.APPLICATION_JSON_VALUE, Encoding.SMILE_VALUE, Encoding.CBOR_VALUE, Encoding.MSGPACK_VALUE})
+    public
+    @ResponseBody
+    ResponseEntity<Map<String, Object>> getReadiness() {
+        boolean ready = cacheWarmer.isReady();
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("status", ready ? "success" : "warming-up");
+        result.put("data", cacheWarmer.getProgress());
+        return new ResponseEntity<Map<String, Object>>(result, ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * helper method that reads a document from space by id and, on a miss, loads it from the backend and
+     * writes it to space. Concurrent misses on the same key share a single backend load. The space
+     * write is buffered, the loaded document is returned without waiting for it.
+     *
+     * Documents found in the near cache of this node skip the space read altogether. Hits are
+     * answered on the calling container thread. When async misses are enabled the load is
+     * handed to the bounded loader executor and the response is completed from there, so container
+     * threads never wait on the backend.
+     *
+     * Hits close to their lease expiration trigger a background refresh, so hot keys are reloaded
+     * before they expire into a miss.
+     *
+     * Keys the backend does not know are answered with an ObjectNotFoundException without a backend
+     * call: keys with a tombstone in space, and keys missing from the space that the membership
+     * filter rejects. The filter only guards the backend, as it does not know documents written to
+     * the space after it was built.
+     *
+     * Misses are answered with a 504 once the deadline passed. A load shared by several requests
+     * is carried out until the latest of their deadlines, so a request with a short deadline does
+     * not fail the others.
+     *
+     * Types served stale-while-revalidate answer with a stale document and its staleness headers
+     * while it is refreshed in the background, unless the request asks for fresh data.
+     */
+    private DeferredResult<ResponseEntity<DocumentResponse>> readThrough(final CachedType cachedType, final IdQuery<SpaceDocument> query,
+                                                         final String key, final Deadline deadline, final boolean fresh) {
+        final String type = cachedType.getTypeName();
+        final NearCache nearCache = cachedType.getNearCache();
+        final TtlPolicy ttl = cachedType.getTtl();
+        final NegativeCache negativeCache = cachedType.getNegativeCache();
+        final TypeMetrics typeMetrics = cachedType.getMetrics();
+        final DeferredResult<ResponseEntity<DocumentResponse>> result = new DeferredResult<ResponseEntity<DocumentResponse>>(Math.max(deadline.remainingMillis(), 1));
+        ttl.recordAccess(key);
+        final long stamp = nearCache.stamp(key);
+        SpaceDocument cached = nearCache.get(key);
+        if (cached != null && isServable(ttl, cached, fresh)) {
+            typeMetrics.hit();
+            refreshAheadIfNeeded(cachedType, cached, key);
+            result.setResult(toResponse(cachedType, cached));
+            return result;
+        }
+        if (deadline.isExpired()) {
+            result.setErrorResult(deadline.exceeded("before reading " + type));
+            return result;
+        }
+
+        final GigaSpace gigaSpace = ControllerUtils.xapCache.get();
+        result.onTimeout(new Runnable() {
+            @Override
+            public void run() {
+                result.setErrorResult(deadline.exceeded("loading " + type + " from backend"));
+            }
+        });
+
+        SingleFlight.Loader<SpaceDocument> load = new SingleFlight.Loader<SpaceDocument>() {
+            @Override
+            public SpaceDocument load(Deadline loadDeadline) throws Exception {
+                //another flight may have completed between our miss and becoming the leader
+                SpaceDocument loaded = writeBehind.get(type, key);
+                if (loaded == null)
+                    loaded = readById(gigaSpace, typeMetrics, query);
+                //a stale document is what this load replaces
+                if (loaded != null && ttl.staleness(loaded) >= 0)
+                    loaded = null;
+                if (loaded == null && !negativeCache.isTombstoned(gigaSpace, key))
+                    loaded = loadAndWrite(cachedType, key, loadDeadline);
+                return loaded;
+            }
+        };
+
+        try {
+            SpaceDocument doc = writeBehind.get(type, key);
+            if (doc == null)
+                doc = readById(gigaSpace, typeMetrics, query);
+            if (doc != null && !isServable(ttl, doc, fresh))
+                doc = null;
+            if (doc != null)
+                refreshAheadIfNeeded(cachedType, doc, key);
+            if (doc != null)
+                typeMetrics.hit();
+            else
+                typeMetrics.miss();
+            if (doc == null && !negativeCache.mightExist(key)) {
+                result.setErrorResult(notFound(type, key));
+                return result;
+            }
+            if (doc == null && !asyncMisses) {
+                doc = cachedType.getFlight().execute(key, deadline, load);
+                if (doc == null) {
+                    result.setErrorResult(notFound(type, key));
+                    return result;
+                }
+            }
+            if (doc != null) {
+                nearCache.put(key, doc, stamp);
+                result.setResult(toResponse(cachedType, doc));
+                return result;
+            }
+        } catch (DataAccessException e) {
+            throw translateDataAccessException(gigaSpace, e, type);
+        }
+
+        cachedType.getFlight().submit(key, deadline, load, loaderExecutor).whenComplete(new BiConsumer<SpaceDocument, Throwable>() {
+            @Override
+            public void accept(SpaceDocument doc, Throwable t) {
+                if (t != null) {
+                    result.setErrorResult(translateLoadFailure(gigaSpace, t, type));
+                    return;
+                }
+                if (doc == null) {
+                    result.setErrorResult(notFound(type, key));
+                    return;
+                }
+                nearCache.put(key, doc, stamp);
+                result.setResult(toResponse(cachedType, doc));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * helper method that loads a document from the backend, batched with the concurrent loads of
+     * its type, and queues its space write with the lease of its type. Returns the document as it
+     * will be stored, or null after writing a tombstone when the backend does not know the key.
+     */
+    private SpaceDocument loadAndWrite(CachedType cachedType, String key, Deadline deadline) throws Exception {
+        SpaceDocument doc = cachedType.getLoader().get(key, deadline);
+        if (doc == null) {
+            cachedType.getNegativeCache().record(key);
+            return null;
+        }
+        TtlPolicy ttl = cachedType.getTtl();
+        long lease = ttl.leaseFor(key);
+        SpaceDocument loaded = ttl.stamp(doc, lease);
+        writeBehind.enqueue(cachedType.getTypeName(), key, loaded, ttl.spaceLease(lease));
+        return loaded;
+    }
+
+    /**
+     * helper method that removes the documents matching the query from the space, or marks them
+     * stale when the type is served stale-while-revalidate.
+     */
+    private static void invalidate(GigaSpace gigaSpace, CachedType cachedType, SpaceDocument query) {
+        if (cachedType.getTtl().isServingStale())
+            gigaSpace.change(query, cachedType.getTtl().markStale());
+        else
+            gigaSpace.clear(query);
+    }
+
+    /**
+     * Whether a document found in the near cache or the space can answer a request: fresh
+     * documents always, stale ones within the maximum staleness of their type unless the client
+     * asked for fresh data.
+     */
+    private static boolean isServable(TtlPolicy ttl, SpaceDocument doc, boolean fresh) {
+        return ttl.staleness(doc) < 0 || (!fresh && ttl.isServableStale(doc));
+    }
+
+    /**
+     * helper method that builds the headers of a read response: its entity tag, so a request whose
+     * If-None-Match still matches is answered with a 304 without writing the body, and the
+     * staleness headers when a stale document is part of the response.
+     */
+    private static HttpHeaders responseHeaders(TypeMetrics typeMetrics, String etag, long staleness) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        if (staleness >= 0) {
+            typeMetrics.stale();
+            headers.set(HttpHeaders.WARNING, "110 - \"Response is Stale\"");
+            headers.set(STALENESS_HEADER, String.valueOf(staleness));
+        }
+        return headers;
+    }
+
+    /**
+     * helper method that reloads a document in the background when it is close to expiring or
+     * stale. The reload shares the single flight of the type, so concurrent readers trigger it
+     * only once. A key the backend no longer knows keeps being served stale until its lease ends.
+     */
+    private void refreshAheadIfNeeded(final CachedType cachedType, SpaceDocument doc, final String key) {
+        if (cachedType.getTtl().shouldRefresh(doc))
+            refreshAhead(cachedType, key);
+    }
+
+    /**
+     * helper method that returns the keys of the documents found by a multi id read that are due
+     * for a background reload, see {@link #refreshAheadIfNeeded}: the ones close to expiring and,
+     * for types served stale, the stale ones.
+     */
+    static List<String> refreshAheadKeys(TtlPolicy ttl, Map<String, SpaceDocument> found) {
+        List<String> keys = new ArrayList<String>();
+        for (Map.Entry<String, SpaceDocument> entry : found.entrySet()) {
+            if (ttl.shouldRefresh(entry.getValue()))
+                keys.add(entry.getKey());
+        }
+        return keys;
+    }
+
+    private void refreshAhead(final CachedType cachedType, final String key) {
+        cachedType.getTtl().refreshTriggered();
+        cachedType.getFlight().submit(key, new Callable<SpaceDocument>() {
+            @Override
+            public SpaceDocument call() throws Exception {
+                SpaceDocument refreshed = loadAndWrite(cachedType, key, Deadline.after(asyncTimeoutMillis));
+                NearCache nearCache = cachedType.getNearCache();
+                nearCache.invalidate(key);
+                nearCache.put(key, refreshed, nearCache.stamp(key));
+                return refreshed;
+            }
+        }, loaderExecutor);
+    }
+
+    /**
+     * helper method that resolves several ids of a type whose space id is the given id. Near cache
+     * hits are taken first, the rest is read with a single readByIds and the ids still missing are
+     * loaded from the backend in one batch and handed to the write behind buffer together. Ids
+     * already being loaded by another request, alone or in a batch, are not loaded again: the
+     * batch waits for those loads and leads only the rest. Missing ids rejected by the membership
+     * filter or with a tombstone are reported as not found without a backend call, ids the backend
+     * does not return get a tombstone. Stale documents are handled as in {@link #readThrough}, the
+     * staleness headers carry the stalest one.
+     */
+    private DeferredResult<ResponseEntity<BatchDocumentResponse>> readThroughBatch(final CachedType cachedType, List<String> requestedIds,
+                                                                   final Deadline deadline, boolean fresh) {
+        final String type = cachedType.getTypeName();
+        final NearCache nearCache = cachedType.getNearCache();
+        final TtlPolicy ttl = cachedType.getTtl();
+        final NegativeCache negativeCache = cachedType.getNegativeCache();
+        final TypeMetrics typeMetrics = cachedType.getMetrics();
+        final List<String> ids = new ArrayList<String>(new LinkedHashSet<String>(requestedIds));
+        if (ids.size() > maxBatchIds)
+            throw new InvalidRequestException("Too many ids requested (" + ids.size() + "), the maximum is " + maxBatchIds);
+
+        final Map<String, SpaceDocument> found = new HashMap<String, SpaceDocument>(ids.size() * 2);
+        final Map<String, Long> stamps = new HashMap<String, Long>(ids.size() * 2);
+        List<String> remaining = new ArrayList<String>();
+        for (String id : ids) {
+            ttl.recordAccess(id);
+            stamps.put(id, nearCache.stamp(id));
+            SpaceDocument cached = nearCache.get(id);
+            if (cached == null)
+                cached = writeBehind.get(type, id);
+            if (cached != null && isServable(ttl, cached, fresh))
+                found.put(id, cached);
+            else
+                remaining.add(id);
+        }
+
+        final DeferredResult<ResponseEntity<BatchDocumentResponse>> result = new DeferredResult<ResponseEntity<BatchDocumentResponse>>(Math.max(deadline.remainingMillis(), 1));
+        final GigaSpace gigaSpace = ControllerUtils.xapCache.get();
+        final List<String> misses = new ArrayList<String>();
+        if (!remaining.isEmpty()) {
+            try {
+                long start = System.nanoTime();
+                ReadByIdsResult<SpaceDocument> readResult = gigaSpace.readByIds(new IdsQuery<SpaceDocument>(type, remaining.toArray()));
+                typeMetrics.getSpaceReadLatency().recordSince(start);
+                SpaceDocument[] docs = readResult.getResultsArray();
+                for (int i = 0; i < docs.length; i++) {
+                    String id = remaining.get(i);
+                    if (docs[i] != null && isServable(ttl, docs[i], fresh)) {
+                        found.put(id, docs[i]);
+                        nearCache.put(id, docs[i], stamps.get(id));
+                    } else if (negativeCache.mightExist(id)) {
+                        misses.add(id);
+                    }
+                }
+                if (!misses.isEmpty())
+                    misses.removeAll(negativeCache.tombstoned(gigaSpace, misses));
+            } catch (DataAccessException e) {
+                throw translateDataAccessException(gigaSpace, e, type);
+            }
+        }
+
+        for (String key : refreshAheadKeys(ttl, found)) {
+            refreshAhead(cachedType, key);
+        }
+        typeMetrics.hits(found.size());
+        typeMetrics.misses(misses.size());
+        if (misses.isEmpty()) {
+            result.setResult(toBatchResponse(cachedType, ids, found));
+            return result;
+        }
+
+        final SingleFlight.Batch<SpaceDocument> batch = cachedType.getFlight().leadAll(misses, deadline);
+        Runnable load = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<String> led = batch.getLedKeys();
+                    Map<String, SpaceDocument> loaded = cachedType.getLoader().loadAll(led, batch.getDeadline());
+                    Map<String, SpaceDocument> stamped = new HashMap<String, SpaceDocument>(loaded.size() * 2);
+                    for (Map.Entry<String, SpaceDocument> entry : loaded.entrySet()) {
+                        long lease = ttl.leaseFor(entry.getKey());
+                        SpaceDocument doc = ttl.stamp(entry.getValue(), lease);
+                        writeBehind.enqueue(type, entry.getKey(), doc, ttl.spaceLease(lease));
+                        stamped.put(entry.getKey(), doc);
+                    }
+                    List<String> unknown = new ArrayList<String>(led);
+                    unknown.removeAll(loaded.keySet());
+                    negativeCache.recordAll(unknown);
+                    batch.complete(stamped);
+                } catch (Throwable t) {
+                    batch.fail(t);
+                }
+            }
+        };
+        result.onTimeout(new Runnable() {
+            @Override
+            public void run() {
+                result.setErrorResult(deadline.exceeded("loading " + type + " from backend"));
+            }
+        });
+        batch.results().whenComplete(new BiConsumer<Map<String, SpaceDocument>, Throwable>() {
+            @Override
+            public void accept(Map<String, SpaceDocument> loaded, Throwable t) {
+                if (t != null) {
+                    result.setErrorResult(translateLoadFailure(gigaSpace, t, type));
+                    return;
+                }
+                for (Map.Entry<String, SpaceDocument> entry : loaded.entrySet()) {
+                    if (entry.getValue() == null)
+                        continue;
+                    found.put(entry.getKey(), entry.getValue());
+                    nearCache.put(entry.getKey(), entry.getValue(), stamps.get(entry.getKey()));
+                }
+                result.setResult(toBatchResponse(cachedType, ids, found));
+            }
+        });
+        if (batch.getLedKeys().isEmpty()) {
+            batch.complete(Collections.<String, SpaceDocument>emptyMap());
+        } else if (!asyncMisses) {
+            load.run();
+        } else {
+            try {
+                loaderExecutor.execute(load);
+            } catch (RejectedExecutionException e) {
+                batch.fail(e);
+            }
+        }
+        return result;
+    }
+
+    private CachedType cachedTypeByName(String typeName) {
+        CachedType cachedType = findCachedType(typeName);
+        if (cachedType == null)
+            throw new InvalidRequestException("Unknown type: " + typeName);
+        return cachedType;
+    }
+
+    private CachedType findCachedType(String typeName) {
+        for (CachedType cachedType : cachedTypes) {
+            if (cachedType.getTypeName().equals(typeName))
+                return cachedType;
+        }
+        return null;
+    }
+
+    /**
+     * helper method that answers with the result of an invalidation job once it finished, or right
+     * away with 202 and the job id when async is requested. A job still running when the request
+     * times out is answered the same way.
+     */
+    private DeferredResult<ResponseEntity<Map<String, Object>>> respondWhenDone(final InvalidationJob job, boolean async) {
+        final DeferredResult<ResponseEntity<Map<String, Object>>> result = new DeferredResult<ResponseEntity<Map<String, Object>>>(asyncTimeoutMillis);
+        if (async) {
+            result.setResult(toJobResponse(job, "accepted", HttpStatus.ACCEPTED));
+            return result;
+        }
+        result.onTimeout(new Runnable() {
+            @Override
+            public void run() {
+                result.setResult(toJobResponse(job, "accepted", HttpStatus.ACCEPTED));
+            }
+        });
+        job.getCompletion().whenComplete(new BiConsumer<InvalidationJob, Throwable>() {
+            @Override
+            public void accept(InvalidationJob done, Throwable t) {
+                if (t != null) {
+                    result.setErrorResult(translateLoadFailure(ControllerUtils.xapCache.get(), t, job.getTypeName()));
+                    return;
+                }
+                result.setResult(toJobResponse(done, "success", HttpStatus.OK));
+            }
+        });
+        return result;
+    }
+
+    private static ResponseEntity<Map<String, Object>> toJobResponse(InvalidationJob job, String status, HttpStatus httpStatus) {
+        Map<String, Object> result = new HashMap<String, Object>();
+        result.put("status", status);
+        result.put("data", job.toMap());
+        return new ResponseEntity<Map<String, Object>>(result, httpStatus);
+    }
+
+    /**
+     * helper method that builds the query of a transactions listing: newest first, after the
+     * cursor position if any, routed to the partition of the account.
+     */
+    private static SQLQuery<SpaceDocument> accountTransactionsQuery(String accountId) {
+        SQLQuery<SpaceDocument> query = new SQLQuery<SpaceDocument>("AccountTransaction", "accountId = ?", accountId);
+        query.setRouting(accountId);
+        return query;
+    }
+
+    private static SQLQuery<SpaceDocument> transactionsQuery(String accountId, Date from, Date to, KeysetCursor after) {
+        StringBuilder where = new StringBuilder("accountId = ?");
+        List<Object> params = new ArrayList<Object>();
+        params.add(accountId);
+        if (from != null) {
+            where.append(" AND timestamp >= ?");
+            params.add(from);
+        }
+        if (to != null) {
+            where.append(" AND timestamp < ?");
+            params.add(to);
+        }
+        if (after != null) {
+            Date afterTimestamp = new Date(after.getSortValue());
+            where.append(" AND (timestamp < ? OR (timestamp = ? AND id < ?))");
+            params.add(afterTimestamp);
+            params.add(afterTimestamp);
+            params.add(after.getId());
+        }
+        where.append(" ORDER BY timestamp DESC, id DESC");
+        SQLQuery<SpaceDocument> query = new SQLQuery<SpaceDocument>("AccountTransaction", where.toString(), params.toArray());
+        query.setRouting(accountId);
+        return query;
+    }
+
+    /**
+     * helper method that returns the load of all the transactions of an account from the backend,
+     * which writes them to space with the leases of their type so a listing of a cold account can
+     * be served from space. The account is loaded and written in chunks of
+     * transactionLoadChunkSize, each page call going through the bulkhead of the type, and marked
+     * as loaded once all chunks are written. Concurrent listings of the same account share the
+     * load, which stops with a 504 or 503 once the latest of their deadlines passed.
+     */
+    private SingleFlight.Loader<SpaceDocument> accountTransactionsLoad(final String accountId) {
+        return new SingleFlight.Loader<SpaceDocument>() {
+            @Override
+            public SpaceDocument load(Deadline deadline) throws Exception {
+                final TypeMetrics typeMetrics = accountTransactionsType.getMetrics();
+                TtlPolicy ttl = accountTransactionsType.getTtl();
+                GigaSpace gigaSpace = ControllerUtils.xapCache.get();
+                long baseLease = ttl.leaseFor(null);
+                int loaded = 0;
+                List<SpaceDocument> docs;
+                do {
+                    final int offset = loaded;
+                    docs = accountTransactionsType.getLoader().call(new Callable<List<SpaceDocument>>() {
+                        @Override
+                        public List<SpaceDocument> call() {
+                            long start = System.nanoTime();
+                            try {
+                                List<SpaceDocument> page = accountTransactions.getPageForAccount(accountId, offset, transactionLoadChunkSize);
+                                typeMetrics.loaded(start, false);
+                                return page;
+                            } catch (RuntimeException e) {
+                                typeMetrics.loaded(start, true);
+                                throw e;
+                            }
+                        }
+                    }, deadline);
+                    if (docs.isEmpty())
+                        break;
+                    SpaceDocument[] stamped = new SpaceDocument[docs.size()];
+                    long[] leases = new long[docs.size()];
+                    for (int i = 0; i < stamped.length; i++) {
+                        SpaceDocument doc = docs.get(i);
+                        leases[i] = ttl.leaseFor((String) doc.getProperty("id"));
+                        stamped[i] = ttl.stamp(doc, leases[i]);
+                        leases[i] = ttl.spaceLease(leases[i]);
+                    }
+                    long writeStart = System.nanoTime();
+                    gigaSpace.writeMultiple(stamped, leases, WriteModifiers.UPDATE_OR_WRITE);
+                    metrics.getSpaceWriteLatency().recordSince(writeStart);
+                    loaded += docs.size();
+                } while (docs.size() == transactionLoadChunkSize);
+                //the base lease is the shortest one the transactions were written with
+                transactionLoads.mark(gigaSpace, accountId, loaded, baseLease);
+                return null;
+            }
+        };
+    }
+
+    private static SpaceDocument readById(GigaSpace gigaSpace, TypeMetrics typeMetrics, IdQuery<SpaceDocument> query) {
+        long start = System.nanoTime();
+        SpaceDocument doc = gigaSpace.readById(query);
+        typeMetrics.getSpaceReadLatency().recordSince(start);
+        return doc;
+    }
+
+    private static ResponseEntity<BatchDocumentResponse> toBatchResponse(CachedType cachedType, List<String> ids, Map<String, SpaceDocument> found) {
+        String type = cachedType.getTypeName();
+        TtlPolicy ttl = cachedType.getTtl();
+        BatchDocumentResponse response = new BatchDocumentResponse(ids.size());
+        long staleness = -1;
+        for (String id : ids) {
+            SpaceDocument doc = found.get(id);
+            if (doc != null) {
+                response.addFound(id, doc);
+                staleness = Math.max(staleness, ttl.staleness(doc));
+            } else {
+                response.addNotFound(id, type + " " + id + " not found");
+            }
+        }
+        HttpHeaders headers = responseHeaders(cachedType.getMetrics(), EntityTags.of(ids, found), staleness);
+        return new ResponseEntity<BatchDocumentResponse>(response, headers, HttpStatus.OK);
+    }
+
+    private static ObjectNotFoundException notFound(String type, String key) {
+        return new ObjectNotFoundException(type + " " + key + " not found");
+    }
+
+    private Throwable translateLoadFailure(GigaSpace gigaSpace, Throwable t, String type) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null)
+            t = t.getCause();
+        if (t instanceof RejectedExecutionException)
+            return new ServiceUnavailableException("Too many pending " + type + " loads, try again later");
+        if (t instanceof DataAccessException)
+            return translateDataAccessException(gigaSpace, (DataAccessException) t, type);
+        return t;
+    }
+
+    private static ResponseEntity<DocumentResponse> toResponse(CachedType cachedType, SpaceDocument doc) {
+        HttpHeaders headers = responseHeaders(cachedType.getMetrics(), EntityTags.of(doc), cachedType.getTtl().staleness(doc));
+        return new ResponseEntity<DocumentResponse>(new DocumentResponse(doc), headers, HttpStatus.OK);
+    }
+
     private RuntimeException translateDataAccessException(GigaSpace gigaSpace, DataAccessException e, String type) {
         if (gigaSpace.getTypeManager().getTypeDescriptor(type) == null) {
             return new TypeNotFoundException(type);
@@ -423,6 +2072,50 @@ public class SpaceAPIController {
         return new ErrorResponse(new ErrorMessage(e.getMessage()));
     }
 
+    @ExceptionHandler(InvalidRequestException.class)
+    @ResponseStatus(value = HttpStatus.BAD_REQUEST)
+    public
+    @ResponseBody
+    ErrorResponse resolveInvalidRequestException(InvalidRequestException e) throws IOException {
+        if (logger.isLoggable(Level.FINE))
+            logger.fine("invalid request, returning error response: " + e.getMessage());
+
+        return new ErrorResponse(new ErrorMessage(e.getMessage()));
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    @ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+    public
+    @ResponseBody
+    ErrorResponse resolveServiceUnavailableException(ServiceUnavailableException e) throws IOException {
+        if (logger.isLoggable(Level.WARNING))
+            logger.log(Level.WARNING, "received ServiceUnavailableException exception", e.getMessage());
+
+        return new ErrorResponse(new ErrorMessage(e.getMessage()));
+    }
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    @ResponseStatus(value = HttpStatus.GATEWAY_TIMEOUT)
+    public
+    @ResponseBody
+    ErrorResponse resolveDeadlineExceededException(DeadlineExceededException e) throws IOException {
+        if (logger.isLoggable(Level.FINE))
+            logger.fine("request deadline exceeded, returning error response: " + e.getMessage());
+
+        return new ErrorResponse(new ErrorMessage(e.getMessage()));
+    }
+
+    @ExceptionHandler(BackendException.class)
+    @ResponseStatus(value = HttpStatus.BAD_GATEWAY)
+    public
+    @ResponseBody
+    ErrorResponse resolveBackendException(BackendException e) throws IOException {
+        if (logger.isLoggable(Level.WARNING))
+            logger.log(Level.WARNING, "received BackendException exception", e.getMessage());
+
+        return new ErrorResponse(new ErrorMessage(e.getMessage()));
+    }
+
     @ExceptionHandler(RuntimeException.class)
     @ResponseStatus(value = HttpStatus.INTERNAL_SERVER_ERROR)
     public
@@ -446,26 +2139,16 @@ public class SpaceAPIController {
     }
 
     /**
-     * helper method that creates space documents from the httpRequest payload and writes them to
-     * space.
+     * helper method that returns the number of partitions of the space, 1 when it is not
+     * partitioned or the cluster info is not available.
      */
-    private void createAndWriteDocuments(GigaSpace gigaSpace, String type, String body, WriteModifiers updateModifiers)
-            throws TypeNotFoundException {
-        logger.info("creating space Documents from payload");
-        SpaceDocument[] spaceDocuments = ControllerUtils.createSpaceDocuments(type, body, gigaSpace);
-        if (spaceDocuments != null && spaceDocuments.length > 0) {
-            try {
-                gigaSpace.writeMultiple(spaceDocuments, Lease.FOREVER, updateModifiers);
-            } catch (DataAccessException e) {
-                throw translateDataAccessException(gigaSpace, e, type);
-            }
-            if (logger.isLoggable(Level.FINE))
-                logger.fine("wrote space documents to space");
-        } else {
+    private static int partitionCount(GigaSpace gigaSpace) {
+        try {
+            return Math.max(1, gigaSpace.getSpace().getDirectProxy().getSpaceClusterInfo().getNumberOfPartitions());
+        } catch (RuntimeException e) {
             if (logger.isLoggable(Level.FINE))
-                logger.fine("did not write anything to space");
+                logger.fine("could not get the partition count of the space: " + e);
+            return 1;
         }
     }
-
-
 }
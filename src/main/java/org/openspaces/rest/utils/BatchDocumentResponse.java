@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.gigaspaces.document.SpaceDocument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Success response of a multi id read, one element per requested id in request order: { "status"
+ * : "success", "data" : [ { "id" : "1", "status" : "success", "data" : {...} }, { "id" : "2",
+ * "status" : "error", "error" : { "message" : "..." } } ] }
+ */
+@JsonPropertyOrder({"status", "data"})
+public class BatchDocumentResponse {
+    private final String status;
+    private final List<Entry> data;
+
+    public BatchDocumentResponse(int expectedSize) {
+        this.status = "success";
+        this.data = new ArrayList<Entry>(expectedSize);
+    }
+
+    public void addFound(String id, SpaceDocument doc) {
+        data.add(new Entry(id, "success", doc, null));
+    }
+
+    public void addNotFound(String id, String message) {
+        data.add(new Entry(id, "error", null, new ErrorMessage(message)));
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public List<Entry> getData() {
+        return data;
+    }
+
+    @JsonPropertyOrder({"id", "status", "data", "error"})
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Entry {
+        private final String id;
+        private final String status;
+        private final SpaceDocument data;
+        private final ErrorMessage error;
+
+        Entry(String id, String status, SpaceDocument data, ErrorMessage error) {
+            this.id = id;
+            this.status = status;
+            this.data = data;
+            this.error = error;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        @JsonSerialize(using = SpaceDocumentSerializer.PropertiesOnly.class)
+        public SpaceDocument getData() {
+            return data;
+        }
+
+        public ErrorMessage getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes request and response bodies in the binary encodings with the shared mappers of
+ * {@link ControllerUtils}, so the map responses and json bound request bodies of the API are
+ * available as Smile, CBOR and MessagePack the same way they are as JSON.
+ */
+public class BinaryHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    public BinaryHttpMessageConverter() {
+        super(Encoding.SMILE, Encoding.CBOR, Encoding.MSGPACK);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return !String.class.equals(clazz) && !byte[].class.equals(clazz) && !Resource.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        Encoding encoding = ControllerUtils.encodingFor(inputMessage.getHeaders().getContentType());
+        try {
+            return encoding.getMapper().readValue(inputMessage.getBody(), clazz);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("Malformed " + encoding.getMediaType() + " payload: " + e.getOriginalMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object value, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        Encoding encoding = ControllerUtils.encodingFor(outputMessage.getHeaders().getContentType());
+        encoding.getMapper().writeValue(outputMessage.getBody(), value);
+    }
+}
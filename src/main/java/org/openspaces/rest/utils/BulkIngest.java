@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import com.gigaspaces.client.WriteModifiers;
+import com.gigaspaces.document.SpaceDocument;
+import com.gigaspaces.metadata.SpaceTypeDescriptor;
+import net.jini.core.lease.Lease;
+import org.openspaces.core.GigaSpace;
+import org.openspaces.rest.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the documents of one bulk request to the space in chunks while they are being parsed.
+ *
+ * Documents are grouped by the partition their routing value maps to and each full group is
+ * written with its own writeMultiple on the shared writer executor, so the chunks of different
+ * partitions are written in parallel and every writeMultiple goes to a single partition. The
+ * shared semaphore bounds the chunks waiting for or being written across all requests: once
+ * they are taken, {@link #add(SpaceDocument)} blocks and the parsing of the request slows down to
+ * the rate the space accepts.
+ */
+public class BulkIngest {
+    private static final Logger logger = Logger.getLogger(BulkIngest.class.getName());
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+
+    private final GigaSpace gigaSpace;
+    private final String routingProperty;
+    private final int chunkSize;
+    private final Executor executor;
+    private final Semaphore permits;
+    private final WriteModifiers modifiers;
+    private final LatencyHistogram writeLatency;
+    private final List<List<SpaceDocument>> partitions;
+    private final List<CompletableFuture<Map<String, Object>>> chunks = new ArrayList<CompletableFuture<Map<String, Object>>>();
+    private final List<Map<String, Object>> rejections = new ArrayList<Map<String, Object>>();
+    private long accepted;
+    private long rejected;
+
+    public BulkIngest(GigaSpace gigaSpace, SpaceTypeDescriptor descriptor, int partitionCount, int chunkSize,
+                      Executor executor, Semaphore permits, WriteModifiers modifiers, LatencyHistogram writeLatency) {
+        this.gigaSpace = gigaSpace;
+        this.routingProperty = descriptor.getRoutingPropertyName() != null ? descriptor.getRoutingPropertyName() : descriptor.getIdPropertyName();
+        this.chunkSize = chunkSize;
+        this.executor = executor;
+        this.permits = permits;
+        this.modifiers = modifiers;
+        this.writeLatency = writeLatency;
+        this.partitions = new ArrayList<List<SpaceDocument>>(Math.max(1, partitionCount));
+        for (int i = 0; i < Math.max(1, partitionCount); i++)
+            partitions.add(new ArrayList<SpaceDocument>(chunkSize));
+    }
+
+    public void add(SpaceDocument doc) throws InterruptedException {
+        accepted++;
+        int partition = partitionOf(doc);
+        List<SpaceDocument> pending = partitions.get(partition);
+        pending.add(doc);
+        if (pending.size() >= chunkSize) {
+            submit(partition, pending);
+            partitions.set(partition, new ArrayList<SpaceDocument>(chunkSize));
+        }
+    }
+
+    /**
+     * Records a document that could not be converted, {@code index} is its position in the payload.
+     */
+    public void reject(long index, String error) {
+        rejected++;
+        if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+            Map<String, Object> rejection = new LinkedHashMap<String, Object>();
+            rejection.put("index", index);
+            rejection.put("error", error);
+            rejections.add(rejection);
+        }
+    }
+
+    /**
+     * Writes what is left and waits for every chunk.
+     *
+     * @return the chunk reports in the order the chunks were submitted
+     */
+    public List<Map<String, Object>> finish() throws InterruptedException {
+        for (int partition = 0; partition < partitions.size(); partition++) {
+            List<SpaceDocument> pending = partitions.get(partition);
+            if (!pending.isEmpty())
+                submit(partition, pending);
+            partitions.set(partition, new ArrayList<SpaceDocument>(0));
+        }
+        List<Map<String, Object>> reports = new ArrayList<Map<String, Object>>(chunks.size());
+        for (CompletableFuture<Map<String, Object>> chunk : chunks) {
+            try {
+                reports.add(chunk.get());
+            } catch (ExecutionException e) {
+                //the chunk task reports its own failures
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return reports;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public List<Map<String, Object>> getRejections() {
+        return rejections;
+    }
+
+    private int partitionOf(SpaceDocument doc) {
+        if (partitions.size() == 1 || routingProperty == null)
+            return 0;
+        Object routing = doc.getProperty(routingProperty);
+        return routing == null ? 0 : Math.abs(routing.hashCode() % partitions.size());
+    }
+
+    private void submit(final int partition, List<SpaceDocument> docs) throws InterruptedException {
+        final int number = chunks.size();
+        final SpaceDocument[] chunk = docs.toArray(new SpaceDocument[docs.size()]);
+        permits.acquire();
+        CompletableFuture<Map<String, Object>> future;
+        try {
+            future = CompletableFuture.supplyAsync(new Supplier<Map<String, Object>>() {
+                @Override
+                public Map<String, Object> get() {
+                    try {
+                        return write(number, partition, chunk);
+                    } finally {
+                        permits.release();
+                    }
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            future = CompletableFuture.completedFuture(report(number, partition, chunk.length, "Writer executor rejected the chunk"));
+        }
+        chunks.add(future);
+    }
+
+    private Map<String, Object> write(int number, int partition, SpaceDocument[] chunk) {
+        try {
+            long start = System.nanoTime();
+            gigaSpace.writeMultiple(chunk, Lease.FOREVER, modifiers);
+            writeLatency.recordSince(start);
+            return report(number, partition, chunk.length, null);
+        } catch (RuntimeException e) {
+            if (logger.isLoggable(Level.WARNING))
+                logger.log(Level.WARNING, "failed to write bulk chunk " + number + " of " + chunk.length + " documents", e);
+            return report(number, partition, chunk.length, e.getMessage() == null ? e.getClass().getName() : e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> report(int number, int partition, int documents, String error) {
+        Map<String, Object> report = new LinkedHashMap<String, Object>();
+        report.put("chunk", number);
+        report.put("partition", partition);
+        report.put("documents", documents);
+        report.put("status", error == null ? "success" : "failed");
+        if (error != null)
+            report.put("error", error);
+        return report;
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.utils;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Enumeration;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compresses responses to clients that accept it once the body reaches {@code minSizeBytes}.
+ * Smaller bodies are buffered and sent as they are, so short responses do not pay for the
+ * compression and its header. A response flushed before reaching the threshold (e.g. the first
+ * chunk of a stream) is sent uncompressed, event streams and bodies that already have a content
+ * encoding are never compressed.
+ *
+ * The filter also runs on async dispatches: asynchronous responses (deferred results, streamed
+ * bodies) are finished when the dispatch that completes them returns.
+ */
+public class CompressionFilter extends OncePerRequestFilter {
+    private static final String GZIP = "gzip";
+
+    private int minSizeBytes = 1024;
+
+    public void setMinSizeBytes(int minSizeBytes) {
+        this.minSizeBytes = minSizeBytes;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        CompressingResponse compressing = WebUtils.getNativeResponse(response, CompressingResponse.class);
+        if (compressing == null) {
+            if (minSizeBytes <= 0 || !acceptsGzip(request)) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            compressing = new CompressingResponse(response, minSizeBytes);
+            response = compressing;
+        }
+        filterChain.doFilter(request, response);
+        if (!isAsyncStarted(request))
+            compressing.finish();
+    }
+
+    /**
+     * Whether the Accept-Encoding headers of the request list gzip (or *) without a zero quality.
+     */
+    static boolean acceptsGzip(HttpServletRequest request) {
+        Enumeration<String> headers = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+        while (headers != null && headers.hasMoreElements()) {
+            for (String coding : headers.nextElement().split(",")) {
+                String[] parts = coding.split(";");
+                String name = parts[0].trim();
+                if (!name.equalsIgnoreCase(GZIP) && !name.equals("*"))
+                    continue;
+                boolean refused = false;
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=") && isZero(parameter.substring(2)))
+                        refused = true;
+                }
+                if (!refused)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZero(String quality) {
+        try {
+            return Double.parseDouble(quality) == 0;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Holds the body back until it reaches the threshold or is flushed, then decides between
+     * compressing it and sending it as is. The content length set by the application is only
+     * passed on when the body is not compressed.
+     */
+    private static class CompressingResponse extends HttpServletResponseWrapper {
+        private final int minSizeBytes;
+        private CompressingStream stream;
+        private PrintWriter writer;
+        private long contentLength = -1;
+
+        CompressingResponse(HttpServletResponse response, int minSizeBytes) {
+            super(response);
+            this.minSizeBytes = minSizeBytes;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null)
+                throw new IllegalStateException("getWriter() was already called");
+            return stream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (stream != null)
+                    throw new IllegalStateException("getOutputStream() was already called");
+                writer = new PrintWriter(new OutputStreamWriter(stream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            contentLength = len;
+        }
+
+        //servlet 3.1, passed on by the wrapper of 3.1 containers
+        public void setContentLengthLong(long len) {
+            contentLength = len;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name))
+                contentLength = value == null ? -1 : Long.parseLong(value);
+            else
+                super.setHeader(name, value);
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name))
+                contentLength = Long.parseLong(value);
+            else
+                super.addHeader(name, value);
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name))
+                contentLength = value;
+            else
+                super.setIntHeader(name, value);
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null)
+                writer.flush();
+            if (stream != null)
+                stream.flush();
+            else
+                super.flushBuffer();
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            if (stream != null)
+                stream.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            contentLength = -1;
+            if (stream != null)
+                stream.resetBuffer();
+        }
+
+        void finish() throws IOException {
+            if (writer != null)
+                writer.flush();
+            if (stream != null)
+                stream.finish();
+            else if (contentLength >= 0)
+                passContentLength(contentLength);
+        }
+
+        private CompressingStream stream() {
+            if (stream == null)
+                stream = new CompressingStream();
+            return stream;
+        }
+
+        private void passContentLength(long length) {
+            if (length <= Integer.MAX_VALUE)
+                super.setContentLength((int) length);
+            else
+                super.setHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(length));
+        }
+
+        private boolean compressible() {
+            String contentType = getContentType();
+            return getHeader(HttpHeaders.CONTENT_ENCODING) == null
+                    && (contentType == null || !contentType.startsWith("text/event-stream"));
+        }
+
+        private class CompressingStream extends ServletOutputStream {
+            private byte[] buffer = new byte[Math.min(minSizeBytes, 8192)];
+            private int buffered;
+            private OutputStream target;
+            private boolean finished;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (target == null && buffered < minSizeBytes - 1) {
+                    ensureCapacity(buffered + 1);
+                    buffer[buffered++] = (byte) b;
+                    return;
+                }
+                if (target == null)
+                    decide(true);
+                target.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (target == null && buffered + len < minSizeBytes) {
+                    ensureCapacity(buffered + len);
+                    System.arraycopy(b, off, buffer, buffered, len);
+                    buffered += len;
+                    return;
+                }
+                if (target == null)
+                    decide(true);
+                target.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (target == null)
+                    decide(false);
+                target.flush();
+            }
+
+            @Override
+            public boolean isReady() {
+                try {
+                    return getResponse().getOutputStream().isReady();
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                try {
+                    getResponse().getOutputStream().setWriteListener(writeListener);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            void resetBuffer() {
+                if (target == null)
+                    buffered = 0;
+            }
+
+            void finish() throws IOException {
+                if (finished)
+                    return;
+                finished = true;
+                if (target == null) {
+                    if (buffered == 0) {
+                        if (contentLength >= 0)
+                            passContentLength(contentLength);
+                        return;
+                    }
+                    passContentLength(buffered);
+                    decide(false);
+                }
+                if (target instanceof GZIPOutputStream)
+                    ((GZIPOutputStream) target).finish();
+                target.flush();
+            }
+
+            /**
+             * Picks the stream the body goes to, compressing when it reached the threshold, and
+             * writes what was held back so far.
+             */
+            private void decide(boolean large) throws IOException {
+                boolean compress = large && compressible();
+                if (compressible())
+                    CompressingResponse.super.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                if (compress) {
+                    CompressingResponse.super.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+                    target = new GZIPOutputStream(getResponse().getOutputStream(), 8192, true);
+                } else {
+                    if (!finished && contentLength >= 0)
+                        passContentLength(contentLength);
+                    target = getResponse().getOutputStream();
+                }
+                target.write(buffer, 0, buffered);
+                buffered = 0;
+                buffer = null;
+            }
+
+            private void ensureCapacity(int capacity) {
+                if (capacity > buffer.length) {
+                    byte[] grown = new byte[Math.min(minSizeBytes, Math.max(capacity, buffer.length * 2))];
+                    System.arraycopy(buffer, 0, grown, 0, buffered);
+                    buffer = grown;
+                }
+            }
+        }
+    }
+}
@@ -16,27 +16,33 @@
 
 package org.openspaces.rest.utils;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.gigaspaces.document.SpaceDocument;
 import com.gigaspaces.internal.utils.CollectionUtils;
-import com.gigaspaces.metadata.SpacePropertyDescriptor;
 import com.gigaspaces.metadata.SpaceTypeDescriptor;
-import com.j_spaces.core.UnknownTypeException;
 
+import org.msgpack.jackson.dataformat.MessagePackFactory;
 import org.openspaces.core.GigaSpace;
 import org.openspaces.core.GigaSpaceConfigurer;
 import org.openspaces.core.space.UrlSpaceConfigurer;
-import org.openspaces.rest.exceptions.RestException;
 import org.openspaces.rest.exceptions.TypeNotFoundException;
-import org.openspaces.rest.exceptions.UnsupportedTypeException;
+import org.openspaces.rest.metrics.PrometheusWriter;
+import org.springframework.http.MediaType;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 
-import java.text.ParseException;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,8 +54,6 @@ import java.util.logging.Logger;
  */
 public class ControllerUtils {
     private static final Logger logger = Logger.getLogger(ControllerUtils.class.getName());
-    private static final TypeReference<HashMap<String, Object>[]> typeRef = new TypeReference<HashMap<String, Object>[]>() {
-    };
     public static final XapConnectionCache xapCache = new XapConnectionCache();
     public static String spaceName;
 
@@ -82,6 +86,50 @@ public class ControllerUtils {
     public static String date_format;
     public static SimpleDateFormat simpleDateFormat;
     public static ObjectMapper mapper;
+    public static ObjectWriter documentWriter;
+    public static ObjectWriter batchDocumentWriter;
+    public static List<Encoding> encodings;
+
+    /**
+     * Sets up the shared mappers and the reusable response writers for the given datetime format,
+     * for JSON and for each binary encoding.
+     */
+    public static void configureDateFormat(String datetimeFormat) {
+        date_format = datetimeFormat;
+        simpleDateFormat = new SimpleDateFormat(datetimeFormat);
+        ConversionPlan.configureDateFormat(datetimeFormat);
+        Encoding json = new Encoding(MediaType.APPLICATION_JSON, newMapper(new JsonFactory()));
+        encodings = Collections.unmodifiableList(Arrays.asList(json,
+                new Encoding(Encoding.SMILE, newMapper(new SmileFactory())),
+                new Encoding(Encoding.CBOR, newMapper(new CBORFactory())),
+                new Encoding(Encoding.MSGPACK, newMapper(new MessagePackFactory()))));
+        mapper = json.getMapper();
+        documentWriter = json.getDocumentWriter();
+        batchDocumentWriter = json.getBatchDocumentWriter();
+    }
+
+    private static ObjectMapper newMapper(JsonFactory factory) {
+        ObjectMapper objectMapper = new ObjectMapper(factory);
+        objectMapper.setDateFormat(simpleDateFormat);
+        objectMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        objectMapper.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        objectMapper.registerModule(new SimpleModule("SpaceDocumentModule").addSerializer(SpaceDocument.class, new SpaceDocumentSerializer()));
+        return objectMapper;
+    }
+
+    /**
+     * The encoding of a request or response body with the given content type, JSON for no content
+     * type and for content types without a binary encoding (e.g. newline delimited JSON).
+     */
+    public static Encoding encodingFor(MediaType contentType) {
+        if (contentType != null) {
+            for (Encoding encoding : encodings) {
+                if (encoding.isBinary() && encoding.getMediaType().includes(contentType))
+                    return encoding;
+            }
+        }
+        return encodings.get(0);
+    }
 
     public static boolean isAllowedField(String fieldName) {
         return allowedFields.contains(fieldName);
@@ -91,29 +139,69 @@ public class ControllerUtils {
         return javaPrimitives.get(typeName);
     }
 
+    /**
+     * Creates documents of the given type from a JSON object, a JSON array of objects, comma
+     * separated JSON objects without the enclosing brackets or newline delimited JSON objects.
+     * Large payloads should rather be read with a {@link DocumentStreamReader} over the request
+     * stream.
+     */
     public static SpaceDocument[] createSpaceDocuments(String type, String body, GigaSpace gigaSpace)
             throws TypeNotFoundException {
-        HashMap<String, Object>[] propertyMapArr;
+        ConversionPlan plan = ConversionPlan.forType(gigaSpace, type);
+        List<SpaceDocument> documents = new ArrayList<SpaceDocument>();
+        DocumentStreamReader reader = null;
         try {
-            //if single json object convert it to array
-            String data = body;
-            if (!body.startsWith("[")) {
-                StringBuilder sb = new StringBuilder(body);
-                sb.insert(0, "[");
-                sb.append("]");
-                data = sb.toString();
-            }
-            //convert to json
-            propertyMapArr = mapper.readValue(data, typeRef);
-        } catch (Exception e) {
+            //comma separated objects are read as the array they were meant to be
+            String json = isCommaSeparated(body) ? "[" + body + "]" : body;
+            reader = new DocumentStreamReader(mapper.getFactory().createParser(json), plan);
+            Map<String, Object> properties;
+            while ((properties = reader.nextProperties()) != null)
+                documents.add(reader.toDocument(properties));
+        } catch (IOException e) {
             throw new HttpMessageNotReadableException(e.getMessage(), e.getCause());
+        } finally {
+            closeQuietly(reader);
         }
-        SpaceDocument[] documents = new SpaceDocument[propertyMapArr.length];
-        for (int i = 0; i < propertyMapArr.length; i++) {
-            Map<String, Object> typeBasedProperties = getTypeBasedProperties(type, propertyMapArr[i], gigaSpace);
-            documents[i] = new SpaceDocument(type, typeBasedProperties);
+        return documents.toArray(new SpaceDocument[documents.size()]);
+    }
+
+    /**
+     * Whether the JSON text is not an array but has a comma outside of any object, array or
+     * string, i.e. lists values separated by commas.
+     */
+    static boolean isCommaSeparated(String json) {
+        int depth = 0;
+        boolean inString = false;
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                if (c == '\\')
+                    i++;
+                else if (c == '"')
+                    inString = false;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                if (depth == 0 && c == '[')
+                    return false;
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void closeQuietly(DocumentStreamReader reader) {
+        if (reader == null)
+            return;
+        try {
+            reader.close();
+        } catch (IOException e) {
+            //nothing left to read
         }
-        return documents;
     }
 
     public static Map<String, Object>[] createPropertiesResult(SpaceDocument[] docs) {
@@ -126,200 +214,338 @@ public class ControllerUtils {
 
 
     /**
-     * @param documentType
-     * @param propertyMap
-     * @param gigaSpace
-     * @return
-     * @throws UnknownTypeException
-     * @throws TypeNotFoundException
+     * Converts parsed properties to the fixed property types of the type, see {@link ConversionPlan}.
      */
-    private static Map<String, Object> getTypeBasedProperties(String documentType, Map<String, Object> propertyMap, GigaSpace gigaSpace) throws TypeNotFoundException {
-        SpaceTypeDescriptor spaceTypeDescriptor = gigaSpace.getTypeManager().getTypeDescriptor(documentType);
-        if (spaceTypeDescriptor == null) {
-            throw new TypeNotFoundException(documentType);
-        } else {
-            Map<String, Object> buildTypeBasedProperties = buildTypeBasedProperties(propertyMap, spaceTypeDescriptor, gigaSpace);
-            return buildTypeBasedProperties;
-        }
-
-    }
-
-    @SuppressWarnings("unchecked")
-    private static Map<String, Object> buildTypeBasedProperties(
+    static Map<String, Object> buildTypeBasedProperties(
             Map<String, Object> propertyMap,
             SpaceTypeDescriptor spaceTypeDescriptor, GigaSpace gigaSpace) throws TypeNotFoundException {
-        HashMap<String, Object> newPropertyMap = new HashMap<String, Object>();
-        for (Entry<String, Object> entry : propertyMap.entrySet()) {
-            String propKey = entry.getKey();
-            Object oldPropValue = entry.getValue();
-            SpacePropertyDescriptor propDesc = spaceTypeDescriptor.getFixedProperty(propKey);
-            if (propDesc == null) {
-                if (logger.isLoggable(Level.WARNING))
-                    logger.warning("could not find SpacePropertyDescriptor for " + propKey + ", using String as property type");
-                newPropertyMap.put(propKey, oldPropValue);
-            }/*else if(propDesc.getType().equals(Object.class)){
-                logger.warning("Existing Type of " + propKey + " is Object, using String as property type");
-                newPropertyMap.put(propKey, oldPropValue);
-            }*/ else {
-                Object convertedObj;
-                if (oldPropValue instanceof Map) { //SpaceDocument
-                    Map obj = (Map) oldPropValue;
-                    SpaceDocument sp = new SpaceDocument();
-                    sp.setTypeName((String) obj.get("typeName"));
-                    if (obj.get("version") != null)
-                        sp.setVersion((Integer) obj.get("version"));
-                    if (obj.get("transient") != null)
-                        sp.setTransient((Boolean) obj.get("transient"));
-                    sp.addProperties((Map<String, Object>) obj.get("properties"));
-                    convertedObj = sp;
-
-                } else if (oldPropValue instanceof List) {
-                    List<Map<String, Object>> oldPropValueList = (List<Map<String, Object>>) oldPropValue;
-
-                    int counter = 0;
-                    SpaceDocument[] spaceDocuments = new SpaceDocument[oldPropValueList.size()];
-                    for (Map<String, Object> map : oldPropValueList) {
-
-                        SpaceDocument document = new SpaceDocument();
-                        document.setTypeName((String) map.get("typeName"));
-                        if (map.get("version") != null)
-                            document.setVersion((Integer) map.get("version"));
-                        if (map.get("transient") != null)
-                            document.setTransient((Boolean) map.get("transient"));
-                        document.addProperties((Map<String, Object>) map.get("properties"));
-
-                        spaceDocuments[counter++] = document;
-                    }
-                    convertedObj = spaceDocuments;
-                } else {
-                    //try {
-                    convertedObj = convertPropertyToPrimitiveType(String.valueOf(oldPropValue), propDesc.getType(), propKey);
-                    /*} catch (UnsupportedTypeException e) {
-                        convertedObj = oldPropValue;
-					}*/
-                }
-                newPropertyMap.put(propKey, convertedObj);
-            }
-        }
-        return newPropertyMap;
+        return ConversionPlan.of(spaceTypeDescriptor).convert(propertyMap);
     }
 
     public static Object convertPropertyToPrimitiveType(String object, Class type, String propKey) {
-        if (type.equals(Long.class) || type.equals(Long.TYPE))
-            return Long.valueOf(object);
-
-        if (type.equals(Boolean.class) || type.equals(Boolean.TYPE))
-            return Boolean.valueOf(object);
+        return ConversionPlan.converterFor(type).convert(object, propKey);
+    }
 
-        if (type.equals(Integer.class) || type.equals(Integer.TYPE))
-            return Integer.valueOf(object);
+    /**
+     * Open ended thread safe cache for XAP connections. The established proxy is read without
+     * locking; only creating the first proxy is serialized.
+     * <p/>
+     * Besides the space configured with spaceName, lookupGroups and lookupLocators, further
+     * clusters (e.g. a DR site) can be given as full space urls with {@link #setFailoverUrls}.
+     * With more than one endpoint a background prober connects to the others, pings all of them
+     * and switches requests to the fastest healthy one, so a slow or unavailable lookup service
+     * only ever holds up the prober. {@link EndpointListener}s prepare every proxy before it can
+     * become active (e.g. register the types) and follow the switches.
+     *
+     * @author DeWayne
+     */
+    public static class XapConnectionCache {
+        /**
+         * A healthy endpoint replaces the active one only if its ping is below this share of
+         * the active one's, so two similar clusters do not flap.
+         */
+        private static final double SWITCH_LATENCY_RATIO = 0.5;
 
-        if (type.equals(Byte.class) || type.equals(Byte.TYPE))
-            return Byte.valueOf(object);
+        private final Logger log = Logger.getLogger("XapConnectionCache");
+        private final Object connectLock = new Object();
+        private final Object prepareLock = new Object();
+        private final List<EndpointListener> listeners = new CopyOnWriteArrayList<EndpointListener>();
+        private volatile XapEndpoint active;
+        private volatile List<XapEndpoint> endpoints;
+        private ScheduledThreadPoolExecutor prober;
+
+        private String failoverUrls = "";
+        private long probeIntervalMillis = 5000;
+        private int failureThreshold = 3;
+        private int lookupTimeoutMillis;
 
-        if (type.equals(Short.class) || type.equals(Short.TYPE))
-            return Short.valueOf(object);
+        public XapConnectionCache() {
+        }
 
-        if (type.equals(Float.class) || type.equals(Float.TYPE))
-            return Float.valueOf(object);
+        /**
+         * Space urls of further clusters to fail over to, separated by ';'.
+         */
+        public void setFailoverUrls(String failoverUrls) {
+            this.failoverUrls = failoverUrls == null ? "" : failoverUrls;
+        }
 
-        if (type.equals(Double.class) || type.equals(Double.TYPE))
-            return Double.valueOf(object);
+        public void setProbeIntervalMillis(long probeIntervalMillis) {
+            this.probeIntervalMillis = probeIntervalMillis;
+        }
 
-        if (type.isEnum())
-            return Enum.valueOf(type, object);
+        /**
+         * Consecutive failed pings after which an endpoint is taken out of rotation.
+         */
+        public void setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+        }
 
-        if (type.equals(String.class) || type.equals(Object.class))
-            return String.valueOf(object);
+        /**
+         * Lookup timeout of new proxies, 0 keeps the XAP default.
+         */
+        public void setLookupTimeoutMillis(int lookupTimeoutMillis) {
+            this.lookupTimeoutMillis = lookupTimeoutMillis;
+        }
 
-        if (type.equals(java.util.Date.class)) {
-            try {
-                return simpleDateFormat.parse(object);
-            } catch (ParseException e) {
-                throw new RestException("Unable to parse date [" + object + "]. Make sure it matches the format: " + date_format);
+        /**
+         * Registers a listener and calls its {@link EndpointListener#connected} for the proxies
+         * created so far and its {@link EndpointListener#activated} for the active one.
+         */
+        public void addListener(EndpointListener listener) {
+            synchronized (prepareLock) {
+                listeners.add(listener);
+                List<XapEndpoint> current = endpoints;
+                if (current == null)
+                    return;
+                for (XapEndpoint ep : current) {
+                    if (ep.space != null)
+                        listener.connected(ep.space);
+                }
+                XapEndpoint ep = active;
+                if (ep != null)
+                    listener.activated(ep.space);
             }
         }
 
-        //unknown type
-        throw new UnsupportedTypeException("Non primitive type when converting property [" + propKey + "]:" + type);
-    }
-
-    /**
-     * Open ended thread safe cache for XAP connections
-     *
-     * @author DeWayne
-     */
-    public static class XapConnectionCache {
-        private final Logger log = Logger.getLogger("XapConnectionCache");
-        private static AtomicReference<XapEndpoint> cache = new AtomicReference<XapEndpoint>();
+        public GigaSpace get() {
+            XapEndpoint ep = active;
+            if (ep != null)
+                return ep.space;
+            return connect();
+        }
 
-        public XapConnectionCache() {
+        private GigaSpace connect() {
+            synchronized (connectLock) {
+                XapEndpoint ep = active;
+                if (ep != null)
+                    return ep.space;
+                if (endpoints == null)
+                    endpoints = createEndpoints();
+                RuntimeException failure = null;
+                for (XapEndpoint candidate : endpoints) {
+                    try {
+                        if (candidate.space == null)
+                            connect(candidate);
+                        activate(candidate);
+                        startProbing();
+                        log.finest("  returning space");
+                        return candidate.space;
+                    } catch (RuntimeException e) {
+                        log.log(Level.WARNING, "failed to connect to " + candidate.url, e);
+                        failure = e;
+                    }
+                }
+                throw failure;
+            }
         }
 
-        public GigaSpace get() {
+        /**
+         * Creates the proxy of the endpoint and publishes it once every listener prepared it, a
+         * listener failing leaves the endpoint without a proxy so it is retried on the next probe.
+         */
+        private void connect(XapEndpoint ep) {
+            synchronized (prepareLock) {
+                GigaSpace space = ep.connect(lookupTimeoutMillis);
+                for (EndpointListener listener : listeners) {
+                    listener.connected(space);
+                }
+                ep.space = space;
+                ep.healthy = true;
+            }
+        }
 
-            synchronized (cache) {
-                log.finest("getting space");
+        private List<XapEndpoint> createEndpoints() {
+            log.finest("lookupgroups: " + lookupGroups);
+            log.finest("lookupLocators: " + lookupLocators);
+            log.finest("spaceName: " + spaceName);
+            List<XapEndpoint> result = new ArrayList<XapEndpoint>();
+            result.add(new XapEndpoint(primaryUrl()));
+            for (String url : failoverUrls.split(";")) {
+                if (!url.trim().isEmpty())
+                    result.add(new XapEndpoint(url.trim()));
+            }
+            return result;
+        }
 
-                GigaSpace gs = getSpace();
-                if (gs != null) return gs;
+        private static String primaryUrl() {
+            //a full space url, e.g. /./name for an embedded space, is used as is
+            boolean fullUrl = spaceName.startsWith("/./") || spaceName.contains("://");
+            String url = fullUrl ? spaceName : "jini://*/*/" + spaceName;
 
-                log.finest("lookupgroups: " + lookupGroups);
-                log.finest("lookupLocators: " + lookupLocators);
-                log.finest("spaceName: " + spaceName);
-                String url = "jini://*/*/" + spaceName;
 
+            if (!fullUrl && ((lookupGroups != null && lookupGroups.length() > 0) || (lookupLocators != null && lookupLocators.length() > 0))) {
+                //If one of them are not null then append '?' char
+                url += "?";
 
-                if ((lookupGroups != null && lookupGroups.length() > 0) || (lookupLocators != null && lookupLocators.length() > 0)) {
-                    //If one of them are not null then append '?' char
-                    url += "?";
+                boolean lookupGroupsSetted = false;
 
-                    boolean lookupGroupsSetted = false;
+                if (lookupGroups != null && lookupGroups.length() > 0) {
+                    url += "groups=" + lookupGroups;
+                    lookupGroupsSetted = true;
+                }
 
-                    if (lookupGroups != null && lookupGroups.length() > 0) {
-                        url += "groups=" + lookupGroups;
-                        lookupGroupsSetted = true;
+                if (lookupLocators != null && lookupLocators.length() > 0) {
+                    if (lookupGroupsSetted) {
+                        url += "&";
                     }
 
-                    if (lookupLocators != null && lookupLocators.length() > 0) {
-                        if (lookupGroupsSetted) {
-                            url += "&";
-                        }
+                    url += "locators=" + lookupLocators;
+                }
+            }
+            return url;
+        }
 
-                        url += "locators=" + lookupLocators;
+        private void startProbing() {
+            if (prober != null || endpoints.size() < 2 || probeIntervalMillis <= 0)
+                return;
+            prober = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("space-endpoint-probe"));
+            prober.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    probe();
+                }
+            }, 0, probeIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Connects to endpoints without a proxy yet, pings all of them and then selects the
+         * active one. Runs on the prober thread only.
+         */
+        private void probe() {
+            for (XapEndpoint ep : endpoints) {
+                try {
+                    if (ep.space == null)
+                        connect(ep);
+                    long start = System.nanoTime();
+                    ep.space.getSpace().ping();
+                    ep.succeeded(System.nanoTime() - start);
+                } catch (Exception e) {
+                    if (ep.failed(failureThreshold))
+                        log.log(Level.WARNING, "space endpoint " + ep.url + " is down", e);
+                    else if (log.isLoggable(Level.FINE))
+                        log.fine("ping of " + ep.url + " failed: " + e);
+                }
+            }
+            select();
+        }
+
+        private void select() {
+            XapEndpoint current = active;
+            XapEndpoint best = null;
+            for (XapEndpoint ep : endpoints) {
+                if (ep.healthy && ep.latencyNanos >= 0 && (best == null || ep.latencyNanos < best.latencyNanos))
+                    best = ep;
+            }
+            if (best == null || best == current)
+                return;
+            if (current == null || !current.healthy || best.latencyNanos < current.latencyNanos * SWITCH_LATENCY_RATIO) {
+                log.warning("switching space endpoint from " + (current == null ? null : current.url) + " to " + best.url);
+                activate(best);
+            }
+        }
+
+        private void activate(XapEndpoint ep) {
+            synchronized (prepareLock) {
+                active = ep;
+                for (EndpointListener listener : listeners) {
+                    try {
+                        listener.activated(ep.space);
+                    } catch (RuntimeException e) {
+                        log.log(Level.WARNING, "endpoint listener failed to follow the switch to " + ep.url, e);
                     }
                 }
+            }
+        }
 
-                log.info("  connecting to " + url);
-                UrlSpaceConfigurer usc = new UrlSpaceConfigurer(url);
-                gs = new GigaSpaceConfigurer(usc.space()).gigaSpace();
-                cache.set(new XapEndpoint(gs, usc));
-                log.finest("  returning space");
-                return gs;
+        /**
+         * Stops probing, the proxies stay open.
+         */
+        public void close() {
+            synchronized (connectLock) {
+                if (prober != null)
+                    prober.shutdownNow();
+                prober = null;
             }
         }
 
         /**
-         * Gets a space in the cache.  Doesn't open new connections.
-         *
-         * @return GigaSpace if successful.  Null otherwise.
+         * Exports whether each endpoint is up and active and its smoothed ping time.
          */
-        private GigaSpace getSpace() {
-            XapEndpoint ep = cache.get();
-            if (ep == null) return null;
-            return ep.space;
+        public void writeTo(PrometheusWriter writer) {
+            List<XapEndpoint> current = endpoints;
+            if (current == null)
+                return;
+            writer.family("xap_space_endpoint_up", "gauge", "Whether the space endpoint answers pings, with active=true on the one serving requests");
+            for (XapEndpoint ep : current) {
+                writer.sample("xap_space_endpoint_up", PrometheusWriter.labels("endpoint", ep.url, "active", String.valueOf(ep == active)),
+                        ep.healthy ? 1 : 0);
+            }
+            writer.family("xap_space_endpoint_ping_seconds", "gauge", "Smoothed ping time of the space endpoint");
+            for (XapEndpoint ep : current) {
+                if (ep.latencyNanos >= 0)
+                    writer.sample("xap_space_endpoint_ping_seconds", PrometheusWriter.labels("endpoint", ep.url), ep.latencyNanos / 1e9);
+            }
         }
     }
 
+    /**
+     * Follows the space proxies of a {@link XapConnectionCache}. The methods are called on the
+     * thread that connected or switched, one call at a time; a proxy may be reported as connected
+     * more than once.
+     */
+    public interface EndpointListener {
+        /**
+         * A proxy was created, before it can become active. Throwing leaves the endpoint out of
+         * rotation until the next attempt.
+         */
+        void connected(GigaSpace gigaSpace);
+
+        /**
+         * Requests are served from the given proxy from now on: the first one, or another one
+         * after a switch, e.g. when the active cluster went down.
+         */
+        void activated(GigaSpace gigaSpace);
+    }
+
     private static class XapEndpoint {
-        public GigaSpace space = null;
+        public final String url;
+        public volatile GigaSpace space = null;
         public UrlSpaceConfigurer usc = null;
+        public volatile boolean healthy;
+        public volatile long latencyNanos = -1;
+        private int failures;
+
+        public XapEndpoint(String url) {
+            this.url = url;
+        }
+
+        public GigaSpace connect(int lookupTimeoutMillis) {
+            Logger.getLogger("XapConnectionCache").info("  connecting to " + url);
+            UrlSpaceConfigurer configurer = new UrlSpaceConfigurer(url);
+            if (lookupTimeoutMillis > 0)
+                configurer.lookupTimeout(lookupTimeoutMillis);
+            usc = configurer;
+            return new GigaSpaceConfigurer(configurer.space()).gigaSpace();
+        }
 
-        public XapEndpoint(GigaSpace space, UrlSpaceConfigurer usc) {
-            this.space = space;
-            this.usc = usc;
+        public void succeeded(long pingNanos) {
+            failures = 0;
+            healthy = true;
+            //exponentially weighted, a quarter of each new sample
+            latencyNanos = latencyNanos < 0 ? pingNanos : latencyNanos + (pingNanos - latencyNanos) / 4;
         }
 
+        /**
+         * Returns true if this failure took the endpoint out of rotation.
+         */
+        public boolean failed(int threshold) {
+            failures++;
+            if (healthy && failures >= threshold) {
+                healthy = false;
+                return true;
+            }
+            return false;
+        }
     }
 
 }
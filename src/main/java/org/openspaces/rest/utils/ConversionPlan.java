@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import com.gigaspaces.document.SpaceDocument;
+import com.gigaspaces.metadata.SpacePropertyDescriptor;
+import com.gigaspaces.metadata.SpaceTypeDescriptor;
+import org.openspaces.core.GigaSpace;
+import org.openspaces.rest.exceptions.RestException;
+import org.openspaces.rest.exceptions.TypeNotFoundException;
+import org.openspaces.rest.exceptions.UnsupportedTypeException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Converts parsed JSON properties to the property types of a space type. The converter of every
+ * fixed property is resolved once when the plan is built, so converting a document is a map
+ * lookup and a direct conversion per property: numbers are converted without going through their
+ * string form and dates are parsed with a thread safe {@link DateTimeFormatter}.
+ *
+ * Plans are cached per type name. A cached plan is used as long as the type manager hands out
+ * the same descriptor instance, which it does until the type is registered again; the type
+ * manager is asked at most every {@value #DESCRIPTOR_CHECK_MILLIS} ms per type. Code registering
+ * a type drops its plan with {@link #invalidate} so the new descriptor is used right away.
+ */
+public class ConversionPlan {
+    private static final Logger logger = Logger.getLogger(ConversionPlan.class.getName());
+    private static final long DESCRIPTOR_CHECK_MILLIS = 1000;
+    private static final ConcurrentHashMap<String, ConversionPlan> plans = new ConcurrentHashMap<String, ConversionPlan>();
+    private static volatile DateTimeFormatter dateFormatter = dateFormatter("yyyy-MM-dd HH:mm:ss");
+
+    private final SpaceTypeDescriptor descriptor;
+    private final Map<String, Integer> positions;
+    private final PropertyConverter[] converters;
+    private volatile long checkedAt;
+
+    /**
+     * Converts one property value, {@code propKey} is only used in error messages.
+     */
+    public interface PropertyConverter {
+        Object convert(Object value, String propKey);
+    }
+
+    private ConversionPlan(SpaceTypeDescriptor descriptor) {
+        this.descriptor = descriptor;
+        int count = descriptor.getNumOfFixedProperties();
+        this.positions = new HashMap<String, Integer>(count * 2);
+        this.converters = new PropertyConverter[count];
+        for (int i = 0; i < count; i++) {
+            SpacePropertyDescriptor property = descriptor.getFixedProperty(i);
+            positions.put(property.getName(), i);
+            converters[i] = converterFor(property.getType());
+        }
+        this.checkedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the plan of the named type, checking the type manager for a changed descriptor at
+     * most every {@value #DESCRIPTOR_CHECK_MILLIS} ms.
+     */
+    public static ConversionPlan forType(GigaSpace gigaSpace, String typeName) throws TypeNotFoundException {
+        ConversionPlan plan = plans.get(typeName);
+        long now = System.currentTimeMillis();
+        if (plan != null && now - plan.checkedAt < DESCRIPTOR_CHECK_MILLIS)
+            return plan;
+        SpaceTypeDescriptor descriptor = gigaSpace.getTypeManager().getTypeDescriptor(typeName);
+        if (descriptor == null) {
+            plans.remove(typeName);
+            throw new TypeNotFoundException(typeName);
+        }
+        if (plan != null && plan.descriptor == descriptor) {
+            plan.checkedAt = now;
+            return plan;
+        }
+        return of(descriptor);
+    }
+
+    /**
+     * Returns the plan of the given descriptor, building it if the cached plan of its type was
+     * built from another descriptor.
+     */
+    public static ConversionPlan of(SpaceTypeDescriptor descriptor) {
+        ConversionPlan plan = plans.get(descriptor.getTypeName());
+        if (plan != null && plan.descriptor == descriptor)
+            return plan;
+        plan = new ConversionPlan(descriptor);
+        plans.put(descriptor.getTypeName(), plan);
+        return plan;
+    }
+
+    /**
+     * Drops the cached plan of a type, e.g. after registering it again.
+     */
+    public static void invalidate(String typeName) {
+        plans.remove(typeName);
+    }
+
+    /**
+     * Sets the pattern dates are parsed with. Patterns without a time of day parse to midnight in
+     * the default time zone.
+     */
+    static void configureDateFormat(String pattern) {
+        dateFormatter = dateFormatter(pattern);
+    }
+
+    public SpaceTypeDescriptor getDescriptor() {
+        return descriptor;
+    }
+
+    public String getTypeName() {
+        return descriptor.getTypeName();
+    }
+
+    public SpaceDocument toDocument(Map<String, Object> propertyMap) {
+        return new SpaceDocument(descriptor.getTypeName(), convert(propertyMap));
+    }
+
+    public Map<String, Object> convert(Map<String, Object> propertyMap) {
+        HashMap<String, Object> converted = new HashMap<String, Object>((int) (propertyMap.size() / 0.75f) + 1);
+        for (Map.Entry<String, Object> entry : propertyMap.entrySet()) {
+            String propKey = entry.getKey();
+            Object value = entry.getValue();
+            Integer position = positions.get(propKey);
+            if (position == null) {
+                if (logger.isLoggable(Level.WARNING))
+                    logger.warning("could not find SpacePropertyDescriptor for " + propKey + ", using String as property type");
+                converted.put(propKey, value);
+            } else if (value instanceof Map) {
+                converted.put(propKey, nestedDocument((Map<?, ?>) value));
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                SpaceDocument[] documents = new SpaceDocument[list.size()];
+                for (int i = 0; i < documents.length; i++) {
+                    documents[i] = nestedDocument((Map<?, ?>) list.get(i));
+                }
+                converted.put(propKey, documents);
+            } else {
+                converted.put(propKey, converters[position].convert(value, propKey));
+            }
+        }
+        return converted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SpaceDocument nestedDocument(Map<?, ?> map) {
+        SpaceDocument document = new SpaceDocument();
+        document.setTypeName((String) map.get("typeName"));
+        if (map.get("version") != null)
+            document.setVersion((Integer) map.get("version"));
+        if (map.get("transient") != null)
+            document.setTransient((Boolean) map.get("transient"));
+        document.addProperties((Map<String, Object>) map.get("properties"));
+        return document;
+    }
+
+    /**
+     * Returns the converter of a property type. Types without a conversion get a converter that
+     * fails when a value is actually given for them.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static PropertyConverter converterFor(final Class type) {
+        if (type.equals(Long.class) || type.equals(Long.TYPE))
+            return LONG;
+        if (type.equals(Boolean.class) || type.equals(Boolean.TYPE))
+            return BOOLEAN;
+        if (type.equals(Integer.class) || type.equals(Integer.TYPE))
+            return INTEGER;
+        if (type.equals(Byte.class) || type.equals(Byte.TYPE))
+            return BYTE;
+        if (type.equals(Short.class) || type.equals(Short.TYPE))
+            return SHORT;
+        if (type.equals(Float.class) || type.equals(Float.TYPE))
+            return FLOAT;
+        if (type.equals(Double.class) || type.equals(Double.TYPE))
+            return DOUBLE;
+        if (type.isEnum()) {
+            return new PropertyConverter() {
+                @Override
+                public Object convert(Object value, String propKey) {
+                    return type.isInstance(value) ? value : Enum.valueOf(type, String.valueOf(value));
+                }
+            };
+        }
+        if (type.equals(String.class) || type.equals(Object.class))
+            return STRING;
+        if (type.equals(Date.class))
+            return DATE;
+        return new PropertyConverter() {
+            @Override
+            public Object convert(Object value, String propKey) {
+                throw new UnsupportedTypeException("Non primitive type when converting property [" + propKey + "]:" + type);
+            }
+        };
+    }
+
+    /**
+     * Returns the value of an integral JSON number, or parses its string form. Fractions are
+     * rejected the same way parsing their string form would.
+     */
+    private static long integral(Object value, long min, long max) {
+        long result;
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+            result = ((Number) value).longValue();
+        else if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64)
+            result = ((BigInteger) value).longValue();
+        else
+            return parseIn(String.valueOf(value), min, max);
+        if (result < min || result > max)
+            throw new NumberFormatException("Value out of range. Value:\"" + value + "\"");
+        return result;
+    }
+
+    private static long parseIn(String value, long min, long max) {
+        long result = Long.parseLong(value);
+        if (result < min || result > max)
+            throw new NumberFormatException("Value out of range. Value:\"" + value + "\"");
+        return result;
+    }
+
+    private static final PropertyConverter LONG = new PropertyConverter() {
+        @Override
+        public Object convert(Object value, String propKey) {
+            return value instanceof Long ? value : Long.valueOf(integral(value, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+    };
+
+    private static final PropertyConverter INTEGER = new PropertyConverter() {
+        @Override
+        public Object convert(Object value, String propKey) {
+            return value instanceof Integer ? value : Integer.valueOf((int) integral(value, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        }
+    };
+
+    private static final PropertyConverter SHORT = new PropertyConverter() {
+        @Override
+        public Object convert(Object value, String propKey) {
+            return Short.valueOf((short) integral(value, Short.MIN_VALUE, Short.MAX_VALUE));
+        }
+    };
+
+    private static final PropertyConverter BYTE = new PropertyConverter() {
+        @Override
+        public Object convert(Object value, String propKey) {
+            return Byte.valueOf((byte) integral(value, Byte.MIN_VALUE, Byte.MAX_VALUE));
+        }
+    };
+
+    private static final PropertyConverter DOUBLE = new PropertyConverter() {
+        @Override
+        public Object convert(Object value, String propKey) {
+            if (value instanceof Double)
+                return value;
+            if (value instanceof Number && !(value instanceof BigDecimal))
+                return ((Number) value).doubleValue();
+            return Double.valueOf(String.valueOf(value));
+        }
+    };
+
+    private static final PropertyConverter FLOAT = new PropertyConverter() {
+        @Override
+        public Object convert(Object value, String propKey) {
+            if (value instanceof Float)
+                return value;
+            if (value instanceof Number && !(value instanceof BigDecimal))
+                return ((Number) value).floatValue();
+            return Float.valueOf(String.valueOf(value));
+        }
+    };
+
+    private static final PropertyConverter BOOLEAN = new PropertyConverter() {
+        @Override
+        public Object convert(Object value, String propKey) {
+            return value instanceof Boolean ? value : Boolean.valueOf(String.valueOf(value));
+        }
+    };
+
+    private static final PropertyConverter STRING = new PropertyConverter() {
+        @Override
+        public Object convert(Object value, String propKey) {
+            return String.valueOf(value);
+        }
+    };
+
+    /**
+     * Dates are given in the configured datetime format or as epoch milliseconds.
+     */
+    private static final PropertyConverter DATE = new PropertyConverter() {
+        @Override
+        public Object convert(Object value, String propKey) {
+            if (value instanceof Date)
+                return value;
+            if (value instanceof Long || value instanceof Integer)
+                return new Date(((Number) value).longValue());
+            String text = String.valueOf(value);
+            try {
+                return Date.from(Instant.from(dateFormatter.parse(text)));
+            } catch (DateTimeParseException e) {
+                throw new RestException("Unable to parse date [" + text + "]. Make sure it matches the format: " + ControllerUtils.date_format);
+            }
+        }
+    };
+
+    private static DateTimeFormatter dateFormatter(String pattern) {
+        DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder().appendPattern(pattern);
+        if (pattern.indexOf('H') < 0 && pattern.indexOf('h') < 0 && pattern.indexOf('k') < 0 && pattern.indexOf('K') < 0)
+            builder.parseDefaulting(ChronoField.HOUR_OF_DAY, 0);
+        if (pattern.indexOf('m') < 0)
+            builder.parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0);
+        if (pattern.indexOf('s') < 0)
+            builder.parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0);
+        return builder.toFormatter().withZone(ZoneId.systemDefault());
+    }
+}
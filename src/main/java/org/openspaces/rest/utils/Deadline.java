@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import org.openspaces.rest.exceptions.DeadlineExceededException;
+import org.openspaces.rest.exceptions.ServiceUnavailableException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which a request has to be answered. Clients set it with the {@value #HEADER}
+ * header as the number of milliseconds they are willing to wait; requests without it get the
+ * configured async timeout.
+ */
+public final class Deadline {
+    public static final String HEADER = "X-Request-Deadline";
+
+    private final boolean shared;
+    private volatile long deadlineNanos;
+    private volatile long budgetMillis;
+    private volatile boolean requested;
+
+    private Deadline(long budgetMillis, boolean requested) {
+        this(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis), budgetMillis, requested, false);
+    }
+
+    private Deadline(long deadlineNanos, long budgetMillis, boolean requested, boolean shared) {
+        this.deadlineNanos = deadlineNanos;
+        this.budgetMillis = budgetMillis;
+        this.requested = requested;
+        this.shared = shared;
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(millis, false);
+    }
+
+    /**
+     * Returns the deadline of a request, capped at {@code maxMillis}.
+     *
+     * @param headerMillis value of the {@value #HEADER} header, null if not sent
+     */
+    public static Deadline fromHeader(Long headerMillis, long maxMillis) {
+        if (headerMillis == null)
+            return after(maxMillis);
+        return new Deadline(Math.min(headerMillis, maxMillis), true);
+    }
+
+    /**
+     * Returns whichever of the two deadlines ends later.
+     */
+    public static Deadline latest(Deadline a, Deadline b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+        return a.deadlineNanos - b.deadlineNanos >= 0 ? a : b;
+    }
+
+    /**
+     * Returns a deadline for work shared by several requests, starting out as the given one and
+     * moved out by {@link #extend} as further requests join.
+     */
+    public static Deadline shared(Deadline first) {
+        return new Deadline(first.deadlineNanos, first.budgetMillis, first.requested, true);
+    }
+
+    /**
+     * Moves this shared deadline to the end of the given one if that is later, so shared work
+     * goes on until the last of its requests gives up.
+     *
+     * @throws IllegalStateException if this deadline is not {@link #shared}
+     */
+    public synchronized void extend(Deadline other) {
+        if (!shared)
+            throw new IllegalStateException("Only shared deadlines can be extended");
+        if (other.deadlineNanos - deadlineNanos > 0) {
+            budgetMillis = other.budgetMillis;
+            requested = other.requested;
+            deadlineNanos = other.deadlineNanos;
+        }
+    }
+
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    /**
+     * Whether the client set this deadline, as opposed to the default timeout.
+     */
+    public boolean isRequested() {
+        return requested;
+    }
+
+    /**
+     * Returns the error to answer with when {@code what} did not finish in time: a 504 for a
+     * client deadline, the usual 503 for the default timeout.
+     */
+    public RuntimeException exceeded(String what) {
+        if (requested)
+            return new DeadlineExceededException("Deadline of " + budgetMillis + " ms exceeded " + what);
+        return new ServiceUnavailableException("Timed out " + what);
+    }
+}
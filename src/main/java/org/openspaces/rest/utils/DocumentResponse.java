@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.gigaspaces.document.SpaceDocument;
+
+/**
+ * Success response carrying a single space document: { "status" : "success", "data" : {...} }.
+ * Written by {@link DocumentResponseHttpMessageConverter} directly from the document.
+ */
+@JsonPropertyOrder({"status", "data"})
+public class DocumentResponse {
+    private final String status;
+    private final SpaceDocument data;
+
+    public DocumentResponse(SpaceDocument data) {
+        this.status = "success";
+        this.data = data;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    @JsonSerialize(using = SpaceDocumentSerializer.PropertiesOnly.class)
+    public SpaceDocument getData() {
+        return data;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link DocumentResponse} and {@link BatchDocumentResponse} bodies with the shared writers
+ * of {@link ControllerUtils}, streaming the documents to the response instead of building
+ * intermediate maps. The writers of the negotiated {@link Encoding} are used, JSON or binary.
+ */
+public class DocumentResponseHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    public DocumentResponseHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON, Encoding.SMILE, Encoding.CBOR, Encoding.MSGPACK);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return DocumentResponse.class.isAssignableFrom(clazz) || BatchDocumentResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException(clazz.getSimpleName() + " is a response only type", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object response, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        Encoding encoding = ControllerUtils.encodingFor(outputMessage.getHeaders().getContentType());
+        if (response instanceof BatchDocumentResponse)
+            encoding.getBatchDocumentWriter().writeValue(outputMessage.getBody(), response);
+        else
+            encoding.getDocumentWriter().writeValue(outputMessage.getBody(), response);
+    }
+}
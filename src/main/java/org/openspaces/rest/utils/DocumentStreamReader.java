@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.gigaspaces.document.SpaceDocument;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the documents of a single type one JSON object at a time from a JSON array, a single JSON
+ * object or newline delimited JSON (NDJSON), so a payload is converted while it is parsed and
+ * never held in memory as a whole. Objects are separated by whitespace outside of an array; comma
+ * separated objects without the enclosing brackets are only accepted by {@link
+ * ControllerUtils#createSpaceDocuments}, which has the whole payload at hand.
+ *
+ * Parsing and conversion are separate steps: a malformed payload fails {@link #nextProperties()}
+ * and the reader cannot continue, while a document whose values do not fit its type only fails
+ * {@link #toDocument(Map)}.
+ */
+public class DocumentStreamReader implements Closeable {
+    private static final TypeReference<HashMap<String, Object>> propertiesType = new TypeReference<HashMap<String, Object>>() {
+    };
+
+    private final JsonParser parser;
+    private final ConversionPlan plan;
+    private boolean started;
+    private boolean inArray;
+    private boolean finished;
+    private long count;
+
+    public DocumentStreamReader(JsonParser parser, ConversionPlan plan) {
+        this.parser = parser;
+        this.plan = plan;
+    }
+
+    /**
+     * Returns the properties of the next JSON object as parsed, or null at the end of the payload.
+     */
+    public Map<String, Object> nextProperties() throws IOException {
+        if (finished)
+            return null;
+        JsonToken token = parser.nextToken();
+        if (!started) {
+            started = true;
+            if (token == JsonToken.START_ARRAY) {
+                inArray = true;
+                token = parser.nextToken();
+            }
+        }
+        if (token == null || (inArray && token == JsonToken.END_ARRAY)) {
+            finished = true;
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT)
+            throw new JsonParseException(parser, "Expected a JSON object but found " + token);
+        Map<String, Object> properties = ControllerUtils.mapper.readValue(parser, propertiesType);
+        count++;
+        return properties;
+    }
+
+    /**
+     * Converts parsed properties to a document, using the fixed property types of the type, and
+     * gives it a new generation for its entity tag, see {@link EntityTags}.
+     */
+    public SpaceDocument toDocument(Map<String, Object> properties) {
+        return EntityTags.stamp(plan.toDocument(properties), plan.getDescriptor());
+    }
+
+    /**
+     * Number of JSON objects read completely so far.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.gigaspaces.document.SpaceDocument;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a list response { "status" : "success", "data" : [{...}, ...], "cursor" : "..." } one
+ * document at a time, so a listing is never held in memory as a whole. Documents are written in
+ * the same properties only shape as the data of a GET response and flushed as they are written.
+ */
+public class DocumentStreamWriter {
+    private final JsonGenerator gen;
+    private final SerializerProvider provider;
+    private int count;
+
+    public DocumentStreamWriter(OutputStream out) throws IOException {
+        this.gen = ControllerUtils.mapper.getFactory().createGenerator(out);
+        this.provider = ControllerUtils.mapper.getSerializerProviderInstance();
+        gen.writeStartObject();
+        gen.writeStringField("status", "success");
+        gen.writeArrayFieldStart("data");
+    }
+
+    public void write(SpaceDocument doc) throws IOException {
+        SpaceDocumentSerializer.writeProperties(doc, gen, provider);
+        count++;
+    }
+
+    /**
+     * Pushes the documents written so far to the client.
+     */
+    public void flush() throws IOException {
+        gen.flush();
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Closes the data array and the response.
+     *
+     * @param cursor token to continue the listing with, null if there is nothing left
+     */
+    public void finish(String cursor) throws IOException {
+        gen.writeEndArray();
+        if (cursor != null)
+            gen.writeStringField("cursor", cursor);
+        gen.writeEndObject();
+        gen.close();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import org.springframework.http.MediaType;
+
+/**
+ * A wire format of request and response bodies, JSON or one of the binary formats Jackson
+ * supports, with its mapper and the reusable response writers. Binary formats keep the shape of
+ * the JSON bodies, they only save the text encoding and parsing.
+ */
+public class Encoding {
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final String CBOR_VALUE = "application/cbor";
+    public static final String MSGPACK_VALUE = "application/x-msgpack";
+    public static final MediaType SMILE = MediaType.valueOf(SMILE_VALUE);
+    public static final MediaType CBOR = MediaType.valueOf(CBOR_VALUE);
+    public static final MediaType MSGPACK = MediaType.valueOf(MSGPACK_VALUE);
+
+    private final MediaType mediaType;
+    private final ObjectMapper mapper;
+    private final ObjectWriter documentWriter;
+    private final ObjectWriter batchDocumentWriter;
+
+    public Encoding(MediaType mediaType, ObjectMapper mapper) {
+        this.mediaType = mediaType;
+        this.mapper = mapper;
+        this.documentWriter = mapper.writerFor(DocumentResponse.class);
+        this.batchDocumentWriter = mapper.writerFor(BatchDocumentResponse.class);
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    public ObjectWriter getDocumentWriter() {
+        return documentWriter;
+    }
+
+    public ObjectWriter getBatchDocumentWriter() {
+        return batchDocumentWriter;
+    }
+
+    public boolean isBinary() {
+        return !MediaType.APPLICATION_JSON.equals(mediaType);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.utils;
+
+import com.gigaspaces.document.SpaceDocument;
+import com.gigaspaces.metadata.SpaceTypeDescriptor;
+
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Entity tags of GET responses, so clients can revalidate with {@code If-None-Match} and get a
+ * 304 instead of the full body.
+ *
+ * Documents loaded from a backend or written through the REST API carry a generation taken when
+ * they were loaded or parsed: the time of the node that took it in its high bits and a random id
+ * of that node in the low bits. Generations move forward on each node, also across invalidations
+ * that remove documents from the space, and the node id keeps two nodes from handing out the
+ * same generation even when their clocks disagree. Space versions restart once a document was
+ * cleared, so they only tag documents without a generation, such as documents of types without
+ * dynamic properties or written by other space clients.
+ */
+public class EntityTags {
+    public static final String GENERATION_PROPERTY = SpaceDocumentSerializer.INTERNAL_PROPERTY_PREFIX + "generation";
+
+    private static final int NODE_BITS = 22;
+    /**
+     * Start of the generation clock, 2020-01-01 UTC, so 41 bits of milliseconds last until 2089.
+     */
+    private static final long EPOCH_MILLIS = 1577836800000L;
+    private static final long NODE_ID = new SecureRandom().nextInt(1 << NODE_BITS);
+
+    private static final AtomicLong lastMillis = new AtomicLong();
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * The next generation of this node: the current time in milliseconds, or one more than the
+     * last time used if the clock did not move (or went back), combined with the node id.
+     */
+    public static long nextGeneration() {
+        while (true) {
+            long last = lastMillis.get();
+            long next = Math.max(System.currentTimeMillis() - EPOCH_MILLIS, last + 1);
+            if (lastMillis.compareAndSet(last, next))
+                return next << NODE_BITS | NODE_ID;
+        }
+    }
+
+    /**
+     * Gives a document parsed from a request a new generation, if its type can hold it.
+     */
+    public static SpaceDocument stamp(SpaceDocument doc, SpaceTypeDescriptor descriptor) {
+        if (descriptor.supportsDynamicProperties() || descriptor.getFixedPropertyPosition(GENERATION_PROPERTY) >= 0)
+            doc.setProperty(GENERATION_PROPERTY, nextGeneration());
+        return doc;
+    }
+
+    /**
+     * The quoted entity tag of a document.
+     */
+    public static String of(SpaceDocument doc) {
+        return '"' + tagValue(doc) + '"';
+    }
+
+    /**
+     * The quoted entity tag of a multi id response: a hash of the requested ids in order and of the
+     * tags of the documents found for them.
+     */
+    public static String of(List<String> ids, Map<String, SpaceDocument> found) {
+        long hash = FNV_OFFSET;
+        for (String id : ids) {
+            SpaceDocument doc = found.get(id);
+            hash = hash(hash, id);
+            hash = hash(hash, doc == null ? "-" : tagValue(doc));
+        }
+        return "\"b" + Long.toHexString(hash) + '"';
+    }
+
+    private static String tagValue(SpaceDocument doc) {
+        Object generation = doc.getProperty(GENERATION_PROPERTY);
+        if (generation instanceof Long)
+            return "g" + Long.toString((Long) generation, 36);
+        return "v" + doc.getVersion();
+    }
+
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        //separator, so "ab","c" and "a","bc" hash differently
+        hash ^= 0xff;
+        return hash * FNV_PRIME;
+    }
+}
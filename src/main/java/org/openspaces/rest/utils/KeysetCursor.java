@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import org.openspaces.rest.exceptions.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of a keyset paginated listing: the sort value and the id of the last entry returned.
+ * Clients get it as an opaque url safe token and send it back to continue after that entry.
+ */
+public class KeysetCursor {
+    private static final char SEPARATOR = ':';
+
+    private final long sortValue;
+    private final String id;
+
+    public KeysetCursor(long sortValue, String id) {
+        this.sortValue = sortValue;
+        this.id = id;
+    }
+
+    public long getSortValue() {
+        return sortValue;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String encode() {
+        String plain = Long.toString(sortValue) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a token produced by {@link #encode()}.
+     *
+     * @throws InvalidRequestException if the token is malformed
+     */
+    public static KeysetCursor decode(String token) {
+        try {
+            String plain = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = plain.indexOf(SEPARATOR);
+            if (separator <= 0 || separator == plain.length() - 1)
+                throw new InvalidRequestException("Invalid cursor: " + token);
+            return new KeysetCursor(Long.parseLong(plain.substring(0, separator)), plain.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Invalid cursor: " + token);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.gigaspaces.document.SpaceDocument;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Streams a {@link SpaceDocument} straight to the generator without copying its properties into
+ * an intermediate map. Nested documents (including arrays of documents) are written in the same
+ * {@code typeName/version/transient/properties} shape that the payload parser in {@link
+ * ControllerUtils} accepts, other values go through the configured serializers (e.g. the datetime
+ * format).
+ */
+public class SpaceDocumentSerializer extends StdSerializer<SpaceDocument> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Properties starting with this prefix hold caching metadata and are never sent to clients.
+     */
+    public static final String INTERNAL_PROPERTY_PREFIX = "__";
+
+    public SpaceDocumentSerializer() {
+        super(SpaceDocument.class);
+    }
+
+    @Override
+    public void serialize(SpaceDocument doc, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("typeName", doc.getTypeName());
+        gen.writeNumberField("version", doc.getVersion());
+        gen.writeBooleanField("transient", doc.isTransient());
+        gen.writeFieldName("properties");
+        writeProperties(doc, gen, provider);
+        gen.writeEndObject();
+    }
+
+    /**
+     * Writes only the properties of the document as a flat json object.
+     */
+    public static void writeProperties(SpaceDocument doc, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        for (Map.Entry<String, Object> entry : doc.getProperties().entrySet()) {
+            if (entry.getKey().startsWith(INTERNAL_PROPERTY_PREFIX))
+                continue;
+            Object value = entry.getValue();
+            if (value == null) {
+                gen.writeNullField(entry.getKey());
+            } else {
+                provider.defaultSerializeField(entry.getKey(), value, gen);
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * Serializes a top level document as its properties only, this is the shape of the {@code data}
+     * element of a GET response.
+     */
+    public static class PropertiesOnly extends StdSerializer<SpaceDocument> {
+        private static final long serialVersionUID = 1L;
+
+        public PropertiesOnly() {
+            super(SpaceDocument.class);
+        }
+
+        @Override
+        public void serialize(SpaceDocument doc, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            writeProperties(doc, gen, provider);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.cache;
+
+import com.gigaspaces.document.SpaceDocument;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openspaces.rest.data.BackendLoader;
+import org.openspaces.rest.exceptions.DeadlineExceededException;
+import org.openspaces.rest.exceptions.ServiceUnavailableException;
+import org.openspaces.rest.metrics.TypeMetrics;
+import org.openspaces.rest.utils.Deadline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchingLoaderTest {
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final TypeMetrics metrics = new TypeMetrics();
+    private final StubBackend backend = new StubBackend();
+
+    @After
+    public void shutdown() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void keysOfOneWindowShareOneBackendCall() throws Exception {
+        BatchingLoader loader = loader(10, 50000, 4, 0);
+        CompletableFuture<SpaceDocument> first = loader.load("1", Deadline.after(60000));
+        CompletableFuture<SpaceDocument> second = loader.load("2", Deadline.after(60000));
+        assertEquals("1", first.get(5, TimeUnit.SECONDS).getProperty("id"));
+        assertEquals("2", second.get(5, TimeUnit.SECONDS).getProperty("id"));
+        assertEquals(Collections.singletonList(Arrays.asList("1", "2")), backend.calls());
+    }
+
+    @Test
+    public void callsBeyondTheBulkheadAreRejected() throws Exception {
+        BatchingLoader loader = loader(1, 0, 1, 0);
+        CountDownLatch release = backend.block();
+        CompletableFuture<SpaceDocument> running = loader.load("1", Deadline.after(60000));
+        assertEquals(1, loader.getCallsInFlight());
+        try {
+            loader.get("2", Deadline.after(60000));
+            fail("expected the bulkhead to be full");
+        } catch (ServiceUnavailableException e) {
+            //answered with a 503
+        }
+        assertEquals(1, loader.getRejections());
+
+        release.countDown();
+        assertEquals("1", running.get(5, TimeUnit.SECONDS).getProperty("id"));
+        assertEquals(Collections.singletonList(Collections.singletonList("1")), backend.calls());
+        awaitCallsInFlight(loader, 0);
+    }
+
+    @Test
+    public void slowCallsAreHedgedAndTheFirstAnswerWins() throws Exception {
+        BatchingLoader loader = loader(1, 0, 2, 50);
+        recordLatencies(5);
+        CountDownLatch release = backend.block();
+        backend.answer("hedged");
+        SpaceDocument loaded = loader.get("1", Deadline.after(60000));
+        assertEquals("hedged", loaded.getProperty("source"));
+        assertEquals(1, loader.getHedges());
+        assertEquals(2, backend.calls().size());
+
+        release.countDown();
+        awaitCallsInFlight(loader, 0);
+    }
+
+    @Test
+    public void failuresAreReportedOnlyWhenTheLastAttemptFails() throws Exception {
+        BatchingLoader loader = loader(1, 0, 2, 50);
+        recordLatencies(5);
+        CountDownLatch releaseFirst = backend.blockThenFail("first down");
+        CountDownLatch releaseHedge = backend.blockThenFail("hedge down");
+        CompletableFuture<SpaceDocument> future = loader.load("1", Deadline.after(60000));
+        awaitCallsInFlight(loader, 2);
+
+        releaseFirst.countDown();
+        awaitCallsInFlight(loader, 1);
+        assertFalse(future.isDone());
+
+        releaseHedge.countDown();
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected the failure of the hedge");
+        } catch (ExecutionException e) {
+            assertEquals("hedge down", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void awaitHonoursASharedDeadlineExtendedByAJoiner() throws Exception {
+        BatchingLoader loader = loader(1, 0, 1, 0);
+        final Deadline shared = Deadline.shared(Deadline.fromHeader(100L, 60000));
+        final CountDownLatch release = new CountDownLatch(1);
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                shared.extend(Deadline.fromHeader(60000L, 60000));
+            }
+        }, 20, TimeUnit.MILLISECONDS);
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                release.countDown();
+            }
+        }, 300, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        String page = loader.call(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                release.await();
+                return "page";
+            }
+        }, shared);
+        assertEquals("page", page);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(300));
+    }
+
+    @Test
+    public void expiredBatchesFailWithoutABackendCall() throws Exception {
+        BatchingLoader loader = loader(10, 1000, 4, 0);
+        CompletableFuture<SpaceDocument> future = loader.load("1", Deadline.fromHeader(0L, 60000));
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected the deadline to be exceeded");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DeadlineExceededException);
+        }
+        assertTrue(backend.calls().isEmpty());
+        assertEquals(0, loader.getCallsInFlight());
+    }
+
+    private BatchingLoader loader(int maxBatchSize, long windowMicros, int maxConcurrentCalls, double hedgePercentile) {
+        return new BatchingLoader("Account", backend, metrics, maxBatchSize, windowMicros, timer, executor,
+                maxConcurrentCalls, hedgePercentile);
+    }
+
+    /**
+     * Fills the recent backend latency of the type with enough calls of about the given length
+     * for the hedge delay to be computed from it.
+     */
+    private void recordLatencies(long millis) {
+        for (int i = 0; i < 100; i++)
+            metrics.loaded(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(millis), false);
+    }
+
+    private static void awaitCallsInFlight(BatchingLoader loader, int calls) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (loader.getCallsInFlight() != calls) {
+            if (System.nanoTime() - end > 0)
+                fail("expected " + calls + " calls in flight, got " + loader.getCallsInFlight());
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Backend answering the calls it gets in order with the behaviour queued for them, and with
+     * the requested documents once the queue is empty.
+     */
+    private static class StubBackend implements BackendLoader {
+        private final List<List<String>> calls = new ArrayList<List<String>>();
+        private final List<Behaviour> behaviours = new ArrayList<Behaviour>();
+
+        /**
+         * Makes the next call wait for the returned latch before answering.
+         */
+        synchronized CountDownLatch block() {
+            return enqueue(null, null, true).release;
+        }
+
+        /**
+         * Makes the next call wait for the returned latch and then fail with the given message.
+         */
+        synchronized CountDownLatch blockThenFail(String message) {
+            return enqueue(null, message, true).release;
+        }
+
+        /**
+         * Makes the next call answer right away with documents of the given source.
+         */
+        synchronized void answer(String source) {
+            enqueue(source, null, false);
+        }
+
+        synchronized List<List<String>> calls() {
+            return new ArrayList<List<String>>(calls);
+        }
+
+        private Behaviour enqueue(String source, String failure, boolean blocked) {
+            Behaviour behaviour = new Behaviour();
+            behaviour.source = source;
+            behaviour.failure = failure;
+            behaviour.release = blocked ? new CountDownLatch(1) : null;
+            behaviours.add(behaviour);
+            return behaviour;
+        }
+
+        @Override
+        public Map<String, SpaceDocument> loadAll(Collection<String> keys) {
+            Behaviour behaviour;
+            synchronized (this) {
+                calls.add(new ArrayList<String>(keys));
+                behaviour = behaviours.isEmpty() ? new Behaviour() : behaviours.remove(0);
+            }
+            if (behaviour.release != null) {
+                try {
+                    behaviour.release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (behaviour.failure != null)
+                throw new IllegalStateException(behaviour.failure);
+            Map<String, SpaceDocument> loaded = new HashMap<String, SpaceDocument>();
+            for (String key : keys) {
+                SpaceDocument doc = new SpaceDocument("Account");
+                doc.setProperty("id", key);
+                doc.setProperty("source", behaviour.source == null ? "backend" : behaviour.source);
+                loaded.put(key, doc);
+            }
+            return loaded;
+        }
+    }
+
+    private static class Behaviour {
+        private CountDownLatch release;
+        private String source;
+        private String failure;
+    }
+}
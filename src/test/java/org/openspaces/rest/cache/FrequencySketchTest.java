@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void unknownKeysHaveNoFrequency() {
+        assertEquals(0, new FrequencySketch(1024).frequency("1"));
+    }
+
+    @Test
+    public void neverUnderestimatesBeforeAReset() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int key = 0; key < 500; key++) {
+            for (int i = 0; i < key % 10; i++) {
+                sketch.increment(String.valueOf(key));
+            }
+        }
+        for (int key = 0; key < 500; key++) {
+            assertTrue(sketch.frequency(String.valueOf(key)) >= key % 10);
+        }
+    }
+
+    @Test
+    public void separatesHotFromColdKeys() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("hot");
+        }
+        for (int key = 0; key < 1000; key++) {
+            sketch.increment(String.valueOf(key));
+        }
+        assertTrue(sketch.frequency("hot") >= 100);
+        assertTrue(sketch.frequency("0") < 10);
+    }
+
+    @Test
+    public void halvesCountsOnceTheSampleIsFull() {
+        //a width of 16 samples 160 additions
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 159; i++) {
+            sketch.increment("hot");
+        }
+        assertEquals(159, sketch.frequency("hot"));
+        sketch.increment("hot");
+        assertEquals(80, sketch.frequency("hot"));
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MembershipFilterTest {
+
+    @Test
+    public void hasNoFalseNegatives() {
+        List<String> keys = keys(0, 100000);
+        MembershipFilter filter = new MembershipFilter(keys, 0.01);
+        for (String key : keys) {
+            assertTrue(key, filter.mightContain(key));
+        }
+        assertEquals(100000, filter.getKeyCount());
+    }
+
+    @Test
+    public void keepsFalsePositivesNearTheRequestedRate() {
+        MembershipFilter filter = new MembershipFilter(keys(0, 100000), 0.01);
+        int falsePositives = 0;
+        for (String key : keys(100000, 200000)) {
+            if (filter.mightContain(key))
+                falsePositives++;
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 2000);
+    }
+
+    @Test
+    public void emptyFiltersRejectEverything() {
+        MembershipFilter filter = new MembershipFilter(Collections.<String>emptyList(), 0.01);
+        assertFalse(filter.mightContain("1"));
+        assertEquals(0, filter.getKeyCount());
+    }
+
+    @Test
+    public void negativeCacheAsksTheFilter() {
+        NegativeCache negativeCache = new NegativeCache("Account", 0, null);
+        assertTrue(negativeCache.mightExist("5"));
+        negativeCache.setFilter(new MembershipFilter(keys(0, 10), 0.01));
+        assertTrue(negativeCache.mightExist("5"));
+        assertFalse(negativeCache.mightExist("not-an-account"));
+        assertEquals(1L, negativeCache.getStats().get("filterRejections"));
+    }
+
+    private static List<String> keys(int from, int to) {
+        List<String> keys = new ArrayList<String>(to - from);
+        for (int i = from; i < to; i++) {
+            keys.add(String.valueOf(i));
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.cache;
+
+import com.gigaspaces.document.SpaceDocument;
+
+import org.junit.Test;
+import org.openspaces.rest.utils.EntityTags;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NearCacheTest {
+    private final NearCache cache = new NearCache("Account", 100, "accountId");
+
+    @Test
+    public void cachesDocumentsPutWithACurrentStamp() {
+        SpaceDocument doc = account(1, 10L);
+        cache.put("1", doc, cache.stamp("1"));
+        assertSame(doc, cache.get("1"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void documentsReadBeforeAnInvalidationAreNotCached() {
+        long stamp = cache.stamp("1");
+        SpaceDocument readBeforeInvalidation = account(1, 10L);
+        cache.invalidate("1");
+        cache.put("1", readBeforeInvalidation, stamp);
+        assertNull(cache.get("1"));
+
+        cache.put("1", account(1, 11L), cache.stamp("1"));
+        assertEquals(Long.valueOf(11), cache.get("1").getProperty(EntityTags.GENERATION_PROPERTY));
+    }
+
+    @Test
+    public void documentsReadBeforeInvalidateAllAreNotCached() {
+        long stamp = cache.stamp("1");
+        cache.invalidateAll();
+        cache.put("1", account(1, 10L), stamp);
+        assertNull(cache.get("1"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOnceFull() {
+        NearCache small = new NearCache("Account", 1, "accountId");
+        small.put("1", account(1, 10L), small.stamp("1"));
+        small.put("2", account(2, 11L), small.stamp("2"));
+        assertNull(small.get("1"));
+        assertEquals(1, small.size());
+        assertEquals(1L, small.getStats().get("evictions"));
+    }
+
+    @Test
+    public void disabledCacheKeepsNothing() {
+        NearCache disabled = new NearCache("Account", 0, "accountId");
+        assertFalse(disabled.isEnabled());
+        disabled.put("1", account(1, 10L), disabled.stamp("1"));
+        assertNull(disabled.get("1"));
+    }
+
+    @Test
+    public void recognizesTheSpaceWriteOfTheCachedCopy() {
+        SpaceDocument doc = account(1, 10L);
+        doc.setProperty(TtlPolicy.EXPIRES_AT_PROPERTY, 1000L);
+        cache.put("1", doc, cache.stamp("1"));
+
+        SpaceDocument written = account(1, 10L);
+        written.setProperty(TtlPolicy.EXPIRES_AT_PROPERTY, 1000L);
+        assertTrue(cache.isCached("1", written));
+
+        SpaceDocument reloaded = account(1, 11L);
+        reloaded.setProperty(TtlPolicy.EXPIRES_AT_PROPERTY, 1000L);
+        assertFalse(cache.isCached("1", reloaded));
+
+        SpaceDocument markedStale = account(1, 10L);
+        markedStale.setProperty(TtlPolicy.EXPIRES_AT_PROPERTY, 500L);
+        assertFalse(cache.isCached("1", markedStale));
+
+        SpaceDocument untagged = new SpaceDocument("Account");
+        untagged.setProperty("accountId", 1);
+        assertFalse(cache.isCached("1", untagged));
+    }
+
+    @Test
+    public void buildsKeysFromAllKeyProperties() {
+        NearCache transactions = new NearCache("AccountTransaction", 10, "accountId", "transactionId");
+        SpaceDocument doc = new SpaceDocument("AccountTransaction");
+        doc.setProperty("accountId", 7);
+        doc.setProperty("transactionId", 3);
+        assertEquals("7-3", transactions.keyOf(doc));
+    }
+
+    private static SpaceDocument account(int accountId, Long generation) {
+        SpaceDocument doc = new SpaceDocument("Account");
+        doc.setProperty("accountId", accountId);
+        doc.setProperty(EntityTags.GENERATION_PROPERTY, generation);
+        return doc;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.cache;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openspaces.rest.utils.Deadline;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+    private final SingleFlight<String> flight = new SingleFlight<String>("Account");
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallersShareOneLoad() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> leader = flight.submit("1", new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                calls.incrementAndGet();
+                loading.countDown();
+                release.await();
+                return "loaded";
+            }
+        }, executor);
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> follower = flight.submit("1", new Callable<String>() {
+            @Override
+            public String call() {
+                calls.incrementAndGet();
+                return "second";
+            }
+        }, executor);
+        assertSame(leader, follower);
+        release.countDown();
+
+        assertEquals("loaded", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, flight.getLoads());
+        assertEquals(1, flight.getCoalesced());
+        assertEquals(0, flight.getInFlight());
+    }
+
+    @Test
+    public void completedLoadsAreNotShared() {
+        assertEquals("a", flight.execute("1", constant("a")));
+        assertEquals("b", flight.execute("1", constant("b")));
+        assertEquals(2, flight.getLoads());
+        assertEquals(0, flight.getCoalesced());
+    }
+
+    @Test
+    public void failuresReachTheCallerAndAreNotCached() {
+        try {
+            flight.execute("1", new Callable<String>() {
+                @Override
+                public String call() {
+                    throw new IllegalStateException("backend down");
+                }
+            });
+            fail("expected the load failure");
+        } catch (IllegalStateException e) {
+            assertEquals("backend down", e.getMessage());
+        }
+        assertEquals(0, flight.getInFlight());
+        assertEquals("a", flight.execute("1", constant("a")));
+    }
+
+    @Test
+    public void rejectedLoadsFailTheirFuture() throws Exception {
+        executor.shutdown();
+        CompletableFuture<String> future = flight.submit("1", constant("a"), executor);
+        try {
+            future.get();
+            fail("expected the rejection");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(0, flight.getInFlight());
+    }
+
+    @Test
+    public void joiningExtendsTheDeadlineOfTheLoad() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicReference<Deadline> loadDeadline = new AtomicReference<Deadline>();
+        CompletableFuture<String> leader = flight.submit("1", Deadline.after(10), new SingleFlight.Loader<String>() {
+            @Override
+            public String load(Deadline deadline) throws Exception {
+                loadDeadline.set(deadline);
+                loading.countDown();
+                release.await();
+                return "loaded";
+            }
+        }, executor);
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        flight.submit("1", Deadline.after(60000), new SingleFlight.Loader<String>() {
+            @Override
+            public String load(Deadline deadline) {
+                return "second";
+            }
+        }, executor);
+        assertTrue(loadDeadline.get().remainingMillis() > 10000);
+        release.countDown();
+        assertEquals("loaded", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void batchesLeadOnlyTheKeysNobodyIsLoading() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        flight.submit("2", new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                loading.countDown();
+                release.await();
+                return "two";
+            }
+        }, executor);
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        SingleFlight.Batch<String> batch = flight.leadAll(Arrays.asList("1", "2", "3"), Deadline.after(60000));
+        assertEquals(Arrays.asList("1", "3"), batch.getLedKeys());
+        assertEquals(3, flight.getLoads());
+        assertEquals(1, flight.getCoalesced());
+
+        //a single key request for a led key joins the batch
+        CompletableFuture<String> single = flight.submit("3", constant("other"), executor);
+        CompletableFuture<Map<String, String>> results = batch.results();
+        Map<String, String> loaded = new HashMap<String, String>();
+        loaded.put("1", "one");
+        batch.complete(loaded);
+        assertNull(single.get(5, TimeUnit.SECONDS));
+        //only the load of 2 is left
+        assertEquals(1, flight.getInFlight());
+
+        release.countDown();
+        Map<String, String> values = results.get(5, TimeUnit.SECONDS);
+        assertEquals("one", values.get("1"));
+        assertEquals("two", values.get("2"));
+        assertTrue(values.containsKey("3"));
+        assertNull(values.get("3"));
+    }
+
+    @Test
+    public void failedBatchesFailTheirJoiners() throws Exception {
+        SingleFlight.Batch<String> batch = flight.leadAll(Collections.singletonList("1"), Deadline.after(60000));
+        CompletableFuture<String> single = flight.submit("1", constant("other"), executor);
+        batch.fail(new IllegalStateException("backend down"));
+        try {
+            single.get(5, TimeUnit.SECONDS);
+            fail("expected the batch failure");
+        } catch (ExecutionException e) {
+            assertEquals("backend down", e.getCause().getMessage());
+        }
+        assertEquals(0, flight.getInFlight());
+    }
+
+    private static Callable<String> constant(final String value) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return value;
+            }
+        };
+    }
+}
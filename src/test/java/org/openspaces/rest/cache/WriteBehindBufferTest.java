@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.cache;
+
+import com.gigaspaces.document.SpaceDocument;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openspaces.core.GigaSpace;
+import org.openspaces.rest.metrics.LatencyHistogram;
+import org.openspaces.rest.utils.ControllerUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindBufferTest {
+    private final List<SpaceDocument> written = Collections.synchronizedList(new ArrayList<SpaceDocument>());
+    private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+    private WriteBehindBuffer buffer;
+
+    @After
+    public void close() {
+        releaseFirstWrite.countDown();
+        if (buffer != null)
+            buffer.close();
+    }
+
+    @Test
+    public void writesOnTheCallingThreadWhenDisabled() {
+        releaseFirstWrite.countDown();
+        buffer = newBuffer(0);
+        buffer.enqueue("Account", "1", account(1), 1000);
+        assertEquals(1, written.size());
+        assertNull(buffer.get("Account", "1"));
+    }
+
+    @Test
+    public void servesQueuedDocumentsUntilTheyAreWritten() throws Exception {
+        buffer = newBuffer(1);
+        buffer.start();
+        SpaceDocument doc = account(1);
+        buffer.enqueue("Account", "1", doc, 1000);
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        assertSame(doc, buffer.get("Account", "1"));
+
+        releaseFirstWrite.countDown();
+        awaitWritten(1);
+        assertNull(buffer.get("Account", "1"));
+    }
+
+    @Test
+    public void invalidatedDocumentsAreNeitherServedNorWritten() throws Exception {
+        buffer = newBuffer(1);
+        buffer.start();
+        buffer.enqueue("Account", "1", account(1), 1000);
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        buffer.enqueue("Account", "2", account(2), 1000);
+        buffer.enqueue("Account", "3", account(3), 1000);
+
+        buffer.invalidate("Account", "2");
+        assertNull(buffer.get("Account", "2"));
+        releaseFirstWrite.countDown();
+        awaitWritten(2);
+        buffer.close();
+        assertEquals(2, written.size());
+        assertEquals(Integer.valueOf(1), written.get(0).getProperty("accountId"));
+        assertEquals(Integer.valueOf(3), written.get(1).getProperty("accountId"));
+    }
+
+    @Test
+    public void invalidatingATypeCancelsOnlyItsDocuments() throws Exception {
+        buffer = newBuffer(1);
+        buffer.start();
+        buffer.enqueue("Account", "1", account(1), 1000);
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        buffer.enqueue("Account", "2", account(2), 1000);
+        SpaceDocument card = new SpaceDocument("CardAccount");
+        card.setProperty("accountId", 2);
+        buffer.enqueue("CardAccount", "2", card, 1000);
+
+        buffer.invalidateType("Account");
+        assertNull(buffer.get("Account", "2"));
+        assertSame(card, buffer.get("CardAccount", "2"));
+        releaseFirstWrite.countDown();
+        awaitWritten(2);
+        buffer.close();
+        assertEquals(2, written.size());
+        assertSame(card, written.get(1));
+    }
+
+    @Test
+    public void invalidatingATypeWithAFilterCancelsOnlyTheAcceptedDocuments() throws Exception {
+        buffer = newBuffer(1);
+        buffer.start();
+        buffer.enqueue("Account", "1", account(1), 1000);
+        assertTrue(firstWriteStarted.await(5, TimeUnit.SECONDS));
+        buffer.enqueue("Account", "2", account(2), 1000);
+        buffer.enqueue("Account", "3", account(3), 1000);
+
+        buffer.invalidateType("Account", new Predicate<SpaceDocument>() {
+            @Override
+            public boolean test(SpaceDocument doc) {
+                return Integer.valueOf(2).equals(doc.getProperty("accountId"));
+            }
+        });
+        assertNull(buffer.get("Account", "2"));
+        assertEquals(Integer.valueOf(3), buffer.get("Account", "3").getProperty("accountId"));
+        releaseFirstWrite.countDown();
+        awaitWritten(2);
+        buffer.close();
+        assertEquals(2, written.size());
+        assertEquals(Integer.valueOf(3), written.get(1).getProperty("accountId"));
+    }
+
+    @Test
+    public void closeWritesWhatIsStillQueued() {
+        releaseFirstWrite.countDown();
+        buffer = newBuffer(100);
+        buffer.start();
+        for (int i = 0; i < 10; i++) {
+            buffer.enqueue("Account", String.valueOf(i), account(i), 1000);
+        }
+        buffer.close();
+        assertEquals(10, written.size());
+    }
+
+    private WriteBehindBuffer newBuffer(int batchSize) {
+        final GigaSpace space = (GigaSpace) Proxy.newProxyInstance(GigaSpace.class.getClassLoader(),
+                new Class<?>[]{GigaSpace.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (!method.getName().equals("writeMultiple"))
+                            throw new UnsupportedOperationException(method.getName());
+                        firstWriteStarted.countDown();
+                        releaseFirstWrite.await();
+                        Collections.addAll(written, (SpaceDocument[]) args[0]);
+                        return null;
+                    }
+                });
+        ControllerUtils.XapConnectionCache xapCache = new ControllerUtils.XapConnectionCache() {
+            @Override
+            public GigaSpace get() {
+                return space;
+            }
+        };
+        return new WriteBehindBuffer(xapCache, batchSize, 50, 100, 1000, new LatencyHistogram());
+    }
+
+    private void awaitWritten(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (written.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, written.size());
+    }
+
+    private static SpaceDocument account(int accountId) {
+        SpaceDocument doc = new SpaceDocument("Account");
+        doc.setProperty("accountId", accountId);
+        return doc;
+    }
+}
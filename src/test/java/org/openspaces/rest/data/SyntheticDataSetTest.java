@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyntheticDataSetTest {
+    private static final long OLD = 1000000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameSeedAndSizesGiveTheSameValues() throws Exception {
+        SyntheticDataSet first = SyntheticDataSet.open(folder.newFile(), 7, 50, 20);
+        SyntheticDataSet second = SyntheticDataSet.open(folder.newFile(), 7, 50, 20);
+        assertSameValues(first, second);
+        assertEquals(50 * 22, first.getRecords());
+        assertTrue(first.transactionTime(3, 1) > first.transactionTime(3, 0));
+    }
+
+    @Test
+    public void openReusesAMatchingFile() throws Exception {
+        File file = folder.newFile();
+        SyntheticDataSet generated = SyntheticDataSet.open(file, 7, 50, 20);
+        assertTrue(file.setLastModified(OLD));
+
+        SyntheticDataSet reused = SyntheticDataSet.open(file, 7, 50, 20);
+        assertEquals(OLD, file.lastModified());
+        assertSameValues(generated, reused);
+    }
+
+    @Test
+    public void openRegeneratesAFileOfAnotherSeedOrSize() throws Exception {
+        File file = folder.newFile();
+        SyntheticDataSet generated = SyntheticDataSet.open(file, 7, 50, 20);
+        assertTrue(file.setLastModified(OLD));
+
+        SyntheticDataSet reseeded = SyntheticDataSet.open(file, 8, 50, 20);
+        assertTrue(file.lastModified() != OLD);
+        assertEquals(8, reseeded.getSeed());
+        assertFalse(generated.accountName(0).equals(reseeded.accountName(0))
+                && generated.transactionAmount(0, 0) == reseeded.transactionAmount(0, 0)
+                && generated.transactionAmount(1, 1) == reseeded.transactionAmount(1, 1));
+        assertTrue(file.setLastModified(OLD));
+
+        SyntheticDataSet resized = SyntheticDataSet.open(file, 8, 60, 20);
+        assertTrue(file.lastModified() != OLD);
+        assertEquals(59, resized.accountIndex("59"));
+        assertEquals(reseeded.accountName(10), resized.accountName(10));
+    }
+
+    @Test
+    public void idsAreParsedStrictly() throws Exception {
+        SyntheticDataSet data = SyntheticDataSet.open(folder.newFile(), 7, 50, 20);
+        assertEquals(0, data.accountIndex("0"));
+        assertEquals(49, data.accountIndex("49"));
+        assertEquals(-1, data.accountIndex("50"));
+        assertEquals(-1, data.accountIndex("07"));
+        assertEquals(-1, data.accountIndex("00"));
+        assertEquals(-1, data.accountIndex("+7"));
+        assertEquals(-1, data.accountIndex("-7"));
+        assertEquals(-1, data.accountIndex(" 7"));
+        assertEquals(-1, data.accountIndex(""));
+        assertEquals(-1, data.accountIndex(null));
+        assertEquals(-1, data.accountIndex("99999999999"));
+        assertEquals(-1, data.accountIndex("4294967303"));
+        assertEquals(19, data.transactionIndex("19"));
+        assertEquals(-1, data.transactionIndex("20"));
+    }
+
+    @Test
+    public void malformedKeysHaveNoIndex() throws Exception {
+        SyntheticDataSet data = SyntheticDataSet.open(folder.newFile(), 7, 50, 20);
+        assertEquals(12, data.accountIndexOfKey("12-3"));
+        assertEquals(3, data.transactionIndexOfKey("12-3"));
+        for (String key : new String[]{null, "", "12", "-3", "12-", "012-3", "12-03", "12-+3", "x-3", "12-3-4", "50-3", "12-20"}) {
+            assertFalse(key, data.accountIndexOfKey(key) >= 0 && data.transactionIndexOfKey(key) >= 0);
+        }
+        assertEquals(-1, data.accountIndexOfKey("12"));
+        assertEquals(-1, data.transactionIndexOfKey("12-"));
+        assertEquals(-1, data.transactionIndexOfKey("12-3-4"));
+    }
+
+    private static void assertSameValues(SyntheticDataSet expected, SyntheticDataSet actual) {
+        for (int account = 0; account < expected.getAccounts(); account++) {
+            assertEquals(expected.accountName(account), actual.accountName(account));
+            assertEquals(expected.accountBalance(account), actual.accountBalance(account));
+            assertEquals(expected.cardName(account), actual.cardName(account));
+            assertEquals(expected.cardBalance(account), actual.cardBalance(account));
+            for (int transaction = 0; transaction < expected.getTransactionsPerAccount(); transaction++) {
+                assertEquals(expected.transactionTime(account, transaction), actual.transactionTime(account, transaction));
+                assertEquals(expected.transactionAmount(account, transaction), actual.transactionAmount(account, transaction));
+                assertEquals(expected.transactionDescription(account, transaction),
+                        actual.transactionDescription(account, transaction));
+            }
+        }
+    }
+}
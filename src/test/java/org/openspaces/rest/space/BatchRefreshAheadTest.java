@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.space;
+
+import com.gigaspaces.document.SpaceDocument;
+
+import org.junit.Test;
+import org.openspaces.rest.cache.TtlPolicy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchRefreshAheadTest {
+    private static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    @Test
+    public void refreshesDocumentsCloseToExpiringWithoutServingStale() {
+        //refresh ahead in the last 20% of the ttl, stale documents are never served
+        TtlPolicy ttl = new TtlPolicy("Account", TTL_MILLIS, 0.8, false, 1, 0);
+        Map<String, SpaceDocument> found = new LinkedHashMap<String, SpaceDocument>();
+        found.put("1", ttl.stamp(account("1"), TimeUnit.SECONDS.toMillis(5)));
+        found.put("2", ttl.stamp(account("2"), TTL_MILLIS));
+        found.put("3", ttl.stamp(account("3"), TimeUnit.SECONDS.toMillis(1)));
+        assertEquals(Arrays.asList("1", "3"), SpaceAPIController.refreshAheadKeys(ttl, found));
+    }
+
+    @Test
+    public void refreshesStaleDocumentsOfTypesServedStale() {
+        TtlPolicy ttl = new TtlPolicy("Account", TTL_MILLIS, 1, false, 1, TimeUnit.SECONDS.toMillis(30));
+        Map<String, SpaceDocument> found = new LinkedHashMap<String, SpaceDocument>();
+        SpaceDocument stale = ttl.stamp(account("1"), TTL_MILLIS);
+        stale.setProperty(TtlPolicy.EXPIRES_AT_PROPERTY, System.currentTimeMillis() - 1000);
+        found.put("1", stale);
+        found.put("2", ttl.stamp(account("2"), TTL_MILLIS));
+        assertEquals(Collections.singletonList("1"), SpaceAPIController.refreshAheadKeys(ttl, found));
+    }
+
+    @Test
+    public void refreshesNothingWithoutExpiration() {
+        TtlPolicy ttl = new TtlPolicy("Account", 0, 0.8, false, 1, 0);
+        Map<String, SpaceDocument> found = new LinkedHashMap<String, SpaceDocument>();
+        found.put("1", ttl.stamp(account("1"), ttl.leaseFor("1")));
+        List<String> keys = SpaceAPIController.refreshAheadKeys(ttl, found);
+        assertEquals(Collections.<String>emptyList(), keys);
+    }
+
+    private static SpaceDocument account(String accountId) {
+        SpaceDocument doc = new SpaceDocument("Account");
+        doc.setProperty("accountId", accountId);
+        return doc;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openspaces.rest.utils;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class CompressionFilterTest {
+    private static final int MIN_SIZE = 100;
+
+    @Test
+    public void smallBodiesAreSentAsTheyAreWithTheirLength() throws Exception {
+        byte[] body = body(MIN_SIZE - 1);
+        MockHttpServletResponse response = filter(request("gzip"), new Body(body, "application/json", false, true));
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals(String.valueOf(body.length), response.getHeader("Content-Length"));
+        assertArrayEquals(body, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void largeBodiesAreCompressed() throws Exception {
+        byte[] body = body(MIN_SIZE * 10);
+        MockHttpServletResponse response = filter(request("deflate, gzip"), new Body(body, "application/json", false, true));
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertNull(response.getHeader("Content-Length"));
+        assertArrayEquals(body, gunzip(response.getContentAsByteArray()));
+    }
+
+    @Test
+    public void gzipWithAZeroQualityIsNotUsed() throws Exception {
+        byte[] body = body(MIN_SIZE * 10);
+        MockHttpServletResponse response = filter(request("gzip;q=0, identity"), new Body(body, "application/json", false, false));
+        assertNull(response.getHeader("Content-Encoding"));
+        assertNull(response.getHeader("Vary"));
+        assertArrayEquals(body, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void eventStreamsAreNeverCompressed() throws Exception {
+        byte[] body = body(MIN_SIZE * 10);
+        MockHttpServletResponse response = filter(request("gzip"), new Body(body, "text/event-stream", false, false));
+        assertNull(response.getHeader("Content-Encoding"));
+        assertNull(response.getHeader("Vary"));
+        assertArrayEquals(body, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void bodiesFlushedBeforeTheThresholdAreSentUncompressed() throws Exception {
+        byte[] body = body(MIN_SIZE * 10);
+        MockHttpServletResponse response = filter(request("gzip"), new Body(body, "application/x-ndjson", true, false));
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertArrayEquals(body, response.getContentAsByteArray());
+    }
+
+    private static MockHttpServletRequest request(String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/rest/data/Account/1");
+        request.addHeader("Accept-Encoding", acceptEncoding);
+        return request;
+    }
+
+    private static MockHttpServletResponse filter(MockHttpServletRequest request, HttpServlet servlet)
+            throws ServletException, IOException {
+        CompressionFilter filter = new CompressionFilter();
+        filter.setMinSizeBytes(MIN_SIZE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        new MockFilterChain(servlet, filter).doFilter(request, response);
+        return response;
+    }
+
+    private static byte[] body(int size) {
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        return body;
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1024];
+        int read;
+        while ((read = in.read(chunk)) > 0) {
+            out.write(chunk, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the body in chunks of ten bytes, flushing after the first chunk if asked to.
+     */
+    private static class Body extends HttpServlet {
+        private final byte[] body;
+        private final String contentType;
+        private final boolean flushEarly;
+        private final boolean setLength;
+
+        Body(byte[] body, String contentType, boolean flushEarly, boolean setLength) {
+            this.body = body;
+            this.contentType = contentType;
+            this.flushEarly = flushEarly;
+            this.setLength = setLength;
+        }
+
+        @Override
+        protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            response.setContentType(contentType);
+            if (setLength)
+                response.setContentLength(body.length);
+            ServletOutputStream out = response.getOutputStream();
+            for (int from = 0; from < body.length; from += 10) {
+                out.write(Arrays.copyOfRange(body, from, Math.min(body.length, from + 10)));
+                if (flushEarly && from == 0) {
+                    out.flush();
+                    assertFalse(response.containsHeader("Content-Encoding"));
+                }
+            }
+        }
+    }
+}
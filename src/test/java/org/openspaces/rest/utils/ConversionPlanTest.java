@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.utils;
+
+import com.gigaspaces.document.SpaceDocument;
+import com.gigaspaces.metadata.SpaceTypeDescriptor;
+import com.gigaspaces.metadata.SpaceTypeDescriptorBuilder;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openspaces.rest.exceptions.RestException;
+import org.openspaces.rest.exceptions.UnsupportedTypeException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ConversionPlanTest {
+
+    private enum Status {
+        OPEN, CLOSED
+    }
+
+    @After
+    public void resetDateFormat() {
+        ConversionPlan.configureDateFormat("yyyy-MM-dd HH:mm:ss");
+    }
+
+    @Test
+    public void convertsIntegralNumbersWithoutTheirStringForm() {
+        assertEquals(5L, ConversionPlan.converterFor(Long.class).convert(5, "p"));
+        assertEquals(5L, ConversionPlan.converterFor(Long.TYPE).convert(new BigInteger("5"), "p"));
+        assertEquals(7, ConversionPlan.converterFor(Integer.class).convert(7L, "p"));
+        assertEquals((short) 3, ConversionPlan.converterFor(Short.class).convert(3, "p"));
+        assertEquals((byte) -2, ConversionPlan.converterFor(Byte.TYPE).convert(-2, "p"));
+    }
+
+    @Test
+    public void parsesIntegralStrings() {
+        assertEquals(12L, ConversionPlan.converterFor(Long.class).convert("12", "p"));
+        assertEquals(-4, ConversionPlan.converterFor(Integer.TYPE).convert("-4", "p"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsIntegralValuesOutOfRange() {
+        ConversionPlan.converterFor(Integer.class).convert(Integer.MAX_VALUE + 1L, "p");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsFractionsForIntegralTypes() {
+        ConversionPlan.converterFor(Long.class).convert(1.5, "p");
+    }
+
+    @Test
+    public void convertsFloatingPointNumbers() {
+        assertEquals(2.5, ConversionPlan.converterFor(Double.class).convert(2.5f, "p"));
+        assertEquals(3.0, ConversionPlan.converterFor(Double.TYPE).convert(3, "p"));
+        assertEquals(0.1, ConversionPlan.converterFor(Double.class).convert(new BigDecimal("0.1"), "p"));
+        assertEquals(1.25f, ConversionPlan.converterFor(Float.class).convert("1.25", "p"));
+    }
+
+    @Test
+    public void convertsBooleansEnumsAndStrings() {
+        assertEquals(true, ConversionPlan.converterFor(Boolean.TYPE).convert("true", "p"));
+        assertEquals(Boolean.FALSE, ConversionPlan.converterFor(Boolean.class).convert(false, "p"));
+        assertEquals(Status.CLOSED, ConversionPlan.converterFor(Status.class).convert("CLOSED", "p"));
+        assertEquals("42", ConversionPlan.converterFor(String.class).convert(42, "p"));
+    }
+
+    @Test
+    public void convertsDatesFromEpochMillisAndTheConfiguredFormat() throws Exception {
+        assertEquals(new Date(1000L), ConversionPlan.converterFor(Date.class).convert(1000L, "p"));
+        Date expected = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse("2017-03-01 10:20:30");
+        assertEquals(expected, ConversionPlan.converterFor(Date.class).convert("2017-03-01 10:20:30", "p"));
+
+        ConversionPlan.configureDateFormat("yyyy-MM-dd");
+        Date midnight = new SimpleDateFormat("yyyy-MM-dd").parse("2017-03-01");
+        assertEquals(midnight, ConversionPlan.converterFor(Date.class).convert("2017-03-01", "p"));
+        assertEquals(TimeUnit.DAYS.toMillis(1), ((Date) ConversionPlan.converterFor(Date.class).convert("2017-03-02", "p")).getTime() - midnight.getTime());
+    }
+
+    @Test(expected = RestException.class)
+    public void rejectsDatesInAnotherFormat() {
+        ConversionPlan.converterFor(Date.class).convert("01/03/2017", "p");
+    }
+
+    @Test(expected = UnsupportedTypeException.class)
+    public void failsOnlyWhenAValueIsGivenForAnUnsupportedType() {
+        ConversionPlan.PropertyConverter converter = ConversionPlan.converterFor(Map.class);
+        converter.convert(new HashMap<String, Object>(), "p");
+    }
+
+    @Test
+    public void convertsFixedPropertiesAndKeepsDynamicOnes() {
+        ConversionPlan plan = ConversionPlan.of(accountType());
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("accountId", 7);
+        properties.put("balance", "10.5");
+        properties.put("nickname", "savings");
+        SpaceDocument doc = plan.toDocument(properties);
+        assertEquals("TestAccount", doc.getTypeName());
+        assertEquals(Long.valueOf(7), doc.getProperty("accountId"));
+        assertEquals(Double.valueOf(10.5), doc.getProperty("balance"));
+        assertEquals("savings", doc.getProperty("nickname"));
+    }
+
+    @Test
+    public void cachesPlansPerDescriptor() {
+        SpaceTypeDescriptor descriptor = accountType();
+        ConversionPlan plan = ConversionPlan.of(descriptor);
+        assertSame(plan, ConversionPlan.of(descriptor));
+        assertNotSame(plan, ConversionPlan.of(accountType()));
+        ConversionPlan.invalidate("TestAccount");
+    }
+
+    @Test
+    public void invalidatedPlansAreBuiltAgain() {
+        SpaceTypeDescriptor descriptor = accountType();
+        ConversionPlan plan = ConversionPlan.of(descriptor);
+        ConversionPlan.invalidate("TestAccount");
+        assertNotSame(plan, ConversionPlan.of(descriptor));
+        ConversionPlan.invalidate("TestAccount");
+    }
+
+    private static SpaceTypeDescriptor accountType() {
+        return new SpaceTypeDescriptorBuilder("TestAccount")
+                .addFixedProperty("accountId", Long.class)
+                .addFixedProperty("balance", Double.class)
+                .idProperty("accountId", false).create();
+    }
+}
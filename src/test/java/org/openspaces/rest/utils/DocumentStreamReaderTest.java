@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.utils;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.gigaspaces.document.SpaceDocument;
+import com.gigaspaces.metadata.SpaceTypeDescriptor;
+import com.gigaspaces.metadata.SpaceTypeDescriptorBuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openspaces.core.GigaSpace;
+import org.openspaces.core.GigaSpaceTypeManager;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DocumentStreamReaderTest {
+
+    @BeforeClass
+    public static void configureMapper() {
+        ControllerUtils.configureDateFormat("yyyy-MM-dd HH:mm:ss");
+    }
+
+    @Test
+    public void readsJsonArrays() throws IOException {
+        List<SpaceDocument> docs = readAll("[{\"accountId\": 1}, {\"accountId\": 2}]", accountType(true));
+        assertEquals(2, docs.size());
+        assertEquals(Long.valueOf(1), docs.get(0).getProperty("accountId"));
+        assertEquals(Long.valueOf(2), docs.get(1).getProperty("accountId"));
+    }
+
+    @Test
+    public void readsNewlineDelimitedJson() throws IOException {
+        List<SpaceDocument> docs = readAll("{\"accountId\": 1}\n{\"accountId\": 2}\n\n{\"accountId\": 3}\n", accountType(true));
+        assertEquals(3, docs.size());
+        assertEquals(Long.valueOf(3), docs.get(2).getProperty("accountId"));
+    }
+
+    @Test
+    public void readsSingleObjects() throws IOException {
+        List<SpaceDocument> docs = readAll("{\"accountId\": 1, \"balance\": 2.5}", accountType(true));
+        assertEquals(1, docs.size());
+        assertEquals(Double.valueOf(2.5), docs.get(0).getProperty("balance"));
+    }
+
+    @Test
+    public void readsNothingFromEmptyPayloads() throws IOException {
+        assertTrue(readAll("[]", accountType(true)).isEmpty());
+        assertTrue(readAll("", accountType(true)).isEmpty());
+    }
+
+    @Test
+    public void countsObjectsReadCompletely() throws IOException {
+        DocumentStreamReader reader = reader("[{\"accountId\": 1}, 2]", accountType(true));
+        assertNotNull(reader.nextProperties());
+        assertEquals(1, reader.getCount());
+        try {
+            reader.nextProperties();
+            fail("expected a parse error for a value that is not an object");
+        } catch (JsonParseException e) {
+            assertEquals(1, reader.getCount());
+        }
+    }
+
+    @Test
+    public void stampsAGenerationOnTypesThatCanHoldIt() throws IOException {
+        SpaceDocument dynamic = readAll("{\"accountId\": 1}", accountType(true)).get(0);
+        assertTrue(dynamic.getProperty(EntityTags.GENERATION_PROPERTY) instanceof Long);
+        SpaceDocument fixed = readAll("{\"accountId\": 1}", accountType(false)).get(0);
+        assertNull(fixed.getProperty(EntityTags.GENERATION_PROPERTY));
+    }
+
+    @Test
+    public void createSpaceDocumentsAcceptsCommaSeparatedObjects() {
+        GigaSpace gigaSpace = space(accountType(true));
+        assertEquals(2, ControllerUtils.createSpaceDocuments("DocumentStreamAccount", "{\"accountId\": 1},{\"accountId\": 2}", gigaSpace).length);
+        assertEquals(2, ControllerUtils.createSpaceDocuments("DocumentStreamAccount", "[{\"accountId\": 1},{\"accountId\": 2}]", gigaSpace).length);
+        assertEquals(2, ControllerUtils.createSpaceDocuments("DocumentStreamAccount", "{\"accountId\": 1}\n{\"accountId\": 2}", gigaSpace).length);
+        assertEquals(1, ControllerUtils.createSpaceDocuments("DocumentStreamAccount", "{\"accountId\": 1, \"name\": \"a,}\"}", gigaSpace).length);
+    }
+
+    @Test
+    public void detectsCommasOutsideOfValues() {
+        assertTrue(ControllerUtils.isCommaSeparated("{\"a\": 1}, {\"b\": [1, 2]}"));
+        assertFalse(ControllerUtils.isCommaSeparated("[{\"a\": 1}, {\"b\": 2}]"));
+        assertFalse(ControllerUtils.isCommaSeparated("{\"a\": 1, \"b\": \"x\\\",}\"}"));
+    }
+
+    private static List<SpaceDocument> readAll(String json, SpaceTypeDescriptor type) throws IOException {
+        DocumentStreamReader reader = reader(json, type);
+        List<SpaceDocument> docs = new ArrayList<SpaceDocument>();
+        try {
+            Map<String, Object> properties;
+            while ((properties = reader.nextProperties()) != null)
+                docs.add(reader.toDocument(properties));
+        } finally {
+            reader.close();
+        }
+        return docs;
+    }
+
+    private static DocumentStreamReader reader(String json, SpaceTypeDescriptor type) throws IOException {
+        return new DocumentStreamReader(ControllerUtils.mapper.getFactory().createParser(json), ConversionPlan.of(type));
+    }
+
+    private static SpaceTypeDescriptor accountType(boolean dynamicProperties) {
+        return new SpaceTypeDescriptorBuilder("DocumentStreamAccount")
+                .addFixedProperty("accountId", Long.class)
+                .addFixedProperty("balance", Double.class)
+                .supportsDynamicProperties(dynamicProperties)
+                .idProperty("accountId", false).create();
+    }
+
+    private static GigaSpace space(final SpaceTypeDescriptor type) {
+        final GigaSpaceTypeManager typeManager = (GigaSpaceTypeManager) Proxy.newProxyInstance(GigaSpaceTypeManager.class.getClassLoader(),
+                new Class<?>[]{GigaSpaceTypeManager.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return type.getTypeName().equals(args[0]) ? type : null;
+                    }
+                });
+        return (GigaSpace) Proxy.newProxyInstance(GigaSpace.class.getClassLoader(),
+                new Class<?>[]{GigaSpace.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (!method.getName().equals("getTypeManager"))
+                            throw new UnsupportedOperationException(method.getName());
+                        return typeManager;
+                    }
+                });
+    }
+}
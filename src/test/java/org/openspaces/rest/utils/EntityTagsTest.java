@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.utils;
+
+import com.gigaspaces.document.SpaceDocument;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EntityTagsTest {
+
+    @Test
+    public void generationsOnlyMoveForward() {
+        long last = EntityTags.nextGeneration();
+        for (int i = 0; i < 100000; i++) {
+            long next = EntityTags.nextGeneration();
+            assertTrue(next > last);
+            last = next;
+        }
+    }
+
+    @Test
+    public void generationsAreUniqueAcrossThreads() throws Exception {
+        final Set<Long> generations = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int duplicates = 0;
+                        for (int i = 0; i < 10000; i++) {
+                            if (!generations.add(EntityTags.nextGeneration()))
+                                duplicates++;
+                        }
+                        return duplicates;
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(Integer.valueOf(0), future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(40000, generations.size());
+    }
+
+    @Test
+    public void generationsCarryTheNodeIdInTheirLowBits() {
+        long mask = (1L << 22) - 1;
+        long first = EntityTags.nextGeneration();
+        long second = EntityTags.nextGeneration();
+        assertEquals(first & mask, second & mask);
+        assertTrue((second >>> 22) > (first >>> 22));
+    }
+
+    @Test
+    public void tagsFollowTheGeneration() {
+        SpaceDocument doc = account("1");
+        doc.setProperty(EntityTags.GENERATION_PROPERTY, 5L);
+        String tag = EntityTags.of(doc);
+        assertTrue(tag, tag.startsWith("\"g") && tag.endsWith("\""));
+        assertEquals(tag, EntityTags.of(doc));
+
+        doc.setProperty(EntityTags.GENERATION_PROPERTY, 6L);
+        assertNotEquals(tag, EntityTags.of(doc));
+    }
+
+    @Test
+    public void documentsWithoutGenerationAreTaggedWithTheirVersion() {
+        SpaceDocument doc = account("1");
+        doc.setVersion(3);
+        assertEquals("\"v3\"", EntityTags.of(doc));
+    }
+
+    @Test
+    public void multiIdTagsCoverIdsOrderAndDocuments() {
+        Map<String, SpaceDocument> found = new HashMap<String, SpaceDocument>();
+        SpaceDocument doc = account("1");
+        doc.setProperty(EntityTags.GENERATION_PROPERTY, 5L);
+        found.put("1", doc);
+        String tag = EntityTags.of(Arrays.asList("1", "2"), found);
+        assertEquals(tag, EntityTags.of(Arrays.asList("1", "2"), found));
+        assertNotEquals(tag, EntityTags.of(Arrays.asList("2", "1"), found));
+        assertNotEquals(tag, EntityTags.of(Arrays.asList("1"), found));
+        assertNotEquals(EntityTags.of(Arrays.asList("ab", "c"), found), EntityTags.of(Arrays.asList("a", "bc"), found));
+
+        found.put("2", account("2"));
+        assertNotEquals(tag, EntityTags.of(Arrays.asList("1", "2"), found));
+    }
+
+    private static SpaceDocument account(String accountId) {
+        SpaceDocument doc = new SpaceDocument("Account");
+        doc.setProperty("accountId", accountId);
+        return doc;
+    }
+}
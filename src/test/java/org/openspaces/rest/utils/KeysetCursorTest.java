@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2008-2016, GigaSpaces Technologies, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openspaces.rest.utils;
+
+import org.junit.Test;
+import org.openspaces.rest.exceptions.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeysetCursorTest {
+
+    @Test
+    public void decodesWhatItEncodes() {
+        KeysetCursor cursor = KeysetCursor.decode(new KeysetCursor(1500000000000L, "7-42").encode());
+        assertEquals(1500000000000L, cursor.getSortValue());
+        assertEquals("7-42", cursor.getId());
+    }
+
+    @Test
+    public void keepsSeparatorsAndNegativeValues() {
+        KeysetCursor cursor = KeysetCursor.decode(new KeysetCursor(-5, "a:b:c").encode());
+        assertEquals(-5, cursor.getSortValue());
+        assertEquals("a:b:c", cursor.getId());
+    }
+
+    @Test
+    public void tokensAreUrlSafe() {
+        String token = new KeysetCursor(Long.MAX_VALUE, "\u00ff\u00fe?>/+").encode();
+        assertTrue(token, token.matches("[A-Za-z0-9_-]+"));
+        assertEquals("\u00ff\u00fe?>/+", KeysetCursor.decode(token).getId());
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void rejectsTokensThatAreNotBase64() {
+        KeysetCursor.decode("not a cursor!");
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void rejectsTokensWithoutSeparator() {
+        KeysetCursor.decode(token("12345"));
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void rejectsTokensWithoutId() {
+        KeysetCursor.decode(token("12345:"));
+    }
+
+    @Test(expected = InvalidRequestException.class)
+    public void rejectsTokensWithoutNumericSortValue() {
+        KeysetCursor.decode(token("abc:1"));
+    }
+
+    private static String token(String plain) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+}